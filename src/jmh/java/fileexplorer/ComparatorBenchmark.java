@@ -0,0 +1,91 @@
+package fileexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.SortOrder;
+import javax.swing.RowSorter.SortKey;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Sorting a listing with the directories-first comparator and with the collation keys
+// FileEntry.sort uses, and re-sorting the file table by a column with FileTableSorter
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComparatorBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int entries;
+    
+    private List<FileEntry> shuffled;
+    private List<FileEntry> sorted;
+    private FileTableSorter sorter;
+    private boolean descending;
+    
+    @Setup(Level.Trial)
+    public void createEntries() {
+        shuffled = SyntheticTree.entries(entries, 42);
+        sorted = new ArrayList<>(shuffled);
+        sorted.sort(FileEntry.DIRECTORIES_FIRST);
+        
+        FileTableModel model = new FileTableModel();
+        model.setEntries(new File("benchmark"), sorted);
+        sorter = new FileTableSorter(model);
+    }
+    
+    @Benchmark
+    public List<FileEntry> sortShuffled() {
+        List<FileEntry> copy = new ArrayList<>(shuffled);
+        copy.sort(FileEntry.DIRECTORIES_FIRST);
+        return copy;
+    }
+    
+    // Sorting an already sorted listing, as after a cache hit
+    @Benchmark
+    public List<FileEntry> sortSorted() {
+        List<FileEntry> copy = new ArrayList<>(sorted);
+        copy.sort(FileEntry.DIRECTORIES_FIRST);
+        return copy;
+    }
+    
+    @Benchmark
+    public List<FileEntry> sortKeys() {
+        List<FileEntry> copy = new ArrayList<>(shuffled);
+        FileEntry.sort(copy);
+        return copy;
+    }
+    
+    // Each operation flips the direction, so every one is a full re-sort
+    @Benchmark
+    public int sorterBySize() {
+        return toggle(FileTableModel.SIZE_COLUMN);
+    }
+    
+    @Benchmark
+    public int sorterByName() {
+        return toggle(FileTableModel.NAME_COLUMN);
+    }
+    
+    private int toggle(int column) {
+        descending = !descending;
+        sorter.setSortKeys(Collections.singletonList(
+                new SortKey(column, descending ? SortOrder.DESCENDING : SortOrder.ASCENDING)));
+        return sorter.convertRowIndexToModel(0);
+    }
+}
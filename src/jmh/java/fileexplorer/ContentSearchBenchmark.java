@@ -0,0 +1,106 @@
+package fileexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Content search over a generated tree of text files, compared with reading every
+// file line by line and running the regex on each line. The queries are a literal,
+// a regex with a literal for the prefilter, and one without.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentSearchBenchmark {
+    @Param({"1000"})
+    int files;
+    
+    @Param({"connection reset", "timeout after \\d+ ms", "ERROR|FATAL"})
+    String query;
+    
+    private static final String[] WORDS = {
+        "request", "handled", "user", "session", "cache", "INFO", "DEBUG", "WARN", "in", "ms", "ok", "retry"
+    };
+    
+    private Path root;
+    private ContentSearcher searcher;
+    private ContentQuery contentQuery;
+    private Pattern pattern;
+    
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        root = SyntheticTree.fixture("content-" + files, directory -> {
+            Random random = new Random(files);
+            for (int i = 0; i < files; i++) {
+                // Log-like files of about 64 KB, twenty to a directory, with a rare error line
+                Path subdirectory = Files.createDirectories(directory.resolve("dir" + (i / 20)));
+                try (BufferedWriter out = Files.newBufferedWriter(subdirectory.resolve("file" + i + ".log"))) {
+                    for (int line = 0; line < 1000; line++) {
+                        if (random.nextInt(5000) == 0) {
+                            out.write("ERROR connection reset, timeout after " + random.nextInt(1000) + " ms\n");
+                            continue;
+                        }
+                        for (int word = 0; word < 10; word++) {
+                            out.write(WORDS[random.nextInt(WORDS.length)]);
+                            out.write(' ');
+                        }
+                        out.write('\n');
+                    }
+                }
+            }
+        });
+        searcher = new ContentSearcher();
+        boolean regex = !query.equals("connection reset");
+        contentQuery = new ContentQuery(query, regex, false);
+        pattern = Pattern.compile(regex ? query : Pattern.quote(query));
+    }
+    
+    @Benchmark
+    public int contentSearcher() throws InterruptedException {
+        ContentSearcher.Search search = searcher.search(root, contentQuery, Long.MAX_VALUE);
+        while (!search.isFinished()) {
+            Thread.sleep(1);
+        }
+        return search.getMatchCount();
+    }
+    
+    // The naive approach: one thread, every line decoded and matched
+    @Benchmark
+    public int readLines() throws IOException {
+        int matches = 0;
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    for (String line; (line = in.readLine()) != null; ) {
+                        if (pattern.matcher(line).find()) {
+                            matches++;
+                        }
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+}
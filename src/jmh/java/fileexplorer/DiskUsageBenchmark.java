@@ -0,0 +1,71 @@
+package fileexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// The disk usage scan of a whole tree, and building the compact tree on its own
+// (a directory of ten subdirectories per listing, no I/O) to show its cost per folder.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiskUsageBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int entries;
+    
+    @Param({"WIDE", "DEEP"})
+    TreeShape shape;
+    
+    private Path root;
+    private DiskUsageScanner scanner;
+    private List<String> subdirectories;
+    
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        root = SyntheticTree.create(shape, entries);
+        scanner = new DiskUsageScanner();
+        subdirectories = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            subdirectories.add("directory" + i);
+        }
+    }
+    
+    @Benchmark
+    public DiskUsageTree scan() throws InterruptedException {
+        CountDownLatch finished = new CountDownLatch(1);
+        DiskUsageTree tree = scanner.scan(root, scanned -> finished.countDown());
+        finished.await();
+        return tree;
+    }
+    
+    // One folder per entry
+    @Benchmark
+    public DiskUsageTree buildTree() {
+        DiskUsageTree tree = new DiskUsageTree(Paths.get("root"));
+        int listed = 0;
+        while (tree.getNodeCount() < entries) {
+            tree.addListing(listed++, 4096, 20, subdirectories);
+        }
+        return tree;
+    }
+}
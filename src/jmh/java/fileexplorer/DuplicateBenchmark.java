@@ -0,0 +1,101 @@
+package fileexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// The duplicate finder on a generated tree of files from 1 KB to 1 MB, one in ten
+// with two copies elsewhere: a first search, one with the hashes cached from the
+// last, and hashing every file in full and grouping by hash.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DuplicateBenchmark {
+    @Param({"2000"})
+    int files;
+    
+    private Path root;
+    private DuplicateFinder finder;
+    private DuplicateFinder cachedFinder;
+    
+    @Setup(Level.Trial)
+    public void createTree() throws IOException, InterruptedException {
+        root = SyntheticTree.fixture("duplicates-" + files, directory -> {
+            Random random = new Random(files);
+            for (int i = 0; i < files; i++) {
+                byte[] data = new byte[1024 + random.nextInt(1024 * 1024)];
+                random.nextBytes(data);
+                int copies = i % 10 == 0 ? 3 : 1;
+                for (int copy = 0; copy < copies; copy++) {
+                    Path subdirectory = Files.createDirectories(directory.resolve("dir" + random.nextInt(100)));
+                    Files.write(subdirectory.resolve("file" + i + "-" + copy), data);
+                }
+            }
+        });
+        finder = new DuplicateFinder();
+        cachedFinder = new DuplicateFinder();
+        await(cachedFinder.search(root, 1));
+    }
+    
+    @Benchmark
+    public int findDuplicates() throws InterruptedException {
+        finder.clearCache();
+        return await(finder.search(root, 1));
+    }
+    
+    @Benchmark
+    public int findDuplicatesCached() throws InterruptedException {
+        return await(cachedFinder.search(root, 1));
+    }
+    
+    // The naive approach: every file read and hashed whole
+    @Benchmark
+    public int hashEveryFile() throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        Map<ByteBuffer, List<Path>> byHash = new HashMap<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                byte[] hash = digest.digest(Files.readAllBytes(file));
+                byHash.computeIfAbsent(ByteBuffer.wrap(hash), key -> new ArrayList<>()).add(file);
+            }
+        }
+        int sets = 0;
+        for (List<Path> copies : byHash.values()) {
+            sets += copies.size() > 1 ? 1 : 0;
+        }
+        return sets;
+    }
+    
+    private static int await(DuplicateFinder.Search search) throws InterruptedException {
+        while (!search.isFinished()) {
+            Thread.sleep(1);
+        }
+        return search.getSets().size();
+    }
+}
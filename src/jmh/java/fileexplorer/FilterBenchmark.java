@@ -0,0 +1,91 @@
+package fileexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.RowSorter.SortKey;
+import javax.swing.SortOrder;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Filtering a listing as the filter bar does: matching all names in each mode, a
+// keystroke that narrows the previous matches, and showing the matches in a sorted table
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int entries;
+    
+    @Param({"CONTAINS", "GLOB", "REGEX"})
+    String mode;
+    
+    private FileTableModel.Names names;
+    private NameFilter filter;
+    private NameFilter shorter;
+    private NameFilter longer;
+    private int[] shorterRows;
+    private int[] rows;
+    private FileTableSorter sorter;
+    
+    @Setup(Level.Trial)
+    public void createEntries() {
+        List<FileEntry> sorted = new ArrayList<>(SyntheticTree.entries(entries, 42));
+        sorted.sort(FileEntry.DIRECTORIES_FIRST);
+        FileTableModel model = new FileTableModel();
+        model.setEntries(new File("benchmark"), sorted);
+        names = model.copyNames();
+        
+        switch (NameFilter.Mode.valueOf(mode)) {
+            case GLOB:
+                filter = new NameFilter(NameFilter.Mode.GLOB, "report_1*.txt");
+                break;
+            case REGEX:
+                filter = new NameFilter(NameFilter.Mode.REGEX, "report_1\\d*\\.txt");
+                break;
+            default:
+                filter = new NameFilter(NameFilter.Mode.CONTAINS, "report_1");
+        }
+        rows = names.filter(filter, null, () -> false);
+        shorter = new NameFilter(NameFilter.Mode.CONTAINS, "repo");
+        longer = new NameFilter(NameFilter.Mode.CONTAINS, "report");
+        shorterRows = names.filter(shorter, null, () -> false);
+        
+        sorter = new FileTableSorter(model);
+        sorter.setSortKeys(Collections.singletonList(new SortKey(FileTableModel.SIZE_COLUMN, SortOrder.ASCENDING)));
+    }
+    
+    @Benchmark
+    public int[] filterAll() {
+        return names.filter(filter, null, () -> false);
+    }
+    
+    // One more character typed: only the previous matches are checked (a substring in every mode)
+    @Benchmark
+    public int[] narrow() {
+        return names.filter(longer, shorterRows, () -> false);
+    }
+    
+    // The sorted view cut down to the matches, without comparing rows
+    @Benchmark
+    public int showInSortedTable() {
+        sorter.setFilter(filter, rows);
+        return sorter.getViewRowCount();
+    }
+}
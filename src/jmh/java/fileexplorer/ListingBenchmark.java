@@ -0,0 +1,115 @@
+package fileexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+// Listing a directory as updateFileTable does: one stat per entry while reading,
+// then sorting directories first. Every directory of the tree is listed per operation.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListingBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int entries;
+    
+    @Param({"WIDE", "DEEP"})
+    TreeShape shape;
+    
+    private List<Path> directories;
+    private DirectoryCache warmCache;
+    private Executor executor;
+    
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        directories = SyntheticTree.directories(SyntheticTree.create(shape, entries));
+        warmCache = new DirectoryCache(Long.MAX_VALUE);
+        for (Path directory : directories) {
+            warmCache.list(directory, () -> false, entry -> { });
+        }
+        executor = DirectoryModel.createExecutor();
+    }
+    
+    // Reading entries and their attributes, without sorting or caching
+    @Benchmark
+    public void readDirectory(Blackhole blackhole) throws IOException {
+        for (Path directory : directories) {
+            FileEntry.readDirectory(directory, () -> false, blackhole::consume);
+        }
+    }
+    
+    // A cache miss: read, sort and store the snapshot
+    @Benchmark
+    public void listUncached(Blackhole blackhole) throws IOException {
+        DirectoryCache cache = new DirectoryCache(Long.MAX_VALUE);
+        for (Path directory : directories) {
+            blackhole.consume(cache.list(directory, () -> false, entry -> { }));
+        }
+    }
+    
+    // A cache hit: one stat of the directory to validate the snapshot
+    @Benchmark
+    public void listCached(Blackhole blackhole) throws IOException {
+        for (Path directory : directories) {
+            blackhole.consume(warmCache.list(directory, () -> false, entry -> { }));
+        }
+    }
+    
+    // A cache miss for every directory at once, on virtual threads where the runtime has them
+    @Benchmark
+    public void listParallel(Blackhole blackhole) throws InterruptedException {
+        DirectoryModel model = new DirectoryModel(new DirectoryCache(Long.MAX_VALUE), executor, 0, 0);
+        CountDownLatch finished = new CountDownLatch(directories.size());
+        for (Path directory : directories) {
+            model.list(directory, false, Runnable::run, new DirectoryModel.Listener() {
+                @Override
+                public void entriesLoaded(List<FileEntry> batch) {
+                }
+                
+                @Override
+                public void listingFinished(List<FileEntry> entries) {
+                    blackhole.consume(entries);
+                    finished.countDown();
+                }
+                
+                @Override
+                public void listingFailed(Exception e) {
+                    finished.countDown();
+                }
+            });
+        }
+        finished.await();
+    }
+    
+    // The same delivered in one piece, as the tree lists the missing levels of a path it reveals
+    @Benchmark
+    public void listAll(Blackhole blackhole) throws InterruptedException {
+        DirectoryModel model = new DirectoryModel(new DirectoryCache(Long.MAX_VALUE), executor, 0, 0);
+        CountDownLatch finished = new CountDownLatch(1);
+        model.listAll(directories, Runnable::run, listings -> {
+            blackhole.consume(listings);
+            finished.countDown();
+        });
+        finished.await();
+    }
+}
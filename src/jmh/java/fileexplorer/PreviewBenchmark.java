@@ -0,0 +1,80 @@
+package fileexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// The preview's line index on a generated log: building it for the whole file, and
+// finding where a random line starts once it is built (the "go to line" lookup).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PreviewBenchmark {
+    @Param({"1000000", "10000000"})
+    int lines;
+    
+    private Path log;
+    private MappedFile file;
+    private LineIndex index;
+    private final Random random = new Random(42);
+    
+    @Setup(Level.Trial)
+    public void createLog() throws IOException, InterruptedException {
+        log = SyntheticTree.fixture("preview-" + lines, directory -> {
+            try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("preview.log"),
+                    StandardCharsets.UTF_8)) {
+                for (int i = 0; i < lines; i++) {
+                    out.write("2024-01-01T00:00:00Z INFO request " + i + " handled in " + (i % 997) + " ms\n");
+                }
+            }
+        }).resolve("preview.log");
+        file = new MappedFile(log);
+        index = awaitIndex();
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        file.close();
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LineIndex buildIndex() throws InterruptedException {
+        return awaitIndex();
+    }
+    
+    @Benchmark
+    public long offsetOfLine() throws IOException {
+        return index.offsetOf(random.nextInt(lines));
+    }
+    
+    private LineIndex awaitIndex() throws InterruptedException {
+        LineIndex built = new LineIndex(file);
+        while (!built.isComplete()) {
+            Thread.sleep(1);
+        }
+        return built;
+    }
+}
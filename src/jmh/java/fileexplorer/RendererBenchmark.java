@@ -0,0 +1,64 @@
+package fileexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.filechooser.FileSystemView;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+// Preparing the cell renderers of one screenful of the file table, with the
+// renderers and row sorter FileExplorer installs. Runs on the EDT, headless.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RendererBenchmark {
+    private static final int VISIBLE_ROWS = 40;
+    
+    @Param({"1000", "100000", "1000000"})
+    int entries;
+    
+    private JTable table;
+    private int firstRow;
+    
+    @Setup(Level.Trial)
+    public void createTable() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            FileTableModel model = new FileTableModel();
+            model.setEntries(new File("synthetic"), SyntheticTree.entries(entries, 42));
+            table = new JTable(model);
+            table.setRowSorter(new FileTableSorter(model));
+            FileExplorer.setupFileTableColumns(table, model, new IconService(FileSystemView.getFileSystemView()));
+        });
+    }
+    
+    // Each call renders the next page, so scrolling through the table is measured
+    @Benchmark
+    public void renderPage(Blackhole blackhole) throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            int rowCount = table.getRowCount();
+            for (int row = firstRow; row < firstRow + VISIBLE_ROWS && row < rowCount; row++) {
+                for (int column = 1; column < table.getColumnCount(); column++) {
+                    blackhole.consume(table.prepareRenderer(table.getCellRenderer(row, column), row, column));
+                }
+            }
+            firstRow = firstRow + VISIBLE_ROWS < rowCount ? firstRow + VISIBLE_ROWS : 0;
+        });
+    }
+}
@@ -0,0 +1,95 @@
+package fileexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Saving the session on exit and restoring it at startup, with a cache full of
+// generated listings of a thousand entries each. What the first frame waits for is
+// opening the snapshot and restoring the listings of the current directory and the
+// expanded folders (restoreShown); the rest are restored in the background.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionBenchmark {
+    @Param({"16", "256"})
+    int listings;
+    
+    private static final int ENTRIES = 1000;
+    private static final int EXPANDED = 8;
+    
+    private Path file;
+    private DirectoryCache cache;
+    private List<File> history;
+    private List<File> expanded;
+    
+    @Setup(Level.Trial)
+    public void createSession() throws IOException {
+        // Saved by every iteration of save, so only the directory is a fixture
+        file = SyntheticTree.fixture("session-" + listings, directory -> { }).resolve("session.bin");
+        Path root = Paths.get(System.getProperty("java.io.tmpdir"), "session-benchmark");
+        
+        Random random = new Random(listings);
+        cache = new DirectoryCache(Long.MAX_VALUE);
+        history = new ArrayList<>();
+        expanded = new ArrayList<>();
+        for (int i = 0; i < listings; i++) {
+            Path directory = root.resolve("folder" + i);
+            List<FileEntry> entries = new ArrayList<>();
+            for (int j = 0; j < ENTRIES; j++) {
+                entries.add(new FileEntry("file" + random.nextInt(1_000_000) + ".txt", j % 10 == 0, false,
+                        random.nextInt(1 << 20), 1_600_000_000_000L + random.nextInt()));
+            }
+            FileEntry.sort(entries);
+            cache.restore(directory, entries, 1_600_000_000_000L, 1_700_000_000_000L);
+            history.add(directory.toFile());
+            if (i < EXPANDED) {
+                expanded.add(directory.toFile());
+            }
+        }
+        save();
+    }
+    
+    @Benchmark
+    public void save() throws IOException {
+        SessionSnapshot.save(file, expanded.get(0), history, Collections.emptyList(), expanded, cache);
+    }
+    
+    @Benchmark
+    public DirectoryCache restoreShown() throws IOException {
+        DirectoryCache restored = new DirectoryCache(Long.MAX_VALUE);
+        SessionSnapshot.open(file).restoreListings(restored, true);
+        return restored;
+    }
+    
+    @Benchmark
+    public DirectoryCache restoreAll() throws IOException {
+        DirectoryCache restored = new DirectoryCache(Long.MAX_VALUE);
+        SessionSnapshot session = SessionSnapshot.open(file);
+        session.restoreListings(restored, true);
+        session.restoreListings(restored, false);
+        return restored;
+    }
+}
@@ -0,0 +1,154 @@
+package fileexplorer;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// Generated directory trees and file names for the benchmarks. Trees are kept in
+// the temp directory (fileexplorer.jmh.dir to override) and reused by later runs,
+// since creating a million files takes far longer than listing them; the other
+// benchmarks keep their generated files there the same way, through fixture.
+final class SyntheticTree {
+    // A directory of the DEEP shape holds this many subdirectories and files
+    private static final int DEEP_SUBDIRECTORIES = 4;
+    private static final int DEEP_FILES = 12;
+    
+    private static final String MARKER = ".complete";
+    
+    private static final String[] WORDS = {
+        "report", "Invoice", "photo", "IMG", "backup", "notes", "Draft", "final", "data", "build",
+        "config", "README", "index", "module", "test", "Archive", "summary", "design", "log", "cache"
+    };
+    private static final String[] EXTENSIONS = {
+        ".txt", ".java", ".jpg", ".PNG", ".pdf", ".docx", ".log", ".json", ".xml", ".zip", ".class", ".md", ""
+    };
+    
+    private SyntheticTree() {
+    }
+    
+    // Fills a fixture directory; it starts out empty
+    interface IOConsumer<T> {
+        void accept(T value) throws IOException;
+    }
+    
+    // Where the generated trees are kept
+    static Path base() {
+        return Paths.get(System.getProperty("fileexplorer.jmh.dir", System.getProperty("java.io.tmpdir")),
+                "fileexplorer-jmh");
+    }
+    
+    // A named directory of generated files, populated on first use. It is marked complete
+    // only once populated, so a run interrupted half-way is deleted and generated again.
+    static Path fixture(String name, IOConsumer<Path> populate) throws IOException {
+        Path root = base().resolve(name);
+        if (Files.exists(root.resolve(MARKER))) {
+            return root;
+        }
+        
+        deleteTree(root);
+        Files.createDirectories(root);
+        populate.accept(root);
+        Files.createFile(root.resolve(MARKER));
+        return root;
+    }
+    
+    // The root of a tree of about the given number of entries, created on first use
+    static Path create(TreeShape shape, int entries) throws IOException {
+        return fixture(shape.name().toLowerCase() + "-" + entries, root -> {
+            Random random = new Random(entries);
+            if (shape == TreeShape.WIDE) {
+                for (int i = 0; i < entries; i++) {
+                    // One in ten is a directory
+                    String name = name(random, i);
+                    if (i % 10 == 0) {
+                        Files.createDirectory(root.resolve(name));
+                    } else {
+                        Files.createFile(root.resolve(name));
+                    }
+                }
+            } else {
+                createDeep(root, entries, random, new int[] {0});
+            }
+        });
+    }
+    
+    private static void createDeep(Path directory, int entries, Random random, int[] counter) throws IOException {
+        for (int i = 0; i < DEEP_FILES && counter[0] < entries; i++) {
+            Files.createFile(directory.resolve(name(random, counter[0]++)));
+        }
+        
+        // Share the remaining entries among the subdirectories
+        if (counter[0] >= entries) {
+            return;
+        }
+        List<Path> subdirectories = new ArrayList<>();
+        for (int i = 0; i < DEEP_SUBDIRECTORIES && counter[0] < entries; i++) {
+            Path subdirectory = directory.resolve("dir" + counter[0]++);
+            Files.createDirectory(subdirectory);
+            subdirectories.add(subdirectory);
+        }
+        int share = Math.max(1, (entries - counter[0]) / subdirectories.size());
+        for (int i = 0; i < subdirectories.size(); i++) {
+            // The last subdirectory also takes what the division left over
+            int limit = i == subdirectories.size() - 1 ? entries : Math.min(entries, counter[0] + share);
+            createDeep(subdirectories.get(i), limit, random, counter);
+        }
+    }
+    
+    // Every directory of a tree, the root first
+    static List<Path> directories(Path root) throws IOException {
+        List<Path> directories = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                directories.add(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return directories;
+    }
+    
+    // Entries with realistic names in random order, one in ten a directory
+    static List<FileEntry> entries(int count, long seed) {
+        Random random = new Random(seed);
+        List<FileEntry> entries = new ArrayList<>(count);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            boolean directory = i % 10 == 0;
+            entries.add(new FileEntry(name(random, i), directory, false,
+                    directory ? 4096 : random.nextInt(10_000_000), now - random.nextInt(1_000_000_000)));
+        }
+        Collections.shuffle(entries, random);
+        return entries;
+    }
+    
+    // Unique names in mixed case with common extensions
+    private static String name(Random random, int index) {
+        return WORDS[random.nextInt(WORDS.length)] + "_" + index + EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+    }
+    
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+            for (Path child : stream) {
+                if (Files.isDirectory(child)) {
+                    deleteTree(child);
+                } else {
+                    Files.delete(child);
+                }
+            }
+        }
+        Files.delete(root);
+    }
+}
@@ -0,0 +1,88 @@
+package fileexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Building and updating FileTableModel: a complete listing, a streamed listing
+// replaced by its sorted version, and a refresh that merges a few changes in place
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TableModelBenchmark {
+    private static final int STREAM_BATCH = 256;
+    private static final int REFRESH_CHANGES = 100;
+    
+    @Param({"1000", "100000", "1000000"})
+    int entries;
+    
+    private final File directory = new File("synthetic");
+    private List<FileEntry> shuffled;
+    private List<FileEntry> sorted;
+    private List<FileEntry> changed;
+    private FileTableModel refreshedModel;
+    private boolean showingChanged;
+    
+    @Setup(Level.Trial)
+    public void createEntries() {
+        shuffled = SyntheticTree.entries(entries, 42);
+        sorted = new ArrayList<>(shuffled);
+        sorted.sort(FileEntry.DIRECTORIES_FIRST);
+        
+        // The same listing with a few files grown, as after a refresh
+        changed = new ArrayList<>(sorted);
+        for (int i = 0; i < REFRESH_CHANGES && i < changed.size(); i++) {
+            int index = (int) ((long) i * changed.size() / REFRESH_CHANGES);
+            FileEntry entry = changed.get(index);
+            changed.set(index, new FileEntry(entry.getName(), entry.isDirectory(), false,
+                    entry.getSize() + 1, entry.getLastModified() + 1000));
+        }
+        
+        refreshedModel = new FileTableModel();
+        refreshedModel.setEntries(directory, sorted);
+    }
+    
+    @Benchmark
+    public FileTableModel setEntries() {
+        FileTableModel model = new FileTableModel();
+        model.setEntries(directory, sorted);
+        return model;
+    }
+    
+    // Rows streamed in while the directory is read, then replaced by the sorted listing
+    @Benchmark
+    public FileTableModel streamThenSort() {
+        FileTableModel model = new FileTableModel();
+        model.clear(directory);
+        for (int i = 0; i < shuffled.size(); i += STREAM_BATCH) {
+            model.addEntries(shuffled.subList(i, Math.min(i + STREAM_BATCH, shuffled.size())));
+        }
+        model.setEntries(directory, sorted);
+        return model;
+    }
+    
+    // Each call switches between the two listings, merging REFRESH_CHANGES updated rows
+    @Benchmark
+    public FileTableModel mergeRefresh() {
+        showingChanged = !showingChanged;
+        refreshedModel.setEntries(directory, showingChanged ? changed : sorted);
+        return refreshedModel;
+    }
+}
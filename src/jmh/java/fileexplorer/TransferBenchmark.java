@@ -0,0 +1,152 @@
+package fileexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Compares FileTransferService with a plain single-threaded stream copy on a
+// generated tree of many small files and a few large ones. Each operation copies
+// the whole tree once. Set fileexplorer.jmh.dir to measure a particular file system.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TransferBenchmark {
+    @Param({"5000"})
+    int smallFiles;
+    
+    @Param({"16"})
+    int smallFileKb;
+    
+    @Param({"2"})
+    int largeFiles;
+    
+    @Param({"256"})
+    int largeFileMb;
+    
+    private Path base;
+    private Path source;
+    private Path target;
+    private FileTransferService service;
+    
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        String name = "transfer-" + smallFiles + "x" + smallFileKb + "k-" + largeFiles + "x" + largeFileMb + "m";
+        source = SyntheticTree.fixture(name, directory -> {
+            Random random = new Random(42);
+            byte[] buffer = new byte[1024 * 1024];
+            random.nextBytes(buffer);
+            int smallFileBytes = Math.min(smallFileKb * 1024, buffer.length);
+            for (int i = 0; i < smallFiles; i++) {
+                // A hundred files per directory, like a source or cache tree
+                Path subdirectory = Files.createDirectories(directory.resolve("dir" + (i / 100)));
+                try (OutputStream out = Files.newOutputStream(subdirectory.resolve("file" + i + ".dat"))) {
+                    out.write(buffer, 0, smallFileBytes);
+                }
+            }
+            long largeFileBytes = largeFileMb * 1024L * 1024;
+            for (int i = 0; i < largeFiles; i++) {
+                try (OutputStream out = Files.newOutputStream(directory.resolve("large" + i + ".dat"))) {
+                    for (long written = 0; written < largeFileBytes; written += buffer.length) {
+                        out.write(buffer, 0, (int) Math.min(buffer.length, largeFileBytes - written));
+                    }
+                }
+            }
+        });
+        // The copies are made next to it and deleted again
+        base = Files.createTempDirectory(SyntheticTree.base(), "transfer-targets");
+        
+        service = new FileTransferService(job -> { });
+    }
+    
+    @Setup(Level.Invocation)
+    public void createTarget() throws IOException {
+        target = Files.createTempDirectory(base, "target");
+    }
+    
+    @TearDown(Level.Invocation)
+    public void deleteTarget() throws IOException {
+        deleteTree(target);
+    }
+    
+    @TearDown(Level.Trial)
+    public void deleteTargets() throws IOException {
+        deleteTree(base);
+    }
+    
+    @Benchmark
+    public void transferService() throws InterruptedException {
+        service.submit(FileTransferService.Operation.COPY, Collections.singletonList(source), target)
+                .awaitCompletion();
+    }
+    
+    // The naive approach: one thread, one file at a time, through an 8 KB buffer
+    @Benchmark
+    public void streamCopy() throws IOException {
+        Path copy = target.resolve("source");
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes)
+                    throws IOException {
+                Files.createDirectories(copy.resolve(source.relativize(directory).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+            
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                byte[] buffer = new byte[8192];
+                try (InputStream in = Files.newInputStream(file);
+                     OutputStream out = Files.newOutputStream(copy.resolve(source.relativize(file).toString()))) {
+                    int read;
+                    while ((read = in.read(buffer)) > 0) {
+                        out.write(buffer, 0, read);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+    
+    private static void deleteTree(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+            
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                Files.delete(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
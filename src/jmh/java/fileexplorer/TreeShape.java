@@ -0,0 +1,9 @@
+package fileexplorer;
+
+// Layout of a generated benchmark tree; public because JMH's generated code sets it as a parameter
+public enum TreeShape {
+    // Every entry in one directory
+    WIDE,
+    // Small directories nested several levels deep
+    DEEP
+}
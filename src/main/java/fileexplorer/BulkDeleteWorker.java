@@ -0,0 +1,397 @@
+package fileexplorer;
+
+import javax.swing.SwingWorker;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Deletes files and whole directory trees off the event dispatch thread. The
+// trees are first scanned in parallel, which gives the totals for progress and
+// ETA. Then all files are deleted by a pool of workers, and finally the directories
+// are removed bottom-up, deepest level first, each level in parallel. Symbolic
+// links are deleted, never followed. A failure keeps the directories above the
+// failed entry and is collected for a single summary; nothing stops on the
+// first error. Stopping takes effect between two deletions, and the worker still
+// finishes normally with what was deleted up to then.
+class BulkDeleteWorker extends SwingWorker<BulkDeleteWorker.Result, BulkDeleteWorker.Progress> {
+    
+    interface Listener {
+        // Called on the EDT about every PROGRESS_INTERVAL_MILLIS
+        void progressChanged(Progress progress);
+        
+        // Called on the EDT when the deletion has finished, was stopped or failed
+        void deleteFinished(Result result);
+    }
+    
+    static final class Progress {
+        final boolean scanning;
+        final long deleted;
+        final long total;
+        final long deletedBytes;
+        final long elapsedMillis;
+        
+        Progress(boolean scanning, long deleted, long total, long deletedBytes, long elapsedMillis) {
+            this.scanning = scanning;
+            this.deleted = deleted;
+            this.total = total;
+            this.deletedBytes = deletedBytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+        
+        double itemsPerSecond() {
+            return elapsedMillis > 0 ? deleted * 1000.0 / elapsedMillis : 0;
+        }
+        
+        double bytesPerSecond() {
+            return elapsedMillis > 0 ? deletedBytes * 1000.0 / elapsedMillis : 0;
+        }
+        
+        // Estimated time left from the rate so far, or -1 while it cannot be estimated
+        long remainingMillis() {
+            double rate = itemsPerSecond();
+            return scanning || rate <= 0 ? -1 : (long) ((total - deleted) * 1000 / rate);
+        }
+    }
+    
+    static final class Result {
+        // Top-level names that no longer exist
+        final List<String> removedNames;
+        final long deleted;
+        final long deletedBytes;
+        final List<String> errors;
+        final int errorCount;
+        final boolean cancelled;
+        
+        Result(List<String> removedNames, long deleted, long deletedBytes,
+                List<String> errors, int errorCount, boolean cancelled) {
+            this.removedNames = removedNames;
+            this.deleted = deleted;
+            this.deletedBytes = deletedBytes;
+            this.errors = errors;
+            this.errorCount = errorCount;
+            this.cancelled = cancelled;
+        }
+    }
+    
+    private static final int PROGRESS_INTERVAL_MILLIS = 250;
+    private static final int FILES_PER_TASK = 64;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    
+    private static final class DirectoryRecord {
+        final Path path;
+        final int depth;
+        
+        DirectoryRecord(Path path, int depth) {
+            this.path = path;
+            this.depth = depth;
+        }
+    }
+    
+    private static final class FileRecord {
+        final Path path;
+        final long size;
+        
+        FileRecord(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+    
+    private final Path directory;
+    private final List<String> names;
+    private final Listener listener;
+    private final ForkJoinPool pool;
+    
+    private final Queue<FileRecord> files = new ConcurrentLinkedQueue<>();
+    private final Queue<DirectoryRecord> directories = new ConcurrentLinkedQueue<>();
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong deletedBytes = new AtomicLong();
+    
+    // Directories that must stay because something below them could not be deleted
+    private final Set<Path> kept = ConcurrentHashMap.newKeySet();
+    private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger errorCount = new AtomicInteger();
+    
+    // The names to delete by their paths, and those that are gone, recorded as they go so
+    // nothing is checked on the EDT. Search results name paths below the directory.
+    private final Map<Path, String> namesByPath = new HashMap<>();
+    private final Set<String> removedNames = ConcurrentHashMap.newKeySet();
+    
+    private volatile boolean stopped;
+    private long startedAt;
+    
+    // Deletes the named entries of a directory, including everything below them
+    BulkDeleteWorker(Path directory, List<String> names, Listener listener) {
+        this.directory = directory;
+        this.names = names;
+        this.listener = listener;
+        for (String name : names) {
+            namesByPath.put(directory.resolve(name), name);
+        }
+        this.pool = new ForkJoinPool(Integer.getInteger("fileexplorer.delete.parallelism",
+                Math.min(8, Runtime.getRuntime().availableProcessors() * 2)));
+    }
+    
+    // Stops the deletion between two deletions; used instead of cancel, so that the
+    // worker waits for its pool and reports what was deleted
+    void stop() {
+        stopped = true;
+    }
+    
+    @Override
+    protected Result doInBackground() throws InterruptedException {
+        startedAt = System.currentTimeMillis();
+        try {
+            // Scan: collect every file and directory below the selection
+            List<ScanTask> scans = new ArrayList<>();
+            for (String name : names) {
+                scans.add(new ScanTask(directory.resolve(name), 0));
+            }
+            await(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(scans);
+                }
+            }, true);
+            
+            // Files first, in parallel chunks
+            List<FileRecord> fileList = new ArrayList<>(files);
+            List<DeleteFilesTask> fileTasks = new ArrayList<>();
+            for (int i = 0; i < fileList.size(); i += FILES_PER_TASK) {
+                fileTasks.add(new DeleteFilesTask(fileList.subList(i, Math.min(i + FILES_PER_TASK, fileList.size()))));
+            }
+            await(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(fileTasks);
+                }
+            }, false);
+            
+            // Then directories bottom-up: a level is only started once every deeper level is done
+            List<DirectoryRecord> directoryList = new ArrayList<>(directories);
+            directoryList.sort((a, b) -> Integer.compare(b.depth, a.depth));
+            int start = 0;
+            while (start < directoryList.size() && !stopped) {
+                int depth = directoryList.get(start).depth;
+                int end = start;
+                while (end < directoryList.size() && directoryList.get(end).depth == depth) {
+                    end++;
+                }
+                
+                List<DeleteDirectoryTask> level = new ArrayList<>();
+                for (DirectoryRecord record : directoryList.subList(start, end)) {
+                    level.add(new DeleteDirectoryTask(record.path));
+                }
+                await(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        invokeAll(level);
+                    }
+                }, false);
+                start = end;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return result(stopped);
+    }
+    
+    private Result result(boolean cancelled) {
+        List<String> removed = new ArrayList<>();
+        for (String name : names) {
+            if (removedNames.contains(name)) {
+                removed.add(name);
+            }
+        }
+        return new Result(removed, deleted.get(), deletedBytes.get(), new ArrayList<>(errors), errorCount.get(),
+                cancelled);
+    }
+    
+    // Waits for a task run on the pool, publishing progress meanwhile
+    private void await(ForkJoinTask<?> task, boolean scanning) throws InterruptedException {
+        pool.execute(task);
+        while (true) {
+            try {
+                task.get(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                publish(progress(scanning));
+            } catch (ExecutionException e) {
+                addError(directory, e.getCause());
+                return;
+            }
+        }
+    }
+    
+    private Progress progress(boolean scanning) {
+        return new Progress(scanning, deleted.get(), scanned.get(), deletedBytes.get(),
+                System.currentTimeMillis() - startedAt);
+    }
+    
+    private void recordError(Path path, IOException e) {
+        addError(path, e);
+        
+        // Its directories cannot become empty, so they are left alone
+        for (Path parent = path.getParent(); parent != null && !parent.equals(directory); parent = parent.getParent()) {
+            if (!kept.add(parent)) {
+                break;
+            }
+        }
+    }
+    
+    private void addError(Path path, Throwable e) {
+        if (errorCount.incrementAndGet() <= MAX_REPORTED_ERRORS) {
+            errors.add(path + ": " + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+        }
+    }
+    
+    // Notes a deleted path if it is one of the names to delete
+    private void removed(Path path) {
+        String name = namesByPath.get(path);
+        if (name != null) {
+            removedNames.add(name);
+        }
+    }
+    
+    private final class ScanTask extends RecursiveAction {
+        private final Path path;
+        private final int depth;
+        
+        ScanTask(Path path, int depth) {
+            this.path = path;
+            this.depth = depth;
+        }
+        
+        @Override
+        protected void compute() {
+            if (stopped) {
+                return;
+            }
+            
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException e) {
+                // Gone already
+                removed(path);
+                return;
+            } catch (IOException e) {
+                recordError(path, e);
+                return;
+            }
+            scanned.incrementAndGet();
+            
+            if (!attributes.isDirectory()) {
+                files.add(new FileRecord(path, attributes.size()));
+                return;
+            }
+            
+            directories.add(new DirectoryRecord(path, depth));
+            List<ScanTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path child : stream) {
+                    if (stopped) {
+                        return;
+                    }
+                    subdirectories.add(new ScanTask(child, depth + 1));
+                }
+            } catch (IOException e) {
+                // Not listed completely, so it cannot be emptied
+                recordError(path, e);
+                kept.add(path);
+            }
+            invokeAll(subdirectories);
+        }
+    }
+    
+    private final class DeleteFilesTask extends RecursiveAction {
+        private final List<FileRecord> chunk;
+        
+        DeleteFilesTask(List<FileRecord> chunk) {
+            this.chunk = chunk;
+        }
+        
+        @Override
+        protected void compute() {
+            for (FileRecord file : chunk) {
+                if (stopped) {
+                    return;
+                }
+                try {
+                    Files.deleteIfExists(file.path);
+                    deleted.incrementAndGet();
+                    deletedBytes.addAndGet(file.size);
+                    removed(file.path);
+                } catch (IOException e) {
+                    recordError(file.path, e);
+                }
+            }
+        }
+    }
+    
+    private final class DeleteDirectoryTask extends RecursiveAction {
+        private final Path path;
+        
+        DeleteDirectoryTask(Path path) {
+            this.path = path;
+        }
+        
+        @Override
+        protected void compute() {
+            if (stopped || kept.contains(path)) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(path);
+                deleted.incrementAndGet();
+                removed(path);
+            } catch (IOException e) {
+                recordError(path, e);
+            }
+        }
+    }
+    
+    @Override
+    protected void process(List<Progress> updates) {
+        if (!isDone()) {
+            listener.progressChanged(updates.get(updates.size() - 1));
+        }
+    }
+    
+    @Override
+    protected void done() {
+        Result result;
+        try {
+            result = get();
+        } catch (ExecutionException e) {
+            // The worker itself failed: an error, reported with what was deleted before it
+            addError(directory, e.getCause());
+            result = result(stopped);
+        } catch (InterruptedException | CancellationException e) {
+            result = result(true);
+        }
+        listener.deleteFinished(result);
+    }
+}
@@ -0,0 +1,232 @@
+package fileexplorer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// What a content search looks for: a literal or a regex, matched line by line. Most
+// lines of most files cannot match, so the bytes are first searched for a literal
+// every match must contain (Boyer-Moore-Horspool, without decoding anything) and
+// only the lines holding it are decoded and given to the regex. A literal search is
+// decided on the bytes alone when they are exact; ignoring case, that holds for
+// ASCII text without k, s or i, whose Unicode case variants (the Kelvin sign, long
+// s, dotless i) match too. A regex without such a literal, e.g. "a|b", is run on
+// every line.
+final class ContentQuery {
+    
+    // Inline flags (?i) change how the literals after them match
+    private static final Pattern INLINE_FLAGS = Pattern.compile("\\(\\?[idmsuxU-]+[:)]");
+    
+    private final String text;
+    private final boolean regex;
+    private final boolean ignoreCase;
+    private final Pattern pattern;
+    
+    // The bytes every matching line contains, lower-cased if case is ignored; empty if there are none
+    private final byte[] literal;
+    private final boolean exact;
+    private final byte[] fold = new byte[256];
+    private final int[] shifts = new int[256];
+    
+    // Throws PatternSyntaxException for an invalid regex
+    ContentQuery(String text, boolean regex, boolean ignoreCase) {
+        this.text = text;
+        this.regex = regex;
+        this.ignoreCase = ignoreCase;
+        pattern = Pattern.compile(regex ? text : Pattern.quote(text),
+                ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+        
+        String longest = "";
+        List<String> runs = new ArrayList<>();
+        if (!regex) {
+            runs.add(text);
+        } else if (!text.contains("\\Q") && !INLINE_FLAGS.matcher(text).find()) {
+            runs = requiredRuns(text);
+        }
+        for (String run : runs) {
+            for (String part : ignoreCase ? foldableParts(run) : new String[] {run}) {
+                if (part.length() > longest.length()) {
+                    longest = part;
+                }
+            }
+        }
+        literal = (ignoreCase ? longest.toLowerCase() : longest).getBytes(StandardCharsets.UTF_8);
+        exact = !regex && literal.length > 0 && longest.equals(text);
+        
+        for (int i = 0; i < 256; i++) {
+            byte b = (byte) i;
+            fold[i] = ignoreCase && b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+            shifts[i] = Math.max(1, literal.length);
+        }
+        for (int i = 0; i < literal.length - 1; i++) {
+            shifts[literal[i] & 0xFF] = literal.length - 1 - i;
+        }
+    }
+    
+    String getText() {
+        return text;
+    }
+    
+    boolean isRegex() {
+        return regex;
+    }
+    
+    boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+    
+    boolean hasLiteral() {
+        return literal.length > 0;
+    }
+    
+    // True if finding the literal is finding a match, so lines need not be decoded to decide
+    boolean isExact() {
+        return exact;
+    }
+    
+    // Where the literal first occurs starting at from and before to, or -1; it may run on to the buffer's limit
+    int indexOf(ByteBuffer bytes, int from, int to) {
+        int last = literal.length - 1;
+        int end = Math.min(to, bytes.limit() - last);
+        byte lastByte = literal[last];
+        for (int i = from; i < end; ) {
+            byte b = fold[bytes.get(i + last) & 0xFF];
+            if (b == lastByte) {
+                int j = last - 1;
+                while (j >= 0 && fold[bytes.get(i + j) & 0xFF] == literal[j]) {
+                    j--;
+                }
+                if (j < 0) {
+                    return i;
+                }
+            }
+            i += shifts[b & 0xFF];
+        }
+        return -1;
+    }
+    
+    // Where the first match in the line starts, or -1
+    int find(String line) {
+        Matcher matcher = pattern.matcher(line);
+        return matcher.find() ? matcher.start() : -1;
+    }
+    
+    // The runs of literal characters outside groups that every match of the regex
+    // contains; none if it has a top-level alternative
+    private static List<String> requiredRuns(String regex) {
+        List<String> runs = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            char literalChar;
+            if (c == '\\') {
+                // An escaped punctuation character stands for itself; \d, \b, \1, \n and the like do not
+                char next = ++i < regex.length() ? regex.charAt(i) : 'x';
+                if (Character.isLetterOrDigit(next)) {
+                    i = skipEscape(regex, i);
+                    endRun(runs, run);
+                    continue;
+                }
+                literalChar = next;
+            } else if (c == '[') {
+                i = skipClass(regex, i);
+                if (i < 0) {
+                    return new ArrayList<>();
+                }
+                endRun(runs, run);
+                continue;
+            } else if (c == '(' || c == ')') {
+                depth += c == '(' ? 1 : -1;
+                endRun(runs, run);
+                continue;
+            } else if (c == '|') {
+                if (depth == 0) {
+                    return new ArrayList<>();
+                }
+                continue;
+            } else if (c == '*' || c == '?' || c == '{') {
+                // The character before is optional
+                if (run.length() > 0) {
+                    run.setLength(run.length() - 1);
+                    if (run.length() > 0 && Character.isHighSurrogate(run.charAt(run.length() - 1))) {
+                        run.setLength(run.length() - 1);
+                    }
+                }
+                endRun(runs, run);
+                if (c == '{') {
+                    i = Math.max(i, regex.indexOf('}', i));
+                }
+                continue;
+            } else if (c == '+' || c == '.' || c == '^' || c == '$') {
+                endRun(runs, run);
+                continue;
+            } else {
+                literalChar = c;
+            }
+            if (depth == 0) {
+                run.append(literalChar);
+            }
+        }
+        endRun(runs, run);
+        return runs;
+    }
+    
+    private static void endRun(List<String> runs, StringBuilder run) {
+        if (run.length() > 0) {
+            runs.add(run.toString());
+            run.setLength(0);
+        }
+    }
+    
+    // The index of the last character of the escape whose letter or digit is at start:
+    // \x41, \u0041, \x{1F600}, \p{Alpha}, \k<name>, \12 and the like
+    private static int skipEscape(String regex, int start) {
+        char c = regex.charAt(start);
+        int i = start;
+        if ((c == 'x' || c == 'p' || c == 'P' || c == 'N') && start + 1 < regex.length()
+                && regex.charAt(start + 1) == '{') {
+            i = regex.indexOf('}', start);
+        } else if (c == 'k') {
+            i = regex.indexOf('>', start);
+        } else if (c == 'x') {
+            i = start + 2;
+        } else if (c == 'u') {
+            i = start + 4;
+        } else if (c == 'c' || c == 'p' || c == 'P') {
+            i = start + 1;
+        } else if (Character.isDigit(c)) {
+            while (i + 1 < regex.length() && Character.isDigit(regex.charAt(i + 1))) {
+                i++;
+            }
+        }
+        return i < 0 ? regex.length() : Math.min(i, regex.length() - 1);
+    }
+    
+    // The index of the ] closing the class opened at start, or -1 for a nested class
+    private static int skipClass(String regex, int start) {
+        int i = start + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        for (; i < regex.length() && regex.charAt(i) != ']'; i++) {
+            if (regex.charAt(i) == '\\') {
+                i++;
+            } else if (regex.charAt(i) == '[') {
+                return -1;
+            }
+        }
+        return i;
+    }
+    
+    // The parts of a run whose case can be folded byte by byte
+    private static String[] foldableParts(String run) {
+        return run.split("[^\\x00-\\x7F]|[kKsSiI]");
+    }
+}
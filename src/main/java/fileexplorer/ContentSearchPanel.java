@@ -0,0 +1,245 @@
+package fileexplorer;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.PatternSyntaxException;
+
+// Finds the files below the current folder whose contents match a literal or a
+// regex. Matches stream into the table while the search runs, with its throughput
+// in the status line; the selected match is shown in a preview below the table, and
+// double-clicking one opens its folder in the file table.
+class ContentSearchPanel extends JPanel {
+    
+    private static final int REFRESH_MILLIS = 250;
+    
+    private final ContentSearcher searcher = new ContentSearcher();
+    private final Consumer<File> navigator;
+    private final JTextField queryField = new JTextField(24);
+    private final JCheckBox regexBox = new JCheckBox("Regex");
+    private final JCheckBox caseBox = new JCheckBox("Match case");
+    private final JSpinner maxSizeSpinner = new JSpinner(new SpinnerNumberModel(
+            Integer.getInteger("fileexplorer.contentSearch.maxFileMb", 256).intValue(), 1, 1 << 20, 16));
+    private final JButton searchButton = new JButton("Search");
+    private final JButton stopButton = new JButton("Stop");
+    private final JLabel statusLabel = new JLabel(" ");
+    private final MatchTableModel tableModel = new MatchTableModel();
+    private final JTable table = new JTable(tableModel);
+    private final PreviewPanel previewPanel = new PreviewPanel();
+    private final Timer refreshTimer;
+    
+    // The folder shown in the file table, and the last search
+    private File directory;
+    private ContentSearcher.Search search;
+    
+    ContentSearchPanel(Consumer<File> navigator) {
+        super(new BorderLayout());
+        this.navigator = navigator;
+        
+        queryField.setToolTipText("Text to find in the files below the current folder (Enter to search, Esc to stop)");
+        queryField.addActionListener(e -> startSearch());
+        queryField.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "stopSearch");
+        queryField.getActionMap().put("stopSearch", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                stopSearch();
+            }
+        });
+        maxSizeSpinner.setToolTipText("Larger files are skipped");
+        searchButton.addActionListener(e -> startSearch());
+        stopButton.addActionListener(e -> stopSearch());
+        stopButton.setEnabled(false);
+        
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        controls.add(new JLabel("Find:"));
+        controls.add(queryField);
+        controls.add(regexBox);
+        controls.add(caseBox);
+        controls.add(new JLabel("Max MB:"));
+        controls.add(maxSizeSpinner);
+        controls.add(searchButton);
+        controls.add(stopButton);
+        JPanel top = new JPanel(new BorderLayout());
+        top.setBorder(BorderFactory.createEmptyBorder(2, 4, 2, 4));
+        top.add(controls, BorderLayout.NORTH);
+        top.add(statusLabel, BorderLayout.SOUTH);
+        
+        table.setAutoCreateRowSorter(true);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getColumnModel().getColumn(0).setPreferredWidth(250);
+        table.getColumnModel().getColumn(1).setPreferredWidth(60);
+        table.getColumnModel().getColumn(2).setPreferredWidth(500);
+        table.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                ContentSearcher.Match match = selectedMatch();
+                if (match != null) {
+                    previewPanel.showFile(match.file.toFile(), match.offset);
+                }
+            }
+        });
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                ContentSearcher.Match match = selectedMatch();
+                if (e.getClickCount() == 2 && match != null) {
+                    navigator.accept(match.file.getParent().toFile());
+                }
+            }
+        });
+        
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(table), previewPanel);
+        split.setResizeWeight(0.5);
+        add(top, BorderLayout.NORTH);
+        add(split, BorderLayout.CENTER);
+        
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+        showStatus();
+    }
+    
+    // The folder the next search starts from
+    void setDirectory(File directory) {
+        this.directory = directory;
+        if (search == null) {
+            showStatus();
+        }
+    }
+    
+    private void startSearch() {
+        String text = queryField.getText();
+        if (directory == null || text.isEmpty()) {
+            return;
+        }
+        ContentQuery query;
+        try {
+            query = new ContentQuery(text, regexBox.isSelected(), !caseBox.isSelected());
+        } catch (PatternSyntaxException e) {
+            statusLabel.setText(" Invalid regex: " + e.getDescription());
+            return;
+        }
+        long maxFileBytes = ((Number) maxSizeSpinner.getValue()).longValue() * 1024 * 1024;
+        tableModel.clear();
+        previewPanel.showFile(null);
+        search = searcher.search(directory.toPath(), query, maxFileBytes);
+        refreshTimer.start();
+        updateButtons();
+        showStatus();
+    }
+    
+    private void stopSearch() {
+        if (search != null && !search.isFinished()) {
+            searcher.cancel();
+        }
+    }
+    
+    // Takes the matches found since the last refresh
+    private void refresh() {
+        List<ContentSearcher.Match> batch = new ArrayList<>();
+        search.drainTo(batch);
+        tableModel.add(batch);
+        if (search.isFinished()) {
+            refreshTimer.stop();
+            updateButtons();
+        }
+        showStatus();
+    }
+    
+    private void updateButtons() {
+        boolean running = search != null && !search.isFinished();
+        searchButton.setEnabled(!running);
+        stopButton.setEnabled(running);
+    }
+    
+    private ContentSearcher.Match selectedMatch() {
+        int row = table.getSelectedRow();
+        return row >= 0 ? tableModel.getMatch(table.convertRowIndexToModel(row)) : null;
+    }
+    
+    private void showStatus() {
+        if (search == null) {
+            statusLabel.setText(directory != null ? " Search the contents of the files below " + directory : " ");
+            return;
+        }
+        double seconds = Math.max(search.getElapsedNanos(), 1) / 1e9;
+        int matches = search.getMatchCount();
+        String text = String.format(" %,d %s in %,d files (%,.0f files/s, %s/s), %,d skipped",
+                matches, matches == 1 ? "match" : "matches", search.getFilesSearched(),
+                search.getFilesSearched() / seconds, FileExplorer.formatSize((long) (search.getBytesSearched() / seconds)),
+                search.getFilesSkipped());
+        if (!search.isFinished()) {
+            text = " Searching..." + text;
+        } else if (search.isLimitReached()) {
+            text += " (stopped at " + String.format("%,d", ContentSearcher.MAX_MATCHES) + " matches)";
+        } else if (search.isCancelled()) {
+            text += " (stopped)";
+        }
+        statusLabel.setText(text);
+    }
+    
+    private final class MatchTableModel extends AbstractTableModel {
+        private final String[] columns = {"File", "Line", "Text"};
+        private final List<ContentSearcher.Match> matches = new ArrayList<>();
+        
+        void clear() {
+            matches.clear();
+            fireTableDataChanged();
+        }
+        
+        void add(List<ContentSearcher.Match> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            int first = matches.size();
+            matches.addAll(batch);
+            fireTableRowsInserted(first, matches.size() - 1);
+        }
+        
+        ContentSearcher.Match getMatch(int row) {
+            return matches.get(row);
+        }
+        
+        @Override
+        public int getRowCount() {
+            return matches.size();
+        }
+        
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+        
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+        
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 1 ? Long.class : String.class;
+        }
+        
+        @Override
+        public Object getValueAt(int row, int column) {
+            ContentSearcher.Match match = matches.get(row);
+            switch (column) {
+                case 0:
+                    // Below the folder searched
+                    Path root = search.getRoot();
+                    return match.file.startsWith(root) ? root.relativize(match.file).toString() : match.file.toString();
+                case 1:
+                    return match.line;
+                default:
+                    return match.text.replace('\t', ' ');
+            }
+        }
+    }
+}
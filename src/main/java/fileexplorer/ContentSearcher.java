@@ -0,0 +1,458 @@
+package fileexplorer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Searches the contents of the files below a directory, like grep -rn. The tree is
+// walked with a fork-join traversal like DiskUsageScanner's, and the files of each
+// directory are searched in batches on the same pool. Files of up to a megabyte are
+// read into a buffer kept per thread; larger ones are memory-mapped a window at a
+// time, so a multi-gigabyte log is searched without copying it. A file with a NUL
+// byte near its start is taken as binary and skipped, as is one over the size limit.
+// Matches are queued as they are found, for a view to take a few times a second.
+class ContentSearcher {
+    
+    // Matches beyond this many are not collected
+    static final int MAX_MATCHES = 10_000;
+    
+    // Lines are cut at this many bytes either side of a match, so minified files stay cheap
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+    
+    // Text shown per match
+    private static final int MAX_TEXT_CHARS = 400;
+    private static final int TEXT_CONTEXT_CHARS = 40;
+    
+    private static final int MAP_THRESHOLD = 1024 * 1024;
+    private static final int WINDOW_BYTES = 64 * 1024 * 1024;
+    private static final int BINARY_CHECK_BYTES = 8192;
+    
+    // Files of a directory are searched in tasks of up to this many files or bytes
+    private static final int BATCH_FILES = 32;
+    private static final long BATCH_BYTES = 8 * 1024 * 1024;
+    
+    private static final ThreadLocal<ByteBuffer> buffers =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(BINARY_CHECK_BYTES));
+    
+    static final class Match {
+        final Path file;
+        final long line;
+        final long offset;
+        final String text;
+        
+        // The line counts from 1; the offset is where it starts in the file
+        Match(Path file, long line, long offset, String text) {
+            this.file = file;
+            this.line = line;
+            this.offset = offset;
+            this.text = text;
+        }
+    }
+    
+    // A search in progress or finished. Its counters are read by the view while it runs.
+    static final class Search {
+        private final Path root;
+        private final ContentQuery query;
+        private final long maxFileBytes;
+        private final Queue<Match> matches = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger matchCount = new AtomicInteger();
+        private final LongAdder filesSearched = new LongAdder();
+        private final LongAdder bytesSearched = new LongAdder();
+        private final LongAdder filesSkipped = new LongAdder();
+        private final Set<Object> visited = ConcurrentHashMap.newKeySet();
+        private final long startNanos = System.nanoTime();
+        private volatile long endNanos;
+        private volatile boolean finished;
+        private volatile boolean cancelled;
+        
+        Search(Path root, ContentQuery query, long maxFileBytes) {
+            this.root = root;
+            this.query = query;
+            this.maxFileBytes = maxFileBytes;
+        }
+        
+        Path getRoot() {
+            return root;
+        }
+        
+        ContentQuery getQuery() {
+            return query;
+        }
+        
+        // Moves the matches found since the last call to the collection
+        void drainTo(Collection<Match> collection) {
+            for (Match match; (match = matches.poll()) != null; ) {
+                collection.add(match);
+            }
+        }
+        
+        int getMatchCount() {
+            return Math.min(matchCount.get(), MAX_MATCHES);
+        }
+        
+        boolean isLimitReached() {
+            return matchCount.get() >= MAX_MATCHES;
+        }
+        
+        long getFilesSearched() {
+            return filesSearched.sum();
+        }
+        
+        long getBytesSearched() {
+            return bytesSearched.sum();
+        }
+        
+        // Binary files and files over the size limit
+        long getFilesSkipped() {
+            return filesSkipped.sum();
+        }
+        
+        long getElapsedNanos() {
+            return (finished ? endNanos : System.nanoTime()) - startNanos;
+        }
+        
+        boolean isFinished() {
+            return finished;
+        }
+        
+        boolean isCancelled() {
+            return cancelled;
+        }
+        
+        void cancel() {
+            cancelled = true;
+        }
+        
+        private boolean isStopped() {
+            return cancelled || matchCount.get() >= MAX_MATCHES;
+        }
+        
+        private void run() {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                new DirectoryTask(this, root, attributes).invoke();
+            } catch (IOException e) {
+                // Unreadable root - nothing found
+            }
+            endNanos = System.nanoTime();
+            finished = true;
+        }
+        
+        private void add(Match match) {
+            if (matchCount.getAndIncrement() < MAX_MATCHES) {
+                matches.add(match);
+            }
+        }
+    }
+    
+    private final ForkJoinPool pool;
+    
+    // The search in progress; accessed on the EDT
+    private Search currentSearch;
+    
+    ContentSearcher() {
+        this(Integer.getInteger("fileexplorer.contentSearch.parallelism",
+                Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+    
+    ContentSearcher(int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+    }
+    
+    // Starts searching the files below the root, replacing any search still running
+    Search search(Path root, ContentQuery query, long maxFileBytes) {
+        cancel();
+        Search search = new Search(root, query, maxFileBytes);
+        currentSearch = search;
+        pool.execute(search::run);
+        return search;
+    }
+    
+    void cancel() {
+        if (currentSearch != null) {
+            currentSearch.cancel();
+            currentSearch = null;
+        }
+    }
+    
+    private static final class DirectoryTask extends RecursiveAction {
+        private final Search search;
+        private final Path directory;
+        private final BasicFileAttributes attributes;
+        
+        DirectoryTask(Search search, Path directory, BasicFileAttributes attributes) {
+            this.search = search;
+            this.directory = directory;
+            this.attributes = attributes;
+        }
+        
+        @Override
+        protected void compute() {
+            Object key = attributes.fileKey() != null ? attributes.fileKey() : directory;
+            if (search.isStopped() || !search.visited.add(key)) {
+                return;
+            }
+            
+            List<RecursiveAction> tasks = new ArrayList<>();
+            List<Path> batch = new ArrayList<>();
+            long[] batchBytes = {0};
+            try {
+                Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), 1,
+                        new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes fileAttributes) {
+                        if (fileAttributes.isDirectory()) {
+                            tasks.add(new DirectoryTask(search, file, fileAttributes));
+                        } else if (fileAttributes.isRegularFile()) {
+                            if (fileAttributes.size() > search.maxFileBytes) {
+                                search.filesSkipped.increment();
+                            } else {
+                                batch.add(file);
+                                batchBytes[0] += fileAttributes.size();
+                                if (batch.size() >= BATCH_FILES || batchBytes[0] >= BATCH_BYTES) {
+                                    tasks.add(new FileTask(search, new ArrayList<>(batch)));
+                                    batch.clear();
+                                    batchBytes[0] = 0;
+                                }
+                            }
+                        }
+                        return search.isStopped() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                    }
+                    
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                // Unreadable directory - nothing in it is searched
+            }
+            if (!batch.isEmpty()) {
+                tasks.add(new FileTask(search, batch));
+            }
+            if (!search.isStopped()) {
+                invokeAll(tasks);
+            }
+        }
+    }
+    
+    private static final class FileTask extends RecursiveAction {
+        private final Search search;
+        private final List<Path> files;
+        
+        FileTask(Search search, List<Path> files) {
+            this.search = search;
+            this.files = files;
+        }
+        
+        @Override
+        protected void compute() {
+            for (Path file : files) {
+                if (search.isStopped()) {
+                    return;
+                }
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    new FileScan(search, file, channel).run();
+                } catch (IOException | InternalError e) {
+                    // Unreadable, or truncated while mapped - searched as far as it could be read
+                }
+            }
+        }
+    }
+    
+    // One file searched front to back, through one buffer at a time
+    private static final class FileScan {
+        private final Search search;
+        private final ContentQuery query;
+        private final Path file;
+        private final FileChannel channel;
+        
+        private ByteBuffer buffer;
+        private long bufferStart;
+        
+        // Newlines counted so far, up to countedOffset, for the line numbers of matches
+        private long countedOffset;
+        private long countedLines;
+        
+        // Where the next line to look at starts; a line reported in one window can end in the next
+        private long resumeAt;
+        
+        FileScan(Search search, Path file, FileChannel channel) {
+            this.search = search;
+            this.query = search.query;
+            this.file = file;
+            this.channel = channel;
+        }
+        
+        void run() throws IOException {
+            long size = channel.size();
+            if (size > search.maxFileBytes) {
+                search.filesSkipped.increment();
+                return;
+            }
+            
+            // Small files, and the start of large ones for the binary check, are read into the thread's buffer
+            ByteBuffer heap = buffers.get();
+            int readSize = (int) Math.min(size, size <= MAP_THRESHOLD ? MAP_THRESHOLD : BINARY_CHECK_BYTES);
+            if (heap.capacity() < readSize) {
+                heap = ByteBuffer.allocate(Math.max(readSize, Math.min(MAP_THRESHOLD, heap.capacity() * 2)));
+                buffers.set(heap);
+            }
+            heap.clear().limit(readSize);
+            while (heap.hasRemaining() && channel.read(heap, heap.position()) > 0) {
+                // Read until full or at the end
+            }
+            heap.flip();
+            if (isBinary(heap)) {
+                search.filesSkipped.increment();
+                return;
+            }
+            
+            if (size <= MAP_THRESHOLD) {
+                buffer = heap;
+                bufferStart = 0;
+                searchBuffer(0, buffer.limit());
+            } else {
+                // Each window is mapped with a line's worth of bytes either side, so lines
+                // around its edges are complete
+                for (long start = 0; start < size && !search.isStopped(); start += WINDOW_BYTES) {
+                    bufferStart = Math.max(0, start - MAX_LINE_BYTES);
+                    long end = Math.min(size, start + WINDOW_BYTES + MAX_LINE_BYTES);
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, bufferStart, end - bufferStart);
+                    searchBuffer((int) (start - bufferStart), (int) (Math.min(size, start + WINDOW_BYTES) - bufferStart));
+                }
+            }
+            search.filesSearched.increment();
+            search.bytesSearched.add(size);
+        }
+        
+        private static boolean isBinary(ByteBuffer bytes) {
+            for (int i = 0, end = Math.min(bytes.limit(), BINARY_CHECK_BYTES); i < end; i++) {
+                if (bytes.get(i) == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        // Looks at the lines that start within [from, to) of the buffer
+        private void searchBuffer(int from, int to) throws IOException {
+            int position = (int) Math.max(from, resumeAt - bufferStart);
+            while (position < to && !search.isStopped()) {
+                int lineStart;
+                int lineEnd;
+                if (query.hasLiteral()) {
+                    int found = query.indexOf(buffer, position, to);
+                    if (found < 0) {
+                        break;
+                    }
+                    lineStart = lineStart(found, Math.max(0, found - MAX_LINE_BYTES));
+                    lineEnd = lineEnd(found);
+                } else {
+                    lineStart = position;
+                    lineEnd = lineEnd(position);
+                }
+                
+                // An exact literal needs no regex, except to place a long line's text around the match
+                String line = decode(lineStart, lineEnd);
+                int matchAt;
+                if (query.isExact()) {
+                    matchAt = line.length() > MAX_TEXT_CHARS ? Math.max(0, query.find(line)) : 0;
+                } else {
+                    matchAt = query.find(line);
+                }
+                if (matchAt >= 0) {
+                    report(lineStart, line, matchAt);
+                }
+                position = lineEnd < buffer.limit() && buffer.get(lineEnd) == '\n' ? lineEnd + 1 : lineEnd;
+                if (position == lineStart) {
+                    position++;
+                }
+            }
+            resumeAt = bufferStart + Math.max(position, to);
+        }
+        
+        // The start of the line holding the index, looking back no further than limit
+        private int lineStart(int index, int limit) {
+            while (index > limit && buffer.get(index - 1) != '\n') {
+                index--;
+            }
+            return index;
+        }
+        
+        // The newline ending the line holding the index, or where the line is cut
+        private int lineEnd(int index) {
+            int limit = (int) Math.min(buffer.limit(), (long) index + MAX_LINE_BYTES);
+            while (index < limit && buffer.get(index) != '\n') {
+                index++;
+            }
+            return index;
+        }
+        
+        private String decode(int start, int end) {
+            if (end > start && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            byte[] bytes = new byte[end - start];
+            buffer.duplicate().position(start).get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        private void report(int lineStart, String line, int matchAt) throws IOException {
+            long offset = bufferStart + lineStart;
+            countNewlines(offset);
+            String text = line;
+            if (text.length() > MAX_TEXT_CHARS) {
+                int start = Math.max(0, Math.min(matchAt - TEXT_CONTEXT_CHARS, text.length() - MAX_TEXT_CHARS));
+                text = (start > 0 ? "…" : "") + text.substring(start, start + MAX_TEXT_CHARS) + "…";
+            }
+            search.add(new Match(file, countedLines + 1, offset, text));
+        }
+        
+        // Counts the newlines up to the offset; earlier windows are mapped again only when
+        // the first match in the file is far into it
+        private void countNewlines(long offset) throws IOException {
+            while (countedOffset < bufferStart) {
+                long end = Math.min(bufferStart, countedOffset + WINDOW_BYTES);
+                MappedByteBuffer earlier = channel.map(FileChannel.MapMode.READ_ONLY, countedOffset, end - countedOffset);
+                countedLines += count(earlier, 0, earlier.limit());
+                countedOffset = end;
+            }
+            countedLines += count(buffer, (int) (countedOffset - bufferStart), (int) (offset - bufferStart));
+            countedOffset = offset;
+        }
+        
+        private static long count(ByteBuffer bytes, int from, int to) {
+            long newlines = 0;
+            for (int i = from; i < to; i++) {
+                if (bytes.get(i) == '\n') {
+                    newlines++;
+                }
+            }
+            return newlines;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package fileexplorer;
+
+import java.util.List;
+import java.util.Map;
+
+// The metrics as JMX attributes, keyed by metric name. Public because the MXBean
+// introspector requires it.
+public interface DiagnosticsMXBean {
+    Map<String, Long> getCounts();
+    
+    Map<String, Double> getMeanMillis();
+    
+    Map<String, Double> getP99Millis();
+    
+    Map<String, Double> getMaxMillis();
+    
+    // The last EDT stalls with the stack traces caught during them, most recent first
+    List<String> getRecentStalls();
+    
+    long getStallThresholdMillis();
+    
+    void reset();
+}
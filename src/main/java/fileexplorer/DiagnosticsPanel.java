@@ -0,0 +1,197 @@
+package fileexplorer;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.HierarchyEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+// The metrics in full: count, mean, 99th percentile, maximum and latest duration of
+// each, and the recent EDT stalls with the stack trace the watchdog caught for the
+// selected one, and why the JMX export failed if it did. Refreshes once a second
+// while it is showing.
+class DiagnosticsPanel extends JPanel {
+    
+    private static final int REFRESH_MILLIS = 1000;
+    
+    private final MetricTableModel tableModel = new MetricTableModel();
+    private final DefaultListModel<Metrics.Stall> stallListModel = new DefaultListModel<>();
+    private final JList<Metrics.Stall> stallList = new JList<>(stallListModel);
+    private final JTextArea stackTraceArea = new JTextArea();
+    private final JLabel mbeanLabel = new JLabel();
+    private List<Metrics.Stall> stalls = new ArrayList<>();
+    
+    DiagnosticsPanel() {
+        super(new BorderLayout(0, 4));
+        setBorder(BorderFactory.createEmptyBorder(4, 4, 4, 4));
+        
+        JTable table = new JTable(tableModel);
+        table.setShowGrid(false);
+        table.setIntercellSpacing(new Dimension(0, 0));
+        table.getColumnModel().getColumn(0).setPreferredWidth(180);
+        JScrollPane tableScroll = new JScrollPane(table);
+        tableScroll.setPreferredSize(new Dimension(600, 160));
+        
+        stallList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        stallList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                    boolean isSelected, boolean cellHasFocus) {
+                Metrics.Stall stall = (Metrics.Stall) value;
+                String text = String.format("%tT  %.0f ms  %s", stall.getTime(), stall.getMillis(), stall.getEvent());
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
+        stallList.addListSelectionListener(e -> showStackTrace());
+        stackTraceArea.setEditable(false);
+        stackTraceArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+        
+        JSplitPane stallSplit = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+                new JScrollPane(stallList), new JScrollPane(stackTraceArea));
+        stallSplit.setDividerLocation(100);
+        JPanel stallPanel = new JPanel(new BorderLayout());
+        stallPanel.setBorder(BorderFactory.createTitledBorder(
+                "EDT stalls over " + EdtWatchdog.getThresholdMillis() + " ms"));
+        stallPanel.add(stallSplit, BorderLayout.CENTER);
+        stallPanel.setPreferredSize(new Dimension(600, 280));
+        
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            Metrics.reset();
+            refresh();
+        });
+        JButton copyButton = new JButton("Copy");
+        copyButton.setToolTipText("Copy the metrics and stalls as text");
+        copyButton.addActionListener(e -> Toolkit.getDefaultToolkit().getSystemClipboard()
+                .setContents(new StringSelection(report()), null));
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 4, 0));
+        buttons.add(copyButton);
+        buttons.add(resetButton);
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.add(mbeanLabel, BorderLayout.CENTER);
+        bottom.add(buttons, BorderLayout.EAST);
+        
+        add(tableScroll, BorderLayout.NORTH);
+        add(stallPanel, BorderLayout.CENTER);
+        add(bottom, BorderLayout.SOUTH);
+        
+        Timer refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) == 0) {
+                return;
+            }
+            if (isShowing()) {
+                refresh();
+                refreshTimer.start();
+            } else {
+                refreshTimer.stop();
+            }
+        });
+    }
+    
+    private void refresh() {
+        tableModel.fireTableRowsUpdated(0, tableModel.getRowCount() - 1);
+        String mbeanFailure = Metrics.getMBeanFailure();
+        mbeanLabel.setText(mbeanFailure != null ? "Not exported over JMX: " + mbeanFailure : "");
+        
+        // The stall list only changes when a stall comes or goes, so the selection is kept otherwise
+        List<Metrics.Stall> latest = Metrics.getStalls();
+        if (!latest.equals(stalls)) {
+            Metrics.Stall selected = stallList.getSelectedValue();
+            stalls = latest;
+            stallListModel.clear();
+            for (Metrics.Stall stall : stalls) {
+                stallListModel.addElement(stall);
+            }
+            if (selected != null && stalls.contains(selected)) {
+                stallList.setSelectedValue(selected, false);
+            } else {
+                showStackTrace();
+            }
+        }
+    }
+    
+    private void showStackTrace() {
+        Metrics.Stall stall = stallList.getSelectedValue();
+        if (stall == null) {
+            stackTraceArea.setText("");
+        } else if (stall.getStackTrace() == null) {
+            stackTraceArea.setText("The event finished before its stack trace was taken");
+        } else {
+            stackTraceArea.setText(stall.toString());
+        }
+        stackTraceArea.setCaretPosition(0);
+    }
+    
+    private String report() {
+        StringBuilder text = new StringBuilder();
+        for (Metrics.Metric metric : Metrics.ALL) {
+            if (metric.isTimed()) {
+                text.append(String.format("%s: %d, mean %.2f ms, p99 %.2f ms, max %.2f ms%n", metric.getName(),
+                        metric.getCount(), metric.getMeanMillis(), metric.getPercentileMillis(0.99),
+                        metric.getMaxMillis()));
+            } else {
+                text.append(String.format("%s: %d%n", metric.getName(), metric.getCount()));
+            }
+        }
+        if (Metrics.getMBeanFailure() != null) {
+            text.append(String.format("Not exported over JMX: %s%n", Metrics.getMBeanFailure()));
+        }
+        for (Metrics.Stall stall : Metrics.getStalls()) {
+            text.append('\n').append(stall).append('\n');
+        }
+        return text.toString();
+    }
+    
+    private static final class MetricTableModel extends AbstractTableModel {
+        private final String[] columnNames = {"Metric", "Count", "Mean", "p99", "Max", "Last"};
+        
+        @Override
+        public int getRowCount() {
+            return Metrics.ALL.size();
+        }
+        
+        @Override
+        public int getColumnCount() {
+            return columnNames.length;
+        }
+        
+        @Override
+        public String getColumnName(int column) {
+            return columnNames[column];
+        }
+        
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? String.class : column == 1 ? Long.class : Object.class;
+        }
+        
+        @Override
+        public Object getValueAt(int row, int column) {
+            Metrics.Metric metric = Metrics.ALL.get(row);
+            if (column == 0) {
+                return metric.getName();
+            }
+            if (column == 1) {
+                return metric.getCount();
+            }
+            if (!metric.isTimed()) {
+                return "";
+            }
+            switch (column) {
+                case 2: return formatMillis(metric.getMeanMillis());
+                case 3: return formatMillis(metric.getPercentileMillis(0.99));
+                case 4: return formatMillis(metric.getMaxMillis());
+                case 5: return formatMillis(metric.getLastMillis());
+                default: return null;
+            }
+        }
+        
+        private static String formatMillis(double millis) {
+            return String.format(millis < 10 ? "%.2f ms" : "%.0f ms", millis);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package fileexplorer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+// Bounded cache of directory listings shared by the table, the tree and history
+// navigation. A snapshot is reused as long as the directory's modification time
+// has not changed; the directory watcher keeps snapshots of watched directories
+// up to date. Snapshots are evicted least recently used first once their
+// estimated size exceeds the byte limit (system property fileexplorer.cache.maxBytes).
+class DirectoryCache {
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    
+    // Modification times can be this coarse (FAT, some NFS servers), so a snapshot
+    // taken this soon after a change is not trusted to have seen all of it
+    private static final long TIMESTAMP_GRANULARITY_MILLIS = 2000;
+    
+    static final class Snapshot {
+        private final List<FileEntry> entries;
+        private final long lastModified;
+        private final long listedAt;
+        private final long estimatedBytes;
+        
+        Snapshot(List<FileEntry> entries, long lastModified, long listedAt) {
+            this.entries = Collections.unmodifiableList(entries);
+            this.lastModified = lastModified;
+            this.listedAt = listedAt;
+            this.estimatedBytes = estimateBytes(entries);
+        }
+        
+        // Visible entries, directories first
+        List<FileEntry> getEntries() {
+            return entries;
+        }
+        
+        long getLastModified() {
+            return lastModified;
+        }
+        
+        long getListedAt() {
+            return listedAt;
+        }
+        
+        boolean isValidFor(long directoryLastModified) {
+            return directoryLastModified == lastModified
+                    && listedAt - lastModified >= TIMESTAMP_GRANULARITY_MILLIS;
+        }
+    }
+    
+    private final long maxBytes;
+    
+    // Guarded by this
+    private final LinkedHashMap<Path, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+    
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    
+    DirectoryCache() {
+        this(Long.getLong("fileexplorer.cache.maxBytes", DEFAULT_MAX_BYTES));
+    }
+    
+    DirectoryCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+    
+    // Returns the last known listing without checking it against the disk, or null
+    synchronized Snapshot peek(Path directory) {
+        return snapshots.get(directory);
+    }
+    
+    // Returns the sorted visible entries of a directory, listing it only if the cached
+    // snapshot is out of date. Entries read from disk are also passed to the consumer
+    // as they arrive. Returns null if cancelled. Must not be called on the EDT.
+    List<FileEntry> list(Path directory, BooleanSupplier cancelled, Consumer<FileEntry> consumer)
+            throws IOException {
+        Metrics.STAT_CALLS.increment();
+        long lastModified = Files.getLastModifiedTime(directory).toMillis();
+        Snapshot snapshot = peek(directory);
+        if (snapshot != null && snapshot.isValidFor(lastModified)) {
+            hits.incrementAndGet();
+            return snapshot.entries;
+        }
+        
+        misses.incrementAndGet();
+        long listedAt = System.currentTimeMillis();
+        List<FileEntry> entries = new ArrayList<>();
+        FileEntry.readDirectory(directory, cancelled, entry -> {
+            entries.add(entry);
+            consumer.accept(entry);
+        });
+        if (cancelled.getAsBoolean()) {
+            return null;
+        }
+        
+        FileEntry.sort(entries);
+        snapshot = new Snapshot(entries, lastModified, listedAt);
+        put(directory, snapshot);
+        return snapshot.entries;
+    }
+    
+    // Applies changes reported by the directory watcher to a cached snapshot
+    synchronized void applyChanges(Path directory, long lastModified, List<FileEntry> changed, Collection<String> removed) {
+        Snapshot snapshot = peek(directory);
+        if (snapshot == null) {
+            return;
+        }
+        
+        Set<String> replaced = new HashSet<>(removed);
+        for (FileEntry entry : changed) {
+            replaced.add(entry.getName());
+        }
+        
+        List<FileEntry> entries = new ArrayList<>(snapshot.entries.size() + changed.size());
+        for (FileEntry entry : snapshot.entries) {
+            if (!replaced.contains(entry.getName())) {
+                entries.add(entry);
+            }
+        }
+        for (FileEntry entry : changed) {
+            int index = Collections.binarySearch(entries, entry, FileEntry.DIRECTORIES_FIRST);
+            entries.add(index < 0 ? -index - 1 : index, entry);
+        }
+        
+        put(directory, new Snapshot(entries, lastModified, System.currentTimeMillis()));
+    }
+    
+    // Puts back a listing saved by an earlier session unless the directory has been
+    // listed since. It keeps its timestamps, so it is trusted only while the
+    // directory's modification time is unchanged.
+    synchronized void restore(Path directory, List<FileEntry> entries, long lastModified, long listedAt) {
+        if (!snapshots.containsKey(directory)) {
+            put(directory, new Snapshot(entries, lastModified, listedAt));
+        }
+    }
+    
+    synchronized void invalidate(Path directory) {
+        Snapshot snapshot = snapshots.remove(directory);
+        if (snapshot != null) {
+            currentBytes -= snapshot.estimatedBytes;
+        }
+    }
+    
+    private synchronized void put(Path directory, Snapshot snapshot) {
+        invalidate(directory);
+        if (snapshot.estimatedBytes > maxBytes) {
+            // Would evict everything else; not worth caching
+            return;
+        }
+        
+        snapshots.put(directory, snapshot);
+        currentBytes += snapshot.estimatedBytes;
+        
+        Iterator<Snapshot> iterator = snapshots.values().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().estimatedBytes;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+    
+    // The cached directories, most recently used first
+    synchronized List<Path> getDirectories() {
+        List<Path> directories = new ArrayList<>(snapshots.keySet());
+        Collections.reverse(directories);
+        return directories;
+    }
+    
+    long getHits() {
+        return hits.get();
+    }
+    
+    long getMisses() {
+        return misses.get();
+    }
+    
+    long getEvictions() {
+        return evictions.get();
+    }
+    
+    synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+    
+    long getMaxBytes() {
+        return maxBytes;
+    }
+    
+    synchronized int getSize() {
+        return snapshots.size();
+    }
+    
+    private static long estimateBytes(List<FileEntry> entries) {
+        // FileEntry object, its name String and char data, and the list slot
+        long bytes = 64;
+        for (FileEntry entry : entries) {
+            bytes += 96 + 2L * entry.getName().length();
+        }
+        return bytes;
+    }
+}
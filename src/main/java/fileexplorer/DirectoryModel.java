@@ -0,0 +1,301 @@
+package fileexplorer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+// Lists directories for the table and the tree without any Swing dependency, so it
+// runs headless. Directories are read through the snapshot cache (one stat per entry,
+// hidden entries skipped, sorted directories first) on a pluggable executor - virtual
+// threads when the runtime has them - so several can be listed at once. Results go to
+// the listener through the executor the caller passes: SwingUtilities::invokeLater for
+// the views, Runnable::run in tests and benchmarks.
+//
+// Prefetching lists directories the user is likely to open next into the cache, at
+// most a few at a time, so it never crowds out a listing the user asked for. Between
+// two calls to cancelPrefetches() it reads no more than a budget of entries
+// (fileexplorer.prefetch.budget), and it counts how many prefetched directories were
+// opened afterwards.
+class DirectoryModel {
+    
+    interface Listener {
+        // Called with entries in directory order while the listing is in progress
+        void entriesLoaded(List<FileEntry> batch);
+        
+        // Called with all visible entries, directories first
+        void listingFinished(List<FileEntry> entries);
+        
+        // Called if the directory could not be read
+        void listingFailed(Exception e);
+    }
+    
+    // A listing in progress. Cancelling it stops the read and drops callbacks not yet delivered.
+    static final class Listing {
+        private volatile boolean cancelled;
+        
+        void cancel() {
+            cancelled = true;
+        }
+        
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+    
+    // Streamed entries are delivered once this many have been read, or after the interval
+    private static final int BATCH_SIZE = 256;
+    private static final long BATCH_INTERVAL_NANOS = 50_000_000L;
+    
+    private static final long DEFAULT_PREFETCH_BUDGET = 20_000;
+    
+    // Prefetched directories remembered for the hit rate
+    private static final int MAX_TRACKED_PREFETCHES = 1024;
+    
+    private final DirectoryCache cache;
+    private final Executor executor;
+    private final int maxPrefetches;
+    private final long prefetchBudget;
+    
+    // Guarded by this
+    private final Set<Path> prefetchQueue = new LinkedHashSet<>();
+    private final Set<Path> prefetching = new HashSet<>();
+    private final Set<Path> prefetched = new LinkedHashSet<>();
+    
+    // Bumped by cancelPrefetches(), so prefetches still reading stop
+    private final AtomicInteger prefetchGeneration = new AtomicInteger();
+    // Entries read by prefetches since then, one more per directory for its stat
+    private final AtomicLong prefetchSpent = new AtomicLong();
+    
+    private final AtomicLong prefetches = new AtomicLong();
+    private final AtomicLong prefetchHits = new AtomicLong();
+    
+    DirectoryModel(DirectoryCache cache) {
+        this(cache, createExecutor(), Integer.getInteger("fileexplorer.prefetch.parallelism", 2),
+                Long.getLong("fileexplorer.prefetch.budget", DEFAULT_PREFETCH_BUDGET));
+    }
+    
+    DirectoryModel(DirectoryCache cache, Executor executor, int maxPrefetches, long prefetchBudget) {
+        this.cache = cache;
+        this.executor = executor;
+        this.maxPrefetches = maxPrefetches;
+        this.prefetchBudget = prefetchBudget;
+    }
+    
+    // Virtual threads on Java 21 and later (fileexplorer.listing.threads=platform to opt out),
+    // otherwise a pool of fileexplorer.listing.parallelism daemon threads
+    static Executor createExecutor() {
+        if (!"platform".equals(System.getProperty("fileexplorer.listing.threads"))) {
+            try {
+                return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // Older runtime
+            }
+        }
+        
+        int parallelism = Integer.getInteger("fileexplorer.listing.parallelism",
+                Math.min(8, 2 * Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        return Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "directory-lister-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    // Lists a directory in the background. With streaming, entries are also delivered in
+    // batches while the directory is read; a listing still current in the cache is
+    // delivered without reading the directory, and so without batches.
+    Listing list(Path directory, boolean streaming, Executor callbackExecutor, Listener listener) {
+        Listing listing = new Listing();
+        executor.execute(() -> {
+            List<FileEntry> batch = new ArrayList<>();
+            long[] batchStarted = {System.nanoTime()};
+            try {
+                List<FileEntry> entries = read(directory, listing::isCancelled, entry -> {
+                    if (!streaming) {
+                        return;
+                    }
+                    batch.add(entry);
+                    if (batch.size() >= BATCH_SIZE || System.nanoTime() - batchStarted[0] >= BATCH_INTERVAL_NANOS) {
+                        List<FileEntry> loaded = new ArrayList<>(batch);
+                        deliver(listing, callbackExecutor, () -> listener.entriesLoaded(loaded));
+                        batch.clear();
+                        batchStarted[0] = System.nanoTime();
+                    }
+                });
+                if (entries == null) {
+                    // Cancelled
+                    return;
+                }
+                
+                if (!batch.isEmpty()) {
+                    deliver(listing, callbackExecutor, () -> listener.entriesLoaded(batch));
+                }
+                deliver(listing, callbackExecutor, () -> listener.listingFinished(entries));
+            } catch (IOException | RuntimeException e) {
+                deliver(listing, callbackExecutor, () -> listener.listingFailed(e));
+            }
+        });
+        return listing;
+    }
+    
+    // Lists several directories in parallel and delivers their listings together, in
+    // the order given, once the last one is read; a directory that could not be read
+    // gets null. The tree uses it to load every missing level of a path at once.
+    Listing listAll(List<Path> directories, Executor callbackExecutor, Consumer<List<List<FileEntry>>> consumer) {
+        Listing listing = new Listing();
+        List<List<FileEntry>> results = new ArrayList<>(Collections.nCopies(directories.size(), null));
+        AtomicInteger remaining = new AtomicInteger(directories.size());
+        if (directories.isEmpty()) {
+            deliver(listing, callbackExecutor, () -> consumer.accept(results));
+        }
+        for (int i = 0; i < directories.size(); i++) {
+            int index = i;
+            executor.execute(() -> {
+                try {
+                    List<FileEntry> entries = read(directories.get(index), listing::isCancelled, entry -> { });
+                    synchronized (results) {
+                        results.set(index, entries);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Left null
+                }
+                if (remaining.decrementAndGet() == 0 && !listing.isCancelled()) {
+                    List<List<FileEntry>> listings;
+                    synchronized (results) {
+                        listings = new ArrayList<>(results);
+                    }
+                    deliver(listing, callbackExecutor, () -> consumer.accept(listings));
+                }
+            });
+        }
+        return listing;
+    }
+    
+    // Lists a directory on the calling thread, which must not be the EDT. Returns null if cancelled.
+    List<FileEntry> read(Path directory, BooleanSupplier cancelled, Consumer<FileEntry> consumer)
+            throws IOException {
+        synchronized (this) {
+            if (prefetched.remove(directory)) {
+                prefetchHits.incrementAndGet();
+            }
+        }
+        
+        JfrEvents.Listing event = new JfrEvents.Listing();
+        event.begin();
+        long started = System.nanoTime();
+        List<FileEntry> entries = cache.list(directory, cancelled, consumer);
+        if (entries != null) {
+            Metrics.LISTING.record(System.nanoTime() - started);
+            event.end();
+            if (event.shouldCommit()) {
+                event.directory = directory.toString();
+                event.entries = entries.size();
+                event.commit();
+            }
+        }
+        return entries;
+    }
+    
+    // Returns the last known listing without checking it against the disk, or null
+    List<FileEntry> peek(Path directory) {
+        DirectoryCache.Snapshot snapshot = cache.peek(directory);
+        return snapshot != null ? snapshot.getEntries() : null;
+    }
+    
+    // Replaces the directories waiting to be prefetched, most wanted first. Directories
+    // being prefetched already are left to finish. Nothing more is read once the budget is spent.
+    void prefetch(Collection<Path> directories) {
+        synchronized (this) {
+            prefetchQueue.clear();
+            for (Path directory : directories) {
+                if (!prefetching.contains(directory)) {
+                    prefetchQueue.add(directory);
+                }
+            }
+        }
+        startPrefetches();
+    }
+    
+    // Called when the user acts: drops the queued prefetches, stops the ones in progress
+    // and renews the budget
+    void cancelPrefetches() {
+        synchronized (this) {
+            prefetchQueue.clear();
+        }
+        prefetchGeneration.incrementAndGet();
+        prefetchSpent.set(0);
+    }
+    
+    // Directories prefetched so far
+    long getPrefetches() {
+        return prefetches.get();
+    }
+    
+    // Prefetched directories that were opened afterwards
+    long getPrefetchHits() {
+        return prefetchHits.get();
+    }
+    
+    private void startPrefetches() {
+        while (true) {
+            Path directory;
+            synchronized (this) {
+                if (prefetching.size() >= maxPrefetches || prefetchQueue.isEmpty()
+                        || prefetchSpent.get() >= prefetchBudget) {
+                    return;
+                }
+                Iterator<Path> iterator = prefetchQueue.iterator();
+                directory = iterator.next();
+                iterator.remove();
+                prefetching.add(directory);
+            }
+            
+            int generation = prefetchGeneration.get();
+            BooleanSupplier cancelled = () ->
+                    prefetchGeneration.get() != generation || prefetchSpent.get() >= prefetchBudget;
+            executor.execute(() -> {
+                try {
+                    prefetchSpent.incrementAndGet();
+                    if (cache.list(directory, cancelled, entry -> prefetchSpent.incrementAndGet()) != null) {
+                        prefetches.incrementAndGet();
+                        synchronized (this) {
+                            prefetched.add(directory);
+                            if (prefetched.size() > MAX_TRACKED_PREFETCHES) {
+                                prefetched.remove(prefetched.iterator().next());
+                            }
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Nothing to cache; the directory is read again when it is opened
+                } finally {
+                    synchronized (this) {
+                        prefetching.remove(directory);
+                    }
+                    startPrefetches();
+                }
+            });
+        }
+    }
+    
+    private static void deliver(Listing listing, Executor callbackExecutor, Runnable callback) {
+        callbackExecutor.execute(() -> {
+            if (!listing.isCancelled()) {
+                callback.run();
+            }
+        });
+    }
+}
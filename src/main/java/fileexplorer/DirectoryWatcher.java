@@ -0,0 +1,197 @@
+package fileexplorer;
+
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Watches directories for changes with a WatchService. Events arriving within a
+// short window are merged per directory, the attributes of the affected entries
+// are read on the watcher thread, and the resulting row-level changes are
+// delivered to the listener on the EDT. A directory can be watched by several
+// views at once; it stays registered until each of them has unwatched it.
+class DirectoryWatcher {
+    
+    interface Listener {
+        // Called on the EDT with entries that were created or modified and names that no longer exist,
+        // together with the directory's modification time after the changes
+        void directoryChanged(Path directory, long lastModified, List<FileEntry> changed, Set<String> removed);
+        
+        // Called on the EDT when events were lost and the directory has to be listed again
+        void directoryOverflowed(Path directory);
+    }
+    
+    // How long a burst of events is collected before it is applied
+    private static final long COALESCE_MILLIS = 250;
+    
+    private final Listener listener;
+    private final WatchService watchService;
+    
+    // Guarded by this
+    private final Map<Path, WatchKey> keys = new HashMap<>();
+    private final Map<Path, Integer> watchCounts = new HashMap<>();
+    private Thread thread;
+    
+    DirectoryWatcher(Listener listener) {
+        this.listener = listener;
+        
+        WatchService service = null;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            // No change notification on this platform; views are refreshed by hand
+        }
+        this.watchService = service;
+    }
+    
+    synchronized void watch(Path directory) {
+        if (watchService == null) {
+            return;
+        }
+        
+        Integer count = watchCounts.get(directory);
+        if (count != null) {
+            watchCounts.put(directory, count + 1);
+            return;
+        }
+        
+        try {
+            WatchKey key = directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            keys.put(directory, key);
+            watchCounts.put(directory, 1);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Directory not watchable (e.g. on some network file systems)
+            return;
+        }
+        
+        if (thread == null) {
+            thread = new Thread(this::run, "directory-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+    
+    synchronized void unwatch(Path directory) {
+        Integer count = watchCounts.get(directory);
+        if (count == null) {
+            return;
+        }
+        
+        if (count > 1) {
+            watchCounts.put(directory, count - 1);
+        } else {
+            watchCounts.remove(directory);
+            keys.remove(directory).cancel();
+        }
+    }
+    
+    synchronized boolean isWatched(Path directory) {
+        return watchCounts.containsKey(directory);
+    }
+    
+    private void run() {
+        Map<Path, Set<String>> changedNames = new HashMap<>();
+        Set<Path> overflowed = new HashSet<>();
+        long deadline = 0;
+        
+        try {
+            while (true) {
+                WatchKey key;
+                if (deadline == 0) {
+                    key = watchService.take();
+                } else {
+                    key = watchService.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                }
+                
+                if (key != null) {
+                    Path directory = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflowed.add(directory);
+                        } else {
+                            changedNames.computeIfAbsent(directory, d -> new LinkedHashSet<>())
+                                    .add(event.context().toString());
+                        }
+                    }
+                    key.reset();
+                    
+                    if (deadline == 0) {
+                        deadline = System.currentTimeMillis() + COALESCE_MILLIS;
+                    }
+                }
+                
+                if (deadline != 0 && System.currentTimeMillis() >= deadline) {
+                    deliver(changedNames, overflowed);
+                    changedNames.clear();
+                    overflowed.clear();
+                    deadline = 0;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watcher shut down
+        }
+    }
+    
+    private void deliver(Map<Path, Set<String>> changedNames, Set<Path> overflowed) {
+        for (Path directory : overflowed) {
+            changedNames.remove(directory);
+            SwingUtilities.invokeLater(() -> {
+                if (isWatched(directory)) {
+                    listener.directoryOverflowed(directory);
+                }
+            });
+        }
+        
+        for (Map.Entry<Path, Set<String>> change : changedNames.entrySet()) {
+            Path directory = change.getKey();
+            List<FileEntry> changed = new ArrayList<>();
+            Set<String> removed = new HashSet<>();
+            
+            // Only the state after the burst matters, so create/modify/delete sequences collapse
+            for (String name : change.getValue()) {
+                try {
+                    FileEntry entry = FileEntry.read(directory.resolve(name));
+                    if (entry.isHidden()) {
+                        removed.add(name);
+                    } else {
+                        changed.add(entry);
+                    }
+                } catch (IOException e) {
+                    removed.add(name);
+                }
+            }
+            
+            long lastModified;
+            try {
+                Metrics.STAT_CALLS.increment();
+                lastModified = Files.getLastModifiedTime(directory).toMillis();
+            } catch (IOException e) {
+                lastModified = -1;
+            }
+            
+            long directoryLastModified = lastModified;
+            SwingUtilities.invokeLater(() -> {
+                if (isWatched(directory)) {
+                    listener.directoryChanged(directory, directoryLastModified, changed, removed);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package fileexplorer;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// What is using the space below a folder, as a squarified treemap: each folder is a
+// rectangle with an area proportional to its size, holding its subfolders and one
+// grey block for the files directly in it. The scan runs in the background and the
+// map is laid out again from the running totals a few times a second, so it
+// refines while the scan goes. Clicking a folder opens it; right-click goes up.
+// Only rectangles a few pixels wide are laid out, so a map of millions of folders
+// costs no more to draw than one of a hundred.
+class DiskUsagePanel extends JPanel {
+    
+    private static final int REFRESH_MILLIS = 250;
+    
+    private final DiskUsageScanner scanner = new DiskUsageScanner();
+    private final Consumer<File> navigator;
+    private final TreemapView view = new TreemapView();
+    private final JLabel statusLabel = new JLabel(" ");
+    private final JButton scanButton = new JButton("Scan");
+    private final JButton stopButton = new JButton("Stop");
+    private final Timer refreshTimer;
+    
+    // The folder shown in the file table, and the scan that covers it, if any
+    private File directory;
+    private DiskUsageTree tree;
+    private boolean scanning;
+    private boolean stopped;
+    
+    DiskUsagePanel(Consumer<File> navigator) {
+        super(new BorderLayout());
+        this.navigator = navigator;
+        
+        scanButton.setToolTipText("Scan the current folder and everything below it");
+        scanButton.addActionListener(e -> startScan());
+        stopButton.addActionListener(e -> stopScan());
+        stopButton.setEnabled(false);
+        
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 4, 0));
+        buttons.add(scanButton);
+        buttons.add(stopButton);
+        JPanel top = new JPanel(new BorderLayout());
+        top.setBorder(BorderFactory.createEmptyBorder(2, 4, 2, 4));
+        top.add(statusLabel, BorderLayout.CENTER);
+        top.add(buttons, BorderLayout.EAST);
+        
+        add(top, BorderLayout.NORTH);
+        add(view, BorderLayout.CENTER);
+        
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> {
+            view.refresh();
+            showStatus();
+        });
+        
+        // The first time the map is shown, the current folder is scanned
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && isShowing()
+                    && tree == null && directory != null) {
+                startScan();
+            }
+        });
+    }
+    
+    // Follows the folder shown in the file table; within the scanned tree the map zooms to it
+    void setDirectory(File directory) {
+        this.directory = directory;
+        // A folder the scan has not reached yet shows its nearest scanned parent
+        int node = DiskUsageTree.NONE;
+        if (tree != null) {
+            for (Path path = directory.toPath(); path != null && node == DiskUsageTree.NONE
+                    && path.startsWith(tree.getRoot()); path = path.getParent()) {
+                node = tree.find(path);
+            }
+        }
+        view.setTree(tree, node);
+        showStatus();
+    }
+    
+    private void startScan() {
+        if (directory == null) {
+            return;
+        }
+        scanning = true;
+        stopped = false;
+        tree = scanner.scan(directory.toPath(), finished -> {
+            scanning = false;
+            refreshTimer.stop();
+            updateButtons();
+            view.refresh();
+            showStatus();
+        });
+        view.setTree(tree, DiskUsageTree.ROOT);
+        refreshTimer.start();
+        updateButtons();
+        showStatus();
+    }
+    
+    private void stopScan() {
+        scanner.cancel();
+        scanning = false;
+        stopped = true;
+        refreshTimer.stop();
+        updateButtons();
+        view.refresh();
+        showStatus();
+    }
+    
+    private void updateButtons() {
+        scanButton.setText(tree != null && !scanning ? "Rescan" : "Scan");
+        scanButton.setEnabled(!scanning);
+        stopButton.setEnabled(scanning);
+    }
+    
+    private void showStatus() {
+        if (tree == null) {
+            statusLabel.setText(" Scan a folder to see what uses its space");
+            return;
+        }
+        int node = view.getRootNode();
+        if (node == DiskUsageTree.NONE) {
+            statusLabel.setText(" " + directory + " is outside the last scan of " + tree.getRoot());
+            return;
+        }
+        String text = " " + tree.getPath(node) + ": " + FileExplorer.formatSize(tree.getTotalBytes(node))
+                + " in " + String.format("%,d", tree.getTotalFiles(node)) + " files";
+        if (scanning) {
+            text += " (scanning, " + String.format("%,d", tree.getNodeCount()) + " folders so far)";
+        } else if (stopped) {
+            text += " (scan stopped)";
+        }
+        statusLabel.setText(text);
+    }
+    
+    private final class TreemapView extends JComponent {
+        // Rectangles smaller than this are not subdivided, and not laid out at all below MIN_SIZE
+        private static final int MIN_SUBDIVIDE_SIZE = 12;
+        private static final float MIN_SIZE = 2;
+        private static final int HEADER_HEIGHT = 16;
+        
+        // Marks the rectangle for the files directly in a folder
+        private static final int FILES = 1 << 30;
+        
+        private final Color[] palette = {
+                new Color(0x5B8FD9), new Color(0xE08A3C), new Color(0x5DB36B), new Color(0xC95B5B),
+                new Color(0x9A72C9), new Color(0x4FB0B0), new Color(0xC9A93F), new Color(0xC46FA8)};
+        
+        private DiskUsageTree tree;
+        private int rootNode = DiskUsageTree.NONE;
+        
+        // The layout: per rectangle its node (with FILES for a folder's files), colour index and bounds
+        private int count;
+        private int[] nodes = new int[256];
+        private int[] colors = new int[256];
+        private int[] depths = new int[256];
+        private float[] bounds = new float[256 * 4];
+        private boolean stale = true;
+        private int laidOutWidth;
+        private int laidOutHeight;
+        
+        TreemapView() {
+            setToolTipText("");
+            setOpaque(true);
+            addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    if (tree == null || rootNode == DiskUsageTree.NONE) {
+                        return;
+                    }
+                    int node;
+                    if (SwingUtilities.isRightMouseButton(e)) {
+                        node = tree.getParent(rootNode);
+                    } else {
+                        int index = indexAt(e.getX(), e.getY());
+                        node = index >= 0 ? nodes[index] & ~FILES : DiskUsageTree.NONE;
+                    }
+                    if (node != DiskUsageTree.NONE && node != rootNode) {
+                        navigator.accept(tree.getPath(node).toFile());
+                    }
+                }
+            });
+        }
+        
+        void setTree(DiskUsageTree tree, int rootNode) {
+            this.tree = tree;
+            this.rootNode = rootNode;
+            refresh();
+        }
+        
+        int getRootNode() {
+            return rootNode;
+        }
+        
+        void refresh() {
+            stale = true;
+            repaint();
+        }
+        
+        @Override
+        public String getToolTipText(MouseEvent e) {
+            int index = indexAt(e.getX(), e.getY());
+            if (index < 0) {
+                return null;
+            }
+            int node = nodes[index] & ~FILES;
+            if ((nodes[index] & FILES) != 0) {
+                return "Files in " + tree.getName(node) + ": " + FileExplorer.formatSize(tree.getOwnBytes(node));
+            }
+            return tree.getPath(node) + ": " + FileExplorer.formatSize(tree.getTotalBytes(node))
+                    + ", " + String.format("%,d", tree.getTotalFiles(node)) + " files";
+        }
+        
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            if (tree == null || rootNode == DiskUsageTree.NONE) {
+                return;
+            }
+            if (stale || laidOutWidth != getWidth() || laidOutHeight != getHeight()) {
+                layOut();
+            }
+            
+            Graphics2D g2 = (Graphics2D) g;
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            FontMetrics metrics = g2.getFontMetrics();
+            for (int i = 0; i < count; i++) {
+                int x = Math.round(bounds[i * 4]);
+                int y = Math.round(bounds[i * 4 + 1]);
+                int width = Math.round(bounds[i * 4] + bounds[i * 4 + 2]) - x;
+                int height = Math.round(bounds[i * 4 + 1] + bounds[i * 4 + 3]) - y;
+                if (width <= 0 || height <= 0) {
+                    continue;
+                }
+                boolean files = (nodes[i] & FILES) != 0;
+                Color color = files ? Color.LIGHT_GRAY : shade(palette[colors[i] % palette.length], depths[i]);
+                g2.setColor(color);
+                g2.fillRect(x, y, width, height);
+                g2.setColor(color.darker());
+                g2.drawRect(x, y, width - 1, height - 1);
+                
+                if (!files && width > 40 && height >= HEADER_HEIGHT) {
+                    int node = nodes[i];
+                    String label = (node == rootNode ? tree.getPath(node).toString() : tree.getName(node))
+                            + "  " + FileExplorer.formatSize(tree.getTotalBytes(node));
+                    g2.setColor(Color.BLACK);
+                    Shape clip = g2.getClip();
+                    g2.clipRect(x + 2, y, width - 4, HEADER_HEIGHT);
+                    g2.drawString(label, x + 3, y + metrics.getAscent() + 1);
+                    g2.setClip(clip);
+                }
+            }
+        }
+        
+        // Deeper folders are drawn lighter, so the nesting shows
+        private Color shade(Color color, int depth) {
+            float[] hsb = Color.RGBtoHSB(color.getRed(), color.getGreen(), color.getBlue(), null);
+            float saturation = Math.max(0.15f, hsb[1] * (1 - 0.15f * Math.min(depth, 5)));
+            return Color.getHSBColor(hsb[0], saturation, Math.min(1f, hsb[2] + 0.05f * depth));
+        }
+        
+        private int indexAt(int x, int y) {
+            // The last rectangle drawn at the point is the innermost
+            for (int i = count - 1; i >= 0; i--) {
+                float left = bounds[i * 4];
+                float top = bounds[i * 4 + 1];
+                if (x >= left && y >= top && x < left + bounds[i * 4 + 2] && y < top + bounds[i * 4 + 3]) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        
+        private void layOut() {
+            count = 0;
+            stale = false;
+            laidOutWidth = getWidth();
+            laidOutHeight = getHeight();
+            synchronized (tree) {
+                layOut(rootNode, 0, 0, 0, 0, laidOutWidth, laidOutHeight);
+            }
+        }
+        
+        // Lays out a folder and, if it is large enough, its contents
+        private void layOut(int node, int color, int depth, float x, float y, float width, float height) {
+            add(node, color, depth, x, y, width, height);
+            if (width < MIN_SUBDIVIDE_SIZE || height < MIN_SUBDIVIDE_SIZE) {
+                return;
+            }
+            x += 1;
+            y += 1;
+            width -= 2;
+            height -= 2;
+            if (width > 40 && height >= 3 * HEADER_HEIGHT) {
+                y += HEADER_HEIGHT;
+                height -= HEADER_HEIGHT;
+            }
+            
+            // The subfolders and the folder's own files, largest first
+            int childCount = 0;
+            for (int child = tree.getFirstChild(node); child != DiskUsageTree.NONE; child = tree.getNextSibling(child)) {
+                childCount++;
+            }
+            int[] items = new int[childCount + 1];
+            long[] sizes = new long[childCount + 1];
+            int itemCount = 0;
+            for (int child = tree.getFirstChild(node); child != DiskUsageTree.NONE; child = tree.getNextSibling(child)) {
+                long size = tree.getTotalBytes(child);
+                if (size > 0) {
+                    items[itemCount] = child;
+                    sizes[itemCount++] = size;
+                }
+            }
+            if (tree.getOwnBytes(node) > 0) {
+                items[itemCount] = node | FILES;
+                sizes[itemCount++] = tree.getOwnBytes(node);
+            }
+            int[] order = IndexSort.identity(itemCount);
+            IndexSort.sort(order, (a, b) -> Long.compare(sizes[b], sizes[a]));
+            
+            long total = 0;
+            for (int i = 0; i < itemCount; i++) {
+                total += sizes[i];
+            }
+            if (total == 0) {
+                return;
+            }
+            squarify(order, items, sizes, total, node == rootNode ? -1 : color, depth + 1, x, y, width, height);
+        }
+        
+        // Bruls, Huizing and van Wijk's squarified layout: rows of items are laid along
+        // the shorter side, each row taking items while that keeps them closer to square
+        private void squarify(int[] order, int[] items, long[] sizes, long total, int color, int depth,
+                float x, float y, float width, float height) {
+            double scale = (double) width * height / total;
+            int start = 0;
+            while (start < order.length) {
+                float side = Math.min(width, height);
+                if (side < MIN_SIZE) {
+                    return;
+                }
+                
+                // Extend the row while the worst aspect ratio in it improves
+                double rowArea = sizes[order[start]] * scale;
+                double worst = worst(rowArea, rowArea, rowArea, side);
+                int end = start + 1;
+                while (end < order.length) {
+                    double area = sizes[order[end]] * scale;
+                    double extended = worst(rowArea + area, sizes[order[start]] * scale, area, side);
+                    if (extended > worst) {
+                        break;
+                    }
+                    rowArea += area;
+                    worst = extended;
+                    end++;
+                }
+                
+                // The row runs along the shorter side, as thick as its area requires
+                float thickness = (float) (rowArea / side);
+                float offset = 0;
+                for (int i = start; i < end; i++) {
+                    float length = (float) (sizes[order[i]] * scale / thickness);
+                    int item = items[order[i]];
+                    int itemColor = color >= 0 ? color : order[i];
+                    float itemX = width >= height ? x : x + offset;
+                    float itemY = width >= height ? y + offset : y;
+                    float itemWidth = width >= height ? thickness : length;
+                    float itemHeight = width >= height ? length : thickness;
+                    if (itemWidth >= MIN_SIZE && itemHeight >= MIN_SIZE) {
+                        if ((item & FILES) != 0) {
+                            add(item, itemColor, depth, itemX, itemY, itemWidth, itemHeight);
+                        } else {
+                            layOut(item, itemColor, depth, itemX, itemY, itemWidth, itemHeight);
+                        }
+                    }
+                    offset += length;
+                }
+                if (width >= height) {
+                    x += thickness;
+                    width -= thickness;
+                } else {
+                    y += thickness;
+                    height -= thickness;
+                }
+                start = end;
+            }
+        }
+        
+        // The worst aspect ratio in a row of the given total area, smallest and largest item
+        private double worst(double rowArea, double largest, double smallest, float side) {
+            double sideSquared = (double) side * side;
+            double rowSquared = rowArea * rowArea;
+            return Math.max(sideSquared * largest / rowSquared, rowSquared / (sideSquared * smallest));
+        }
+        
+        private void add(int node, int color, int depth, float x, float y, float width, float height) {
+            if (count == nodes.length) {
+                nodes = Arrays.copyOf(nodes, count * 2);
+                colors = Arrays.copyOf(colors, count * 2);
+                depths = Arrays.copyOf(depths, count * 2);
+                bounds = Arrays.copyOf(bounds, count * 8);
+            }
+            nodes[count] = node;
+            colors[count] = color;
+            depths[count] = depth;
+            bounds[count * 4] = x;
+            bounds[count * 4 + 1] = y;
+            bounds[count * 4 + 2] = width;
+            bounds[count * 4 + 3] = height;
+            count++;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package fileexplorer;
+
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Scans a directory tree into a DiskUsageTree with a fork-join traversal, like
+// FolderSizeCalculator: each directory is listed once with its attributes and its
+// subdirectories are forked as separate tasks. Every listing is added to the tree
+// as soon as it is read, so the totals in the tree grow while the scan runs and a
+// view can show them as they are. Symbolic links are not followed, and a directory
+// reached twice (e.g. through a bind mount) is counted once.
+class DiskUsageScanner {
+    
+    interface Listener {
+        // Called on the EDT when the scan has finished, unless it was cancelled
+        void scanFinished(DiskUsageTree tree);
+    }
+    
+    private final ForkJoinPool pool;
+    
+    // The scan in progress; accessed on the EDT
+    private Scan currentScan;
+    
+    DiskUsageScanner() {
+        this(Integer.getInteger("fileexplorer.diskUsage.parallelism",
+                Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+    
+    DiskUsageScanner(int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+    }
+    
+    // Starts scanning the directory, replacing any scan still running. The returned
+    // tree is filled in the background.
+    DiskUsageTree scan(Path root, Listener listener) {
+        cancel();
+        DiskUsageTree tree = new DiskUsageTree(root);
+        Scan scan = new Scan(tree);
+        currentScan = scan;
+        pool.execute(() -> {
+            scan.run();
+            SwingUtilities.invokeLater(() -> {
+                if (!scan.cancelled) {
+                    currentScan = null;
+                    listener.scanFinished(tree);
+                }
+            });
+        });
+        return tree;
+    }
+    
+    void cancel() {
+        if (currentScan != null) {
+            currentScan.cancelled = true;
+            currentScan = null;
+        }
+    }
+    
+    private static final class Scan {
+        private final DiskUsageTree tree;
+        private final Set<Object> visited = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled;
+        
+        Scan(DiskUsageTree tree) {
+            this.tree = tree;
+        }
+        
+        void run() {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(tree.getRoot(), BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                new ScanTask(this, DiskUsageTree.ROOT, tree.getRoot(), attributes).invoke();
+            } catch (IOException e) {
+                // Unreadable root - the tree stays empty
+            }
+        }
+    }
+    
+    private static final class ScanTask extends RecursiveAction {
+        private final Scan scan;
+        private final int node;
+        private final Path directory;
+        private final BasicFileAttributes attributes;
+        
+        ScanTask(Scan scan, int node, Path directory, BasicFileAttributes attributes) {
+            this.scan = scan;
+            this.node = node;
+            this.directory = directory;
+            this.attributes = attributes;
+        }
+        
+        @Override
+        protected void compute() {
+            Object key = attributes.fileKey() != null ? attributes.fileKey() : directory;
+            if (scan.cancelled || !scan.visited.add(key)) {
+                return;
+            }
+            
+            long[] files = {0, 0};
+            List<String> names = new ArrayList<>();
+            List<BasicFileAttributes> subdirectoryAttributes = new ArrayList<>();
+            try {
+                // Depth 1: files and subdirectories arrive with their attributes, without recursion
+                Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), 1,
+                        new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes fileAttributes) {
+                        if (fileAttributes.isDirectory()) {
+                            names.add(file.getFileName().toString());
+                            subdirectoryAttributes.add(fileAttributes);
+                        } else {
+                            files[0] += fileAttributes.size();
+                            files[1]++;
+                        }
+                        return scan.cancelled ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                    }
+                    
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                // Unreadable directory - counts as empty
+            }
+            if (scan.cancelled) {
+                return;
+            }
+            
+            int first = scan.tree.addListing(node, files[0], files[1], names);
+            List<ScanTask> subdirectories = new ArrayList<>(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                subdirectories.add(new ScanTask(scan, first + i, directory.resolve(names.get(i)),
+                        subdirectoryAttributes.get(i)));
+            }
+            invokeAll(subdirectories);
+        }
+    }
+}
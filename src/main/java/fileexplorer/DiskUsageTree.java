@@ -0,0 +1,169 @@
+package fileexplorer;
+
+import java.nio.CharBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+// The directories below a scanned root, with the bytes and files below each. Files
+// are not stored, only added to their directory and its ancestors, and directories
+// are rows in primitive arrays linked by index (parent, first child, next sibling)
+// with their names in one shared char pool, so a scan of tens of millions of files
+// needs a few dozen bytes per directory. Sizes are running totals while the scan
+// is in progress. Writers and readers synchronize on the tree; the scanner holds
+// the lock once per directory, the view while it lays out what is visible.
+final class DiskUsageTree {
+    
+    static final int ROOT = 0;
+    static final int NONE = -1;
+    
+    private final Path root;
+    
+    private int nodeCount;
+    private int[] parents = new int[1024];
+    private int[] firstChildren = new int[1024];
+    private int[] nextSiblings = new int[1024];
+    private int[] nameOffsets = new int[1024];
+    private int[] nameLengths = new int[1024];
+    // Bytes and files directly in the directory, and in it and everything below
+    private long[] ownBytes = new long[1024];
+    private long[] totalBytes = new long[1024];
+    private long[] totalFiles = new long[1024];
+    private char[] namePool = new char[16 * 1024];
+    private int namePoolSize;
+    
+    // Bumped by every change, so the view knows when to lay out again
+    private volatile int version;
+    
+    DiskUsageTree(Path root) {
+        this.root = root;
+        addNode(NONE, "");
+    }
+    
+    Path getRoot() {
+        return root;
+    }
+    
+    // Records the listing of a directory: the bytes and number of its files, and its
+    // subdirectories, which become nodes to be listed in turn. Returns the index of
+    // the first subdirectory; the rest follow it consecutively.
+    synchronized int addListing(int node, long fileBytes, long fileCount, List<String> subdirectories) {
+        int first = nodeCount;
+        int previous = NONE;
+        for (String name : subdirectories) {
+            int child = addNode(node, name);
+            if (previous == NONE) {
+                firstChildren[node] = child;
+            } else {
+                nextSiblings[previous] = child;
+            }
+            previous = child;
+        }
+        
+        ownBytes[node] = fileBytes;
+        for (int ancestor = node; ancestor != NONE; ancestor = parents[ancestor]) {
+            totalBytes[ancestor] += fileBytes;
+            totalFiles[ancestor] += fileCount;
+        }
+        version++;
+        return first;
+    }
+    
+    int getVersion() {
+        return version;
+    }
+    
+    synchronized int getNodeCount() {
+        return nodeCount;
+    }
+    
+    synchronized int getParent(int node) {
+        return parents[node];
+    }
+    
+    synchronized int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+    
+    synchronized int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+    
+    synchronized String getName(int node) {
+        return new String(namePool, nameOffsets[node], nameLengths[node]);
+    }
+    
+    synchronized long getOwnBytes(int node) {
+        return ownBytes[node];
+    }
+    
+    synchronized long getTotalBytes(int node) {
+        return totalBytes[node];
+    }
+    
+    synchronized long getTotalFiles(int node) {
+        return totalFiles[node];
+    }
+    
+    synchronized Path getPath(int node) {
+        if (node == ROOT) {
+            return root;
+        }
+        return getPath(parents[node]).resolve(getName(node));
+    }
+    
+    // The node for a directory at or below the root, or NONE if it is not (yet) in the tree
+    synchronized int find(Path directory) {
+        if (!directory.startsWith(root)) {
+            return NONE;
+        }
+        int node = ROOT;
+        for (Path part : root.relativize(directory)) {
+            if (part.toString().isEmpty()) {
+                continue;
+            }
+            node = findChild(node, part.toString());
+            if (node == NONE) {
+                return NONE;
+            }
+        }
+        return node;
+    }
+    
+    private int findChild(int node, String name) {
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            if (nameLengths[child] == name.length() && name.contentEquals(
+                    CharBuffer.wrap(namePool, nameOffsets[child], nameLengths[child]))) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+    
+    private int addNode(int parent, String name) {
+        if (nodeCount == parents.length) {
+            int capacity = nodeCount * 2;
+            parents = Arrays.copyOf(parents, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+            nameLengths = Arrays.copyOf(nameLengths, capacity);
+            ownBytes = Arrays.copyOf(ownBytes, capacity);
+            totalBytes = Arrays.copyOf(totalBytes, capacity);
+            totalFiles = Arrays.copyOf(totalFiles, capacity);
+        }
+        if (namePoolSize + name.length() > namePool.length) {
+            namePool = Arrays.copyOf(namePool, Math.max(namePool.length * 2, namePoolSize + name.length()));
+        }
+        
+        int node = nodeCount++;
+        parents[node] = parent;
+        firstChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        nameOffsets[node] = namePoolSize;
+        nameLengths[node] = name.length();
+        name.getChars(0, name.length(), namePool, namePoolSize);
+        namePoolSize += name.length();
+        return node;
+    }
+}
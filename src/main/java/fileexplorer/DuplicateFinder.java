@@ -0,0 +1,653 @@
+package fileexplorer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+// Finds the files below a directory with the same contents, in stages that each
+// read more of fewer files. The tree is walked with a fork-join traversal like
+// ContentSearcher's into primitive arrays of sizes, and files whose size no other
+// file has are dropped by counting sizes in a primitive hash map. The rest are
+// hashed on their first and last blocks in parallel, and only the files still
+// sharing a size and that hash with another are hashed in full, through
+// memory-mapped windows. Hashes are SHA-256 cut to 128 bits, cached by path, size
+// and modification time, so searching the same tree again reads only what changed.
+class DuplicateFinder {
+    
+    // Hashed at the start and at the end of a file; smaller files are hashed whole at once
+    private static final int BLOCK_BYTES = 4096;
+    
+    private static final int MAP_THRESHOLD = 1024 * 1024;
+    private static final int WINDOW_BYTES = 64 * 1024 * 1024;
+    
+    // Files hashed per task: many for the blocks, few for whole files
+    private static final int PARTIAL_BATCH = 64;
+    private static final int FULL_BATCH = 4;
+    
+    // The hash cache forgets the least recently used files beyond this many
+    private static final int MAX_CACHED = Integer.getInteger("fileexplorer.duplicates.cacheEntries", 1_000_000);
+    
+    private static final ThreadLocal<ByteBuffer> buffers =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(2 * BLOCK_BYTES));
+    private static final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    });
+    
+    enum Stage {
+        LISTING("Listing files"),
+        HASHING_BLOCKS("Hashing first and last blocks"),
+        HASHING_FILES("Hashing whole files"),
+        DONE("Done");
+        
+        private final String label;
+        
+        Stage(String label) {
+            this.label = label;
+        }
+        
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+    
+    // Files with the same contents
+    static final class DuplicateSet {
+        final long size;
+        final List<Path> files;
+        
+        DuplicateSet(long size, List<Path> files) {
+            this.size = size;
+            this.files = Collections.unmodifiableList(files);
+        }
+        
+        // Freed by keeping one copy
+        long getReclaimable() {
+            return size * (files.size() - 1);
+        }
+    }
+    
+    // A search in progress or finished. Its counters are read by the view while it runs.
+    static final class Search {
+        private final Path root;
+        private final long minSize;
+        private final HashCache cache;
+        private final Set<Object> visited = ConcurrentHashMap.newKeySet();
+        
+        // Every file of at least minSize, in the order found; guarded by this while listing
+        private Path[] paths = new Path[1024];
+        private long[] sizes = new long[1024];
+        private long[] modified = new long[1024];
+        private int fileCount;
+        
+        // Two longs per file, and whether it could not be read; each file is written by one task
+        private long[] blockHashes;
+        private long[] fileHashes;
+        private boolean[] unreadable;
+        
+        private final LongAdder filesFound = new LongAdder();
+        private final LongAdder filesHashed = new LongAdder();
+        private final LongAdder bytesHashed = new LongAdder();
+        private final LongAdder cacheHits = new LongAdder();
+        private volatile Stage stage = Stage.LISTING;
+        private volatile int candidates;
+        private volatile List<DuplicateSet> sets = Collections.emptyList();
+        private final long startNanos = System.nanoTime();
+        private volatile long endNanos;
+        private volatile boolean finished;
+        private volatile boolean cancelled;
+        
+        Search(Path root, long minSize, HashCache cache) {
+            this.root = root;
+            this.minSize = minSize;
+            this.cache = cache;
+        }
+        
+        Path getRoot() {
+            return root;
+        }
+        
+        Stage getStage() {
+            return stage;
+        }
+        
+        long getFilesFound() {
+            return filesFound.sum();
+        }
+        
+        // Files still in the running at the current stage
+        int getCandidates() {
+            return candidates;
+        }
+        
+        long getFilesHashed() {
+            return filesHashed.sum();
+        }
+        
+        long getBytesHashed() {
+            return bytesHashed.sum();
+        }
+        
+        // Files whose hash came from an earlier search
+        long getCacheHits() {
+            return cacheHits.sum();
+        }
+        
+        // Largest reclaimable space first; set once the search has finished
+        List<DuplicateSet> getSets() {
+            return sets;
+        }
+        
+        long getElapsedNanos() {
+            return (finished ? endNanos : System.nanoTime()) - startNanos;
+        }
+        
+        boolean isFinished() {
+            return finished;
+        }
+        
+        boolean isCancelled() {
+            return cancelled;
+        }
+        
+        void cancel() {
+            cancelled = true;
+        }
+        
+        private void run() {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                new DirectoryTask(this, root, attributes).invoke();
+                if (cancelled) {
+                    return;
+                }
+                
+                int[] remaining = sameSize();
+                blockHashes = new long[2 * fileCount];
+                fileHashes = new long[2 * fileCount];
+                unreadable = new boolean[fileCount];
+                
+                stage = Stage.HASHING_BLOCKS;
+                candidates = remaining.length;
+                new HashTask(this, remaining, 0, remaining.length, false).invoke();
+                if (cancelled) {
+                    return;
+                }
+                remaining = sameHash(remaining, blockHashes);
+                
+                // Files no larger than two blocks were hashed whole already
+                int small = 0;
+                for (int file : remaining) {
+                    if (sizes[file] <= 2 * BLOCK_BYTES) {
+                        fileHashes[2 * file] = blockHashes[2 * file];
+                        fileHashes[2 * file + 1] = blockHashes[2 * file + 1];
+                        small++;
+                    }
+                }
+                stage = Stage.HASHING_FILES;
+                candidates = remaining.length - small;
+                new HashTask(this, remaining, 0, remaining.length, true).invoke();
+                if (!cancelled) {
+                    sets = duplicateSets(sameHash(remaining, fileHashes));
+                }
+            } catch (IOException e) {
+                // Unreadable root - nothing found
+            } finally {
+                stage = Stage.DONE;
+                endNanos = System.nanoTime();
+                finished = true;
+            }
+        }
+        
+        private synchronized void addFiles(List<Path> files, long[] fileSizes, long[] fileModified) {
+            if (fileCount + files.size() > paths.length) {
+                int capacity = Math.max(paths.length * 2, fileCount + files.size());
+                paths = Arrays.copyOf(paths, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                modified = Arrays.copyOf(modified, capacity);
+            }
+            for (int i = 0; i < files.size(); i++) {
+                paths[fileCount] = files.get(i);
+                sizes[fileCount] = fileSizes[i];
+                modified[fileCount] = fileModified[i];
+                fileCount++;
+            }
+            filesFound.add(files.size());
+        }
+        
+        // The files whose size another file has too
+        private int[] sameSize() {
+            SizeCounts counts = new SizeCounts(fileCount);
+            for (int i = 0; i < fileCount; i++) {
+                counts.increment(sizes[i]);
+            }
+            int[] remaining = new int[fileCount];
+            int count = 0;
+            for (int i = 0; i < fileCount; i++) {
+                if (counts.get(sizes[i]) > 1) {
+                    remaining[count++] = i;
+                }
+            }
+            return Arrays.copyOf(remaining, count);
+        }
+        
+        // The readable files that share their size and hash with another, grouped together, largest first
+        private int[] sameHash(int[] files, long[] hashes) {
+            IndexSort.sort(files, (file1, file2) -> {
+                int compare = Long.compare(sizes[file2], sizes[file1]);
+                if (compare == 0) {
+                    compare = Long.compare(hashes[2 * file1], hashes[2 * file2]);
+                }
+                return compare != 0 ? compare : Long.compare(hashes[2 * file1 + 1], hashes[2 * file2 + 1]);
+            });
+            
+            int[] remaining = new int[files.length];
+            int count = 0;
+            for (int start = 0, end; start < files.length; start = end) {
+                int readable = unreadable[files[start]] ? 0 : 1;
+                for (end = start + 1; end < files.length && sameKey(files[start], files[end], hashes); end++) {
+                    readable += unreadable[files[end]] ? 0 : 1;
+                }
+                if (readable < 2) {
+                    continue;
+                }
+                for (int i = start; i < end; i++) {
+                    if (!unreadable[files[i]]) {
+                        remaining[count++] = files[i];
+                    }
+                }
+            }
+            return Arrays.copyOf(remaining, count);
+        }
+        
+        private boolean sameKey(int file1, int file2, long[] hashes) {
+            return sizes[file1] == sizes[file2] && hashes[2 * file1] == hashes[2 * file2]
+                    && hashes[2 * file1 + 1] == hashes[2 * file2 + 1];
+        }
+        
+        // One set per run of equal files; hard links to one file are one copy, not duplicates
+        private List<DuplicateSet> duplicateSets(int[] files) {
+            List<DuplicateSet> found = new ArrayList<>();
+            for (int start = 0, end; start < files.length; start = end) {
+                for (end = start + 1; end < files.length && sameKey(files[start], files[end], fileHashes); end++) {
+                    // Find the end of the run
+                }
+                List<Path> copies = new ArrayList<>(end - start);
+                Set<Object> keys = new HashSet<>();
+                for (int i = start; i < end; i++) {
+                    Path file = paths[files[i]];
+                    Object key = fileKey(file);
+                    if (key == null || keys.add(key)) {
+                        copies.add(file);
+                    }
+                }
+                if (copies.size() > 1) {
+                    Collections.sort(copies);
+                    found.add(new DuplicateSet(sizes[files[start]], copies));
+                }
+            }
+            found.sort((set1, set2) -> Long.compare(set2.getReclaimable(), set1.getReclaimable()));
+            return Collections.unmodifiableList(found);
+        }
+        
+        private static Object fileKey(Path file) {
+            try {
+                return Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).fileKey();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        
+        // Hashes one file, or takes its hash from the cache if the file has not changed since
+        private void hash(int file, boolean whole) {
+            Path path = paths[file];
+            long[] hashes = whole ? fileHashes : blockHashes;
+            CachedHash cached = cache.get(path);
+            if (cached != null && (cached.size != sizes[file] || cached.modified != modified[file])) {
+                cached = null;
+            }
+            if (cached != null && (!whole || cached.hasFileHash)) {
+                hashes[2 * file] = whole ? cached.fileHash1 : cached.blockHash1;
+                hashes[2 * file + 1] = whole ? cached.fileHash2 : cached.blockHash2;
+                cacheHits.increment();
+                return;
+            }
+            
+            MessageDigest digest = digests.get();
+            digest.reset();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = sizes[file];
+                if (whole) {
+                    if (!digestFile(channel, size, digest)) {
+                        // Cancelled part way: the digest covers only part of the file
+                        unreadable[file] = true;
+                        return;
+                    }
+                } else {
+                    digestBlocks(channel, size, digest);
+                }
+                bytesHashed.add(whole ? size : Math.min(size, 2 * BLOCK_BYTES));
+            } catch (IOException | InternalError e) {
+                // Unreadable, or truncated while mapped
+                unreadable[file] = true;
+                return;
+            }
+            ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+            hashes[2 * file] = hash.getLong();
+            hashes[2 * file + 1] = hash.getLong();
+            filesHashed.increment();
+            
+            if (whole) {
+                long blockHash1 = cached != null ? cached.blockHash1 : blockHashes[2 * file];
+                long blockHash2 = cached != null ? cached.blockHash2 : blockHashes[2 * file + 1];
+                cache.put(path, new CachedHash(sizes[file], modified[file], blockHash1, blockHash2,
+                        true, hashes[2 * file], hashes[2 * file + 1]));
+            } else {
+                // A file no larger than two blocks has been hashed whole
+                boolean small = sizes[file] <= 2 * BLOCK_BYTES;
+                cache.put(path, new CachedHash(sizes[file], modified[file], hashes[2 * file], hashes[2 * file + 1],
+                        small, hashes[2 * file], hashes[2 * file + 1]));
+            }
+        }
+        
+        // The first and the last block, which are the whole file if it is small
+        private static void digestBlocks(FileChannel channel, long size, MessageDigest digest) throws IOException {
+            ByteBuffer buffer = buffers.get();
+            buffer.clear().limit((int) Math.min(size, BLOCK_BYTES));
+            read(channel, buffer, 0);
+            if (size > BLOCK_BYTES) {
+                long lastStart = Math.max(BLOCK_BYTES, size - BLOCK_BYTES);
+                buffer.limit(buffer.position() + (int) (size - lastStart));
+                read(channel, buffer, lastStart);
+            }
+            buffer.flip();
+            digest.update(buffer);
+        }
+        
+        // Small files through the thread's buffer, large ones a mapped window at a time.
+        // Returns false if the search was cancelled before the whole file was digested.
+        private boolean digestFile(FileChannel channel, long size, MessageDigest digest) throws IOException {
+            if (size <= MAP_THRESHOLD) {
+                ByteBuffer buffer = buffers.get();
+                if (buffer.capacity() < size) {
+                    buffer = ByteBuffer.allocate(MAP_THRESHOLD);
+                    buffers.set(buffer);
+                }
+                buffer.clear().limit((int) size);
+                read(channel, buffer, 0);
+                buffer.flip();
+                digest.update(buffer);
+                return true;
+            }
+            for (long start = 0; start < size; start += WINDOW_BYTES) {
+                if (cancelled) {
+                    return false;
+                }
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_BYTES, size - start)));
+            }
+            return true;
+        }
+        
+        // Fills the buffer from the position given, failing if the file has become shorter
+        private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            int start = buffer.position();
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + buffer.position() - start);
+                if (read < 0) {
+                    throw new IOException("File changed while it was read");
+                }
+            }
+        }
+    }
+    
+    // The hashes of a file as of its size and modification time
+    static final class CachedHash {
+        private final long size;
+        private final long modified;
+        private final long blockHash1;
+        private final long blockHash2;
+        private final boolean hasFileHash;
+        private final long fileHash1;
+        private final long fileHash2;
+        
+        CachedHash(long size, long modified, long blockHash1, long blockHash2,
+                boolean hasFileHash, long fileHash1, long fileHash2) {
+            this.size = size;
+            this.modified = modified;
+            this.blockHash1 = blockHash1;
+            this.blockHash2 = blockHash2;
+            this.hasFileHash = hasFileHash;
+            this.fileHash1 = fileHash1;
+            this.fileHash2 = fileHash2;
+        }
+    }
+    
+    // The hashes of the files hashed most recently, least recently used first
+    static final class HashCache {
+        private final int maxEntries;
+        
+        // Guarded by this
+        private final LinkedHashMap<Path, CachedHash> entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, CachedHash> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        
+        HashCache(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+        
+        synchronized CachedHash get(Path file) {
+            return entries.get(file);
+        }
+        
+        synchronized void put(Path file, CachedHash hash) {
+            entries.put(file, hash);
+        }
+        
+        synchronized int size() {
+            return entries.size();
+        }
+        
+        synchronized void clear() {
+            entries.clear();
+        }
+    }
+    
+    private final ForkJoinPool pool;
+    
+    // Kept from one search to the next
+    private final HashCache hashCache = new HashCache(MAX_CACHED);
+    
+    // The search in progress; accessed on the EDT
+    private Search currentSearch;
+    
+    DuplicateFinder() {
+        this(Integer.getInteger("fileexplorer.duplicates.parallelism",
+                Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+    
+    DuplicateFinder(int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+    }
+    
+    // Starts looking for duplicates of at least minSize bytes below the root, replacing
+    // any search still running
+    Search search(Path root, long minSize) {
+        cancel();
+        Search search = new Search(root, Math.max(1, minSize), hashCache);
+        currentSearch = search;
+        pool.execute(search::run);
+        return search;
+    }
+    
+    // Forgets the hashes of earlier searches, so the next one reads every candidate again
+    void clearCache() {
+        hashCache.clear();
+    }
+    
+    void cancel() {
+        if (currentSearch != null) {
+            currentSearch.cancel();
+            currentSearch = null;
+        }
+    }
+    
+    private static final class DirectoryTask extends RecursiveAction {
+        private final Search search;
+        private final Path directory;
+        private final BasicFileAttributes attributes;
+        
+        DirectoryTask(Search search, Path directory, BasicFileAttributes attributes) {
+            this.search = search;
+            this.directory = directory;
+            this.attributes = attributes;
+        }
+        
+        @Override
+        protected void compute() {
+            Object key = attributes.fileKey() != null ? attributes.fileKey() : directory;
+            if (search.cancelled || !search.visited.add(key)) {
+                return;
+            }
+            
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            List<Path> files = new ArrayList<>();
+            // Their sizes and modification times
+            long[][] attributeValues = {new long[16], new long[16]};
+            try {
+                Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), 1,
+                        new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes fileAttributes) {
+                        if (fileAttributes.isDirectory()) {
+                            subdirectories.add(new DirectoryTask(search, file, fileAttributes));
+                        } else if (fileAttributes.isRegularFile() && fileAttributes.size() >= search.minSize) {
+                            if (files.size() == attributeValues[0].length) {
+                                attributeValues[0] = Arrays.copyOf(attributeValues[0], files.size() * 2);
+                                attributeValues[1] = Arrays.copyOf(attributeValues[1], files.size() * 2);
+                            }
+                            attributeValues[0][files.size()] = fileAttributes.size();
+                            attributeValues[1][files.size()] = fileAttributes.lastModifiedTime().toMillis();
+                            files.add(file);
+                        }
+                        return search.cancelled ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                    }
+                    
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                // Unreadable directory - nothing in it is compared
+            }
+            if (!files.isEmpty()) {
+                search.addFiles(files, attributeValues[0], attributeValues[1]);
+            }
+            if (!search.cancelled) {
+                invokeAll(subdirectories);
+            }
+        }
+    }
+    
+    // Hashes the files indices[from, to), split into tasks of a few files each
+    private static final class HashTask extends RecursiveAction {
+        private final Search search;
+        private final int[] files;
+        private final int from;
+        private final int to;
+        private final boolean whole;
+        
+        HashTask(Search search, int[] files, int from, int to, boolean whole) {
+            this.search = search;
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.whole = whole;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from > (whole ? FULL_BATCH : PARTIAL_BATCH)) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new HashTask(search, files, from, middle, whole),
+                        new HashTask(search, files, middle, to, whole));
+                return;
+            }
+            for (int i = from; i < to && !search.cancelled; i++) {
+                int file = files[i];
+                if (!whole || search.sizes[file] > 2 * BLOCK_BYTES) {
+                    search.hash(file, whole);
+                }
+            }
+        }
+    }
+    
+    // Counts files per size in open-addressed primitive arrays, without boxing a Long per file
+    private static final class SizeCounts {
+        private final long[] keys;
+        private final int[] counts;
+        private final int mask;
+        
+        SizeCounts(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            keys = new long[capacity];
+            counts = new int[capacity];
+            mask = capacity - 1;
+        }
+        
+        void increment(long size) {
+            counts[slot(size)]++;
+        }
+        
+        int get(long size) {
+            return counts[slot(size)];
+        }
+        
+        // The slot holding the size, claimed for it if it is not there yet; sizes are at least 1, so 0 is free
+        private int slot(long size) {
+            int slot = (int) mix(size) & mask;
+            while (keys[slot] != size && keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = size;
+            return slot;
+        }
+        
+        private static long mix(long value) {
+            value *= 0x9E3779B97F4A7C15L;
+            return value ^ (value >>> 32);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package fileexplorer;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Finds the files below the current folder that have the same contents. The status
+// line follows the finder's stages while it runs; the sets found are listed one
+// file per row, grouped by set with alternating shading, the sets that free the
+// most space first. Double-clicking a file opens its folder in the file table.
+class DuplicatePanel extends JPanel {
+    
+    private static final int REFRESH_MILLIS = 250;
+    
+    private final DuplicateFinder finder = new DuplicateFinder();
+    private final Consumer<File> navigator;
+    private final JSpinner minSizeSpinner = new JSpinner(new SpinnerNumberModel(
+            Integer.getInteger("fileexplorer.duplicates.minKb", 1).intValue(), 0, 1 << 20, 64));
+    private final JButton findButton = new JButton("Find duplicates");
+    private final JButton stopButton = new JButton("Stop");
+    private final JLabel statusLabel = new JLabel(" ");
+    private final SetTableModel tableModel = new SetTableModel();
+    private final JTable table = new JTable(tableModel);
+    private final Timer refreshTimer;
+    
+    // The folder shown in the file table, and the last search
+    private File directory;
+    private DuplicateFinder.Search search;
+    
+    DuplicatePanel(Consumer<File> navigator) {
+        super(new BorderLayout());
+        this.navigator = navigator;
+        
+        minSizeSpinner.setToolTipText("Smaller files are not compared");
+        findButton.setToolTipText("Find files with the same contents below the current folder");
+        findButton.addActionListener(e -> startSearch());
+        stopButton.addActionListener(e -> stopSearch());
+        stopButton.setEnabled(false);
+        
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        controls.add(new JLabel("Min KB:"));
+        controls.add(minSizeSpinner);
+        controls.add(findButton);
+        controls.add(stopButton);
+        JPanel top = new JPanel(new BorderLayout());
+        top.setBorder(BorderFactory.createEmptyBorder(2, 4, 2, 4));
+        top.add(controls, BorderLayout.NORTH);
+        top.add(statusLabel, BorderLayout.SOUTH);
+        
+        // Not sortable: rows stay grouped by set
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setDefaultRenderer(Object.class, new SetRenderer(false));
+        table.setDefaultRenderer(Long.class, new SetRenderer(true));
+        table.getColumnModel().getColumn(0).setPreferredWidth(50);
+        table.getColumnModel().getColumn(1).setPreferredWidth(500);
+        table.getColumnModel().getColumn(2).setPreferredWidth(90);
+        table.getColumnModel().getColumn(3).setPreferredWidth(110);
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = table.getSelectedRow();
+                if (e.getClickCount() == 2 && row >= 0) {
+                    navigator.accept(tableModel.getFile(row).getParent().toFile());
+                }
+            }
+        });
+        
+        add(top, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+        showStatus();
+    }
+    
+    // The folder the next search starts from
+    void setDirectory(File directory) {
+        this.directory = directory;
+        if (search == null) {
+            showStatus();
+        }
+    }
+    
+    private void startSearch() {
+        if (directory == null) {
+            return;
+        }
+        long minSize = ((Number) minSizeSpinner.getValue()).longValue() * 1024;
+        tableModel.setSets(new ArrayList<>());
+        search = finder.search(directory.toPath(), minSize);
+        refreshTimer.start();
+        updateButtons();
+        showStatus();
+    }
+    
+    private void stopSearch() {
+        if (search != null && !search.isFinished()) {
+            finder.cancel();
+        }
+    }
+    
+    private void refresh() {
+        if (search.isFinished()) {
+            refreshTimer.stop();
+            tableModel.setSets(search.getSets());
+            updateButtons();
+        }
+        showStatus();
+    }
+    
+    private void updateButtons() {
+        boolean running = search != null && !search.isFinished();
+        findButton.setEnabled(!running);
+        stopButton.setEnabled(running);
+    }
+    
+    private void showStatus() {
+        if (search == null) {
+            statusLabel.setText(directory != null ? " Find duplicate files below " + directory : " ");
+            return;
+        }
+        
+        double seconds = Math.max(search.getElapsedNanos(), 1) / 1e9;
+        String hashed = String.format("%,d files, %,d hashed (%s, %s/s), %,d from the cache",
+                search.getFilesFound(), search.getFilesHashed(), FileExplorer.formatSize(search.getBytesHashed()),
+                FileExplorer.formatSize((long) (search.getBytesHashed() / seconds)), search.getCacheHits());
+        if (!search.isFinished()) {
+            String stage = search.getStage() + "...";
+            if (search.getStage() != DuplicateFinder.Stage.LISTING) {
+                stage = String.format("%s (%,d candidates)", stage, search.getCandidates());
+            }
+            statusLabel.setText(" " + stage + " " + hashed);
+            return;
+        }
+        
+        long files = 0;
+        long reclaimable = 0;
+        for (DuplicateFinder.DuplicateSet set : search.getSets()) {
+            files += set.files.size();
+            reclaimable += set.getReclaimable();
+        }
+        String text = String.format(" %,d duplicate %s of %,d files, %s reclaimable; %s in %.1f s",
+                search.getSets().size(), search.getSets().size() == 1 ? "set" : "sets", files,
+                FileExplorer.formatSize(reclaimable), hashed, seconds);
+        statusLabel.setText(search.isCancelled() ? " Stopped; " + hashed : text);
+    }
+    
+    // One row per file, with the set's reclaimable space on its first row
+    private final class SetTableModel extends AbstractTableModel {
+        private final String[] columns = {"Set", "File", "Size", "Reclaimable"};
+        private List<DuplicateFinder.DuplicateSet> sets = new ArrayList<>();
+        private final List<Integer> rowSets = new ArrayList<>();
+        private final List<Path> rowFiles = new ArrayList<>();
+        
+        void setSets(List<DuplicateFinder.DuplicateSet> sets) {
+            this.sets = sets;
+            rowSets.clear();
+            rowFiles.clear();
+            for (int i = 0; i < sets.size(); i++) {
+                for (Path file : sets.get(i).files) {
+                    rowSets.add(i);
+                    rowFiles.add(file);
+                }
+            }
+            fireTableDataChanged();
+        }
+        
+        Path getFile(int row) {
+            return rowFiles.get(row);
+        }
+        
+        int getSet(int row) {
+            return rowSets.get(row);
+        }
+        
+        @Override
+        public int getRowCount() {
+            return rowFiles.size();
+        }
+        
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+        
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+        
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column >= 2 ? Long.class : Object.class;
+        }
+        
+        @Override
+        public Object getValueAt(int row, int column) {
+            int set = rowSets.get(row);
+            boolean first = row == 0 || rowSets.get(row - 1) != set;
+            switch (column) {
+                case 0:
+                    return first ? set + 1 : null;
+                case 1:
+                    // Below the folder searched
+                    Path file = rowFiles.get(row);
+                    Path root = search.getRoot();
+                    return file.startsWith(root) ? root.relativize(file).toString() : file.toString();
+                case 2:
+                    return sets.get(set).size;
+                default:
+                    return first ? sets.get(set).getReclaimable() : null;
+            }
+        }
+    }
+    
+    // Shades every other set, and shows sizes readably
+    private final class SetRenderer extends DefaultTableCellRenderer {
+        private final boolean size;
+        
+        SetRenderer(boolean size) {
+            this.size = size;
+            if (size) {
+                setHorizontalAlignment(JLabel.RIGHT);
+            }
+        }
+        
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value,
+                boolean isSelected, boolean hasFocus, int row, int column) {
+            if (size && value != null) {
+                value = FileExplorer.formatSize((Long) value);
+            }
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            if (!isSelected) {
+                Color background = table.getBackground();
+                setBackground(tableModel.getSet(row) % 2 == 0 ? background : shade(background));
+            }
+            return this;
+        }
+        
+        private Color shade(Color color) {
+            return new Color(Math.max(0, color.getRed() - 16), Math.max(0, color.getGreen() - 12),
+                    Math.max(0, color.getBlue() - 4));
+        }
+    }
+}
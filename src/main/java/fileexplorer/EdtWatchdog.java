@@ -0,0 +1,150 @@
+package fileexplorer;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Times every event the EDT dispatches and reports those over a threshold
+// (fileexplorer.edt.stallMillis, 100 ms by default) as stalls. A sampler thread
+// looks at the EDT while an event runs and takes its stack trace once the event
+// is over the threshold, so each stall records where the EDT was stuck rather
+// than where it finished. Time spent in a modal dialog's or another secondary
+// event loop is not held against the event that opened it.
+final class EdtWatchdog extends EventQueue {
+    private static final long DEFAULT_THRESHOLD_MILLIS = 100;
+    
+    private static final long thresholdMillis = Long.getLong("fileexplorer.edt.stallMillis", DEFAULT_THRESHOLD_MILLIS);
+    private static final long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    
+    private static EdtWatchdog installed;
+    
+    // Set by the EDT, read by the sampler: the event being dispatched and when it (or the
+    // part of it after its last secondary loop) started; 0 while idle
+    private volatile long dispatchSerial;
+    private volatile long dispatchStarted;
+    private volatile Thread edt;
+    
+    // Set by the sampler: the stack trace caught during the event with that serial
+    private volatile long sampledSerial;
+    private volatile StackTraceElement[] sampledStack;
+    
+    // EDT only: nested dispatch depth, a bit per depth whose event ran a secondary loop,
+    // and the last serial handed out; serials only increase, so none is ever reused
+    private int depth;
+    private long loopingDepths;
+    private long lastSerial;
+    
+    private EdtWatchdog() {
+    }
+    
+    // Puts the watchdog in front of the system event queue; later calls do nothing
+    static synchronized void install() {
+        if (installed != null) {
+            return;
+        }
+        installed = new EdtWatchdog();
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(installed);
+        
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "edt-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(thresholdMillis / 2, 1);
+        sampler.scheduleWithFixedDelay(installed::sample, period, period, TimeUnit.MILLISECONDS);
+    }
+    
+    static long getThresholdMillis() {
+        return thresholdMillis;
+    }
+    
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        if (depth > 0) {
+            // A secondary loop: the events below this one are waiting, not working
+            loopingDepths |= (1L << Math.min(depth, 63)) - 1;
+        }
+        depth++;
+        edt = Thread.currentThread();
+        long serial = ++lastSerial;
+        long started = System.nanoTime();
+        dispatchSerial = serial;
+        dispatchStarted = started;
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            long nanos = System.nanoTime() - started;
+            depth--;
+            long bit = 1L << Math.min(depth, 63);
+            boolean looped = (loopingDepths & bit) != 0;
+            loopingDepths &= ~bit;
+            
+            // The enclosing event, if any, carries on from here as if it were a new event
+            dispatchSerial = ++lastSerial;
+            dispatchStarted = depth > 0 ? System.nanoTime() : 0;
+            
+            if (!looped) {
+                Metrics.EDT_EVENT.record(nanos);
+                if (nanos >= thresholdNanos) {
+                    stalled(event, nanos, sampledSerial == serial ? sampledStack : null);
+                }
+            }
+        }
+    }
+    
+    private void stalled(AWTEvent event, long nanos, StackTraceElement[] stackTrace) {
+        String description = describe(event);
+        Metrics.EDT_STALL.record(nanos);
+        Metrics.addStall(new Metrics.Stall(System.currentTimeMillis(), nanos, description, stackTrace));
+        
+        JfrEvents.EdtStall stall = new JfrEvents.EdtStall();
+        if (stall.shouldCommit()) {
+            stall.event = description;
+            stall.stallDuration = nanos;
+            if (stackTrace != null) {
+                StringBuilder text = new StringBuilder();
+                for (StackTraceElement element : stackTrace) {
+                    text.append(element).append('\n');
+                }
+                stall.edtStackTrace = text.toString();
+            }
+            stall.commit();
+        }
+    }
+    
+    // Runs on the sampler thread
+    private void sample() {
+        long serial = dispatchSerial;
+        long started = dispatchStarted;
+        Thread thread = edt;
+        if (started == 0 || thread == null || sampledSerial == serial
+                || System.nanoTime() - started < thresholdNanos) {
+            return;
+        }
+        
+        StackTraceElement[] stackTrace = thread.getStackTrace();
+        // Only if the EDT is still in the same event
+        if (dispatchSerial == serial) {
+            sampledStack = stackTrace;
+            sampledSerial = serial;
+        }
+    }
+    
+    private static String describe(AWTEvent event) {
+        String source = event.getSource() != null ? event.getSource().getClass().getSimpleName() : "";
+        String text = event.getClass().getSimpleName() + (source.isEmpty() ? "" : " on " + source);
+        if (event instanceof java.awt.event.InvocationEvent) {
+            // invokeLater tasks: the runnable tells more than the event
+            String string = event.toString();
+            int runnable = string.indexOf("runnable=");
+            if (runnable >= 0) {
+                int end = string.indexOf(',', runnable);
+                text = "invokeLater " + string.substring(runnable + 9, end > 0 ? end : string.length());
+            }
+        }
+        return text;
+    }
+}
@@ -0,0 +1,187 @@
+package fileexplorer;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+// Attributes of a single directory entry, read with one stat call instead of
+// separate isDirectory()/isHidden()/length()/lastModified() calls
+final class FileEntry {
+    private static final boolean WINDOWS =
+            System.getProperty("os.name", "").startsWith("Windows");
+    
+    // Directories first, then alphabetically (case-insensitive, ties broken by exact name)
+    static final Comparator<FileEntry> DIRECTORIES_FIRST =
+            (a, b) -> compare(a.directory, a.name, b.directory, b.name);
+    
+    // Folded characters packed into a collation prefix
+    static final int COLLATION_PREFIX_CHARS = 3;
+    
+    private final String name;
+    private final boolean directory;
+    private final boolean hidden;
+    private final long size;
+    private final long lastModified;
+    
+    FileEntry(String name, boolean directory, boolean hidden, long size, long lastModified) {
+        this.name = name;
+        this.directory = directory;
+        this.hidden = hidden;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+    
+    static FileEntry read(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        BasicFileAttributes attributes;
+        boolean hidden;
+        Metrics.STAT_CALLS.increment();
+        try {
+            if (WINDOWS) {
+                // DOS attributes carry the hidden bit, so this is still a single call
+                DosFileAttributes dosAttributes = Files.readAttributes(path, DosFileAttributes.class);
+                attributes = dosAttributes;
+                hidden = dosAttributes.isHidden();
+            } else {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                hidden = name.startsWith(".");
+            }
+        } catch (NoSuchFileException e) {
+            // Dangling symbolic link - describe the link itself
+            Metrics.STAT_CALLS.increment();
+            attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            hidden = !WINDOWS && name.startsWith(".");
+        }
+        
+        return new FileEntry(name, attributes.isDirectory(), hidden,
+                attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+    
+    // The DIRECTORIES_FIRST order for entries that are not held as FileEntry objects
+    static int compare(boolean directory1, String name1, boolean directory2, String name2) {
+        if (directory1 && !directory2) return -1;
+        if (!directory1 && directory2) return 1;
+        int result = name1.compareToIgnoreCase(name2);
+        return result != 0 ? result : name1.compareTo(name2);
+    }
+    
+    // Sorts a listing in DIRECTORIES_FIRST order. All names are case-folded once into a
+    // shared char table, and the directory flag and first folded characters of each are
+    // packed into a long, so most comparisons are a single long comparison.
+    static void sort(List<FileEntry> entries) {
+        int count = entries.size();
+        FileEntry[] array = entries.toArray(new FileEntry[0]);
+        int[] offsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            offsets[i + 1] = offsets[i] + array[i].name.length();
+        }
+        
+        char[] folded = new char[offsets[count]];
+        long[] prefixes = new long[count];
+        for (int i = 0; i < count; i++) {
+            String name = array[i].name;
+            for (int j = 0; j < name.length(); j++) {
+                folded[offsets[i] + j] = fold(name.charAt(j));
+            }
+            prefixes[i] = collationPrefix(array[i].directory, folded, offsets[i], name.length());
+        }
+        
+        int[] order = IndexSort.identity(count);
+        IndexSort.sort(order, (index1, index2) -> {
+            int result = Long.compareUnsigned(prefixes[index1], prefixes[index2]);
+            if (result != 0) {
+                return result;
+            }
+            result = compareFolded(folded, offsets[index1], offsets[index1 + 1] - offsets[index1],
+                    offsets[index2], offsets[index2 + 1] - offsets[index2]);
+            return result != 0 ? result : array[index1].name.compareTo(array[index2].name);
+        });
+        
+        for (int i = 0; i < count; i++) {
+            entries.set(i, array[order[i]]);
+        }
+    }
+    
+    // Case folding that orders names as String.compareToIgnoreCase does
+    static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+    
+    // A key whose unsigned order is the DIRECTORIES_FIRST order of the directory flag and
+    // the first COLLATION_PREFIX_CHARS folded characters; names shorter than that sort first
+    static long collationPrefix(boolean directory, char[] folded, int offset, int length) {
+        long prefix = directory ? 0 : 1L << 63;
+        for (int i = 0; i < COLLATION_PREFIX_CHARS && i < length; i++) {
+            prefix |= (long) folded[offset + i] << (16 * (COLLATION_PREFIX_CHARS - 1 - i));
+        }
+        return prefix;
+    }
+    
+    // Compares two folded names whose collation prefixes are equal
+    static int compareFolded(char[] folded, int offset1, int length1, int offset2, int length2) {
+        int limit = Math.min(length1, length2);
+        for (int i = COLLATION_PREFIX_CHARS; i < limit; i++) {
+            char c1 = folded[offset1 + i];
+            char c2 = folded[offset2 + i];
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return length1 - length2;
+    }
+    
+    // Reads the visible entries of a directory in directory order, one stat per entry.
+    // Stops early once cancelled returns true.
+    static void readDirectory(Path directory, BooleanSupplier cancelled, Consumer<FileEntry> consumer)
+            throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (cancelled.getAsBoolean()) {
+                    return;
+                }
+                
+                FileEntry entry;
+                try {
+                    entry = read(path);
+                } catch (IOException e) {
+                    // Entry vanished or is unreadable - skip it like listFiles() would
+                    continue;
+                }
+                
+                // Skip hidden files
+                if (entry.hidden) continue;
+                
+                consumer.accept(entry);
+            }
+        }
+    }
+    
+    String getName() {
+        return name;
+    }
+    
+    boolean isDirectory() {
+        return directory;
+    }
+    
+    boolean isHidden() {
+        return hidden;
+    }
+    
+    long getSize() {
+        return size;
+    }
+    
+    long getLastModified() {
+        return lastModified;
+    }
+}
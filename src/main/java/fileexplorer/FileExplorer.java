@@ -0,0 +1,1359 @@
+package fileexplorer;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.event.*;
+import javax.swing.filechooser.FileSystemView;
+import javax.swing.table.*;
+import javax.swing.tree.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+public class FileExplorer extends JFrame {
+    // Files this large open in the preview on double-click rather than in another application
+    private static final long LARGE_FILE_BYTES = 64L << 20;
+    
+    private JTree fileTree;
+    private JTable fileTable;
+    private FileTableModel fileTableModel;
+    private FilterBar filterBar;
+    private JTextField addressBar;
+    private JTextField searchField;
+    private JButton backButton;
+    private JButton forwardButton;
+    private JButton upButton;
+    private JButton refreshButton;
+    private JButton homeButton;
+    private JButton deleteButton;
+    private JToggleButton folderSizesButton;
+    private JToggleButton previewButton;
+    private JLabel statusLabel;
+    
+    // Recent timings at the right of the status bar; clicking them opens the diagnostics window
+    private JLabel metricsLabel;
+    private JDialog diagnosticsDialog;
+    
+    private Stack<File> backHistory = new Stack<>();
+    private Stack<File> forwardHistory = new Stack<>();
+    private File currentDirectory;
+    
+    // The directory the last session ended in, until its listing has been checked against the disk
+    private File restoredDirectory;
+    
+    // Icons for file types
+    private FileSystemView fileSystemView;
+    private IconService iconService;
+    private DefaultTreeCellRenderer treeCellRenderer;
+    
+    // Listings shared by the table, the tree and history navigation
+    private DirectoryCache directoryCache = new DirectoryCache();
+    private DirectoryModel directoryModel = new DirectoryModel(directoryCache);
+    
+    // Background listing of the directory shown in the table
+    private DirectoryModel.Listing listing;
+    
+    // Directories likely to be opened next are listed ahead once the user has been idle for a moment
+    private Timer prefetchTimer;
+    private File hoveredDirectory;
+    
+    // Recursive sizes for the folders in the table, when switched on
+    private FolderSizeCalculator folderSizeCalculator = new FolderSizeCalculator();
+    
+    // Tree nodes whose children are being loaded
+    private Map<DefaultMutableTreeNode, TreeNodeLoader> treeLoaders = new HashMap<>();
+    
+    // Levels of the tree being loaded to reveal the current directory
+    private DirectoryModel.Listing treeReveal;
+    
+    // Change notification for the table's directory and every expanded tree node
+    private DirectoryWatcher directoryWatcher;
+    private Map<Path, DefaultMutableTreeNode> watchedTreeNodes = new HashMap<>();
+    
+    // Filename search below the current directory; the table shows its results while it is set
+    private FileSearchWorker searchWorker;
+    
+    // Deletion in progress; the delete button cancels it
+    private BulkDeleteWorker deleteWorker;
+    
+    // Copy and move jobs started by paste or drag-and-drop; they run while browsing continues
+    private TransferPanel transferPanel;
+    
+    // What uses the space below the current folder, in a tab next to the file table
+    private DiskUsagePanel diskUsagePanel;
+    
+    // Searches the contents of the files below the current folder, in another tab
+    private ContentSearchPanel contentSearchPanel;
+    
+    // Files below the current folder with the same contents, in a third tab
+    private DuplicatePanel duplicatePanel;
+    
+    // The selected file, memory-mapped, beside the file table when switched on
+    private PreviewPanel previewPanel;
+    private JSplitPane previewSplit;
+    private FileTransferService transferService;
+    
+    public FileExplorer() {
+        super("File Explorer");
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setSize(900, 600);
+        
+        // Initialize file system view for icons
+        fileSystemView = FileSystemView.getFileSystemView();
+        iconService = new IconService(fileSystemView);
+        
+        // Keep the views live as directories change
+        setupDirectoryWatcher();
+        
+        // Create the main components
+        createComponents();
+        
+        // Set up the layout
+        setupLayout();
+        
+        // Set up event handlers
+        setupEventHandlers();
+        
+        // Pick up where the last session ended, or start in the home directory
+        if (!restoreSession()) {
+            navigateTo(fileSystemView.getHomeDirectory());
+        }
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                saveSession();
+            }
+        });
+    }
+    
+    private void createComponents() {
+        // Create toolbar and its buttons
+        backButton = new JButton("←");
+        backButton.setToolTipText("Back");
+        backButton.setEnabled(false);
+        
+        forwardButton = new JButton("→");
+        forwardButton.setToolTipText("Forward");
+        forwardButton.setEnabled(false);
+        
+        upButton = new JButton("↑");
+        upButton.setToolTipText("Up one level");
+        
+        refreshButton = new JButton("⟳");
+        refreshButton.setToolTipText("Refresh");
+        
+        homeButton = new JButton("🏠");
+        homeButton.setToolTipText("Home");
+        
+        deleteButton = new JButton("🗑");
+        deleteButton.setToolTipText("Delete");
+        
+        folderSizesButton = new JToggleButton("Σ");
+        folderSizesButton.setToolTipText("Show folder sizes");
+        
+        previewButton = new JToggleButton("👁");
+        previewButton.setToolTipText("Show preview");
+        
+        // Address bar
+        addressBar = new JTextField();
+        
+        // Filename search in the current directory and its subdirectories
+        searchField = new JTextField(15);
+        searchField.setToolTipText("Search file names below this folder (* and ? as wildcards, Esc to clear)");
+        
+        // Create tree view for directory structure
+        DefaultMutableTreeNode root = new DefaultMutableTreeNode("Root");
+        File[] rootFiles = File.listRoots();
+        for (File rootFile : rootFiles) {
+            DefaultMutableTreeNode node = new DefaultMutableTreeNode(rootFile);
+            root.add(node);
+            // Add dummy node to enable expand icon; roots are directories, so no stat is needed
+            node.add(TreeNodeLoader.createPlaceholder());
+        }
+        
+        fileTree = new JTree(root);
+        fileTree.setRootVisible(false);
+        fileTree.setShowsRootHandles(true);
+        
+        // Set custom renderer for tree to show proper icons
+        treeCellRenderer = new DefaultTreeCellRenderer() {
+            @Override
+            public Component getTreeCellRendererComponent(JTree tree, Object value, 
+                    boolean selected, boolean expanded, boolean leaf, int row, boolean hasFocus) {
+                super.getTreeCellRendererComponent(tree, value, selected, expanded, leaf, row, hasFocus);
+                DefaultMutableTreeNode node = (DefaultMutableTreeNode) value;
+                if (node.getUserObject() instanceof File) {
+                    File file = (File) node.getUserObject();
+                    // Cached lookups; the node is re-laid out once a missing value arrives
+                    Runnable nodeChanged = () -> ((DefaultTreeModel) tree.getModel()).nodeChanged(node);
+                    setIcon(iconService.getIcon(file, node.getAllowsChildren(), nodeChanged));
+                    setText(iconService.getDisplayName(file, nodeChanged));
+                }
+                return this;
+            }
+        };
+        fileTree.setCellRenderer(treeCellRenderer);
+        
+        // Create table for file display
+        fileTableModel = new FileTableModel();
+        fileTable = new JTable(fileTableModel);
+        fileTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        FileTableSorter fileTableSorter = new FileTableSorter(fileTableModel);
+        fileTable.setRowSorter(fileTableSorter);
+        fileTable.setShowGrid(false);
+        fileTable.setIntercellSpacing(new Dimension(0, 0));
+        setupFileTableColumns(fileTable, fileTableModel, iconService);
+        
+        // Type-ahead filter of the rows shown
+        filterBar = new FilterBar(fileTableModel, fileTableSorter);
+        
+        // Copy, cut, paste and drag-and-drop through the transfer queue
+        transferPanel = new TransferPanel();
+        transferService = new FileTransferService(transferPanel);
+        fileTable.setDragEnabled(true);
+        fileTable.setFillsViewportHeight(true);
+        fileTable.setDropMode(DropMode.ON);
+        fileTable.setTransferHandler(new FileTransferHandler(fileTableModel, transferService));
+    }
+    
+    private void setupLayout() {
+        setLayout(new BorderLayout());
+        
+        // Create toolbar
+        JToolBar toolBar = new JToolBar();
+        toolBar.setFloatable(false);
+        toolBar.add(backButton);
+        toolBar.add(forwardButton);
+        toolBar.add(upButton);
+        toolBar.add(refreshButton);
+        toolBar.add(homeButton);
+        toolBar.add(deleteButton);
+        toolBar.add(folderSizesButton);
+        toolBar.add(previewButton);
+        toolBar.addSeparator();
+        toolBar.add(new JLabel("Address: "));
+        toolBar.add(addressBar);
+        toolBar.addSeparator();
+        toolBar.add(new JLabel("Search: "));
+        toolBar.add(searchField);
+        
+        add(toolBar, BorderLayout.NORTH);
+        
+        // Create split pane for tree and file table
+        JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT);
+        splitPane.setDividerLocation(200);
+        
+        // Add tree view with scrolling
+        JScrollPane treeScroll = new JScrollPane(fileTree);
+        splitPane.setLeftComponent(treeScroll);
+        
+        // Scrolling, expanding and loaded children all change the tree's viewport
+        prefetchTimer = new Timer(300, e -> prefetchLikelyDirectories());
+        prefetchTimer.setRepeats(false);
+        treeScroll.getViewport().addChangeListener(e -> prefetchTimer.restart());
+        
+        // Add table view with scrolling, below its filter bar
+        JScrollPane tableScroll = new JScrollPane(fileTable);
+        JPanel tablePanel = new JPanel(new BorderLayout());
+        tablePanel.add(filterBar, BorderLayout.NORTH);
+        tablePanel.add(tableScroll, BorderLayout.CENTER);
+        
+        // The preview shares the tab with the table, hidden until switched on
+        previewPanel = new PreviewPanel();
+        previewPanel.setVisible(false);
+        previewSplit = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, tablePanel, previewPanel);
+        previewSplit.setResizeWeight(0.6);
+        
+        diskUsagePanel = new DiskUsagePanel(this::navigateTo);
+        JTabbedPane viewTabs = new JTabbedPane();
+        viewTabs.addTab("Files", previewSplit);
+        viewTabs.addTab("Disk Usage", diskUsagePanel);
+        contentSearchPanel = new ContentSearchPanel(this::navigateTo);
+        viewTabs.addTab("Contents", contentSearchPanel);
+        duplicatePanel = new DuplicatePanel(this::navigateTo);
+        viewTabs.addTab("Duplicates", duplicatePanel);
+        splitPane.setRightComponent(viewTabs);
+        
+        add(splitPane, BorderLayout.CENTER);
+        
+        // Add a status bar
+        JPanel statusBar = new JPanel(new BorderLayout());
+        statusBar.setBorder(BorderFactory.createLoweredBevelBorder());
+        statusLabel = new JLabel(" Ready");
+        statusBar.add(statusLabel, BorderLayout.WEST);
+        metricsLabel = new JLabel();
+        metricsLabel.setToolTipText("Latest listing, table update and icon lookup times; click for diagnostics");
+        metricsLabel.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        metricsLabel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                showDiagnostics();
+            }
+        });
+        statusBar.add(metricsLabel, BorderLayout.EAST);
+        new Timer(1000, e -> updateMetricsLabel()).start();
+        
+        // The transfer queue sits above the status bar while it has jobs
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(transferPanel, BorderLayout.CENTER);
+        southPanel.add(statusBar, BorderLayout.SOUTH);
+        add(southPanel, BorderLayout.SOUTH);
+    }
+    
+    private void setupEventHandlers() {
+        // Tree selection listener
+        fileTree.addTreeSelectionListener(e -> {
+            DefaultMutableTreeNode node = (DefaultMutableTreeNode) 
+                    fileTree.getLastSelectedPathComponent();
+            if (node == null || !(node.getUserObject() instanceof File)) {
+                return;
+            }
+            
+            // Selecting the current directory is the tree following navigation
+            File file = (File) node.getUserObject();
+            if (!file.equals(currentDirectory) && file.isDirectory()) {
+                navigateTo(file);
+            }
+        });
+        
+        // Tree expansion listener
+        fileTree.addTreeExpansionListener(new TreeExpansionListener() {
+            @Override
+            public void treeExpanded(TreeExpansionEvent event) {
+                TreePath path = event.getPath();
+                DefaultMutableTreeNode node = (DefaultMutableTreeNode) path.getLastPathComponent();
+                
+                // Watch the node's directory while it is expanded
+                File directory = (File) node.getUserObject();
+                if (watchedTreeNodes.put(directory.toPath(), node) == null) {
+                    directoryWatcher.watch(directory.toPath());
+                }
+                
+                // A load already running for this node is reused
+                if (treeLoaders.containsKey(node)) {
+                    return;
+                }
+                
+                // If this node has the dummy node, load the real children in the background
+                if (TreeNodeLoader.needsLoading(node)) {
+                    TreeNodeLoader loader = new TreeNodeLoader((DefaultTreeModel) fileTree.getModel(), node,
+                            directoryModel, () -> treeLoaders.remove(node));
+                    treeLoaders.put(node, loader);
+                    loader.execute();
+                } else {
+                    // Changes made while the node was collapsed were not watched
+                    refreshTreeNode(node);
+                }
+            }
+            
+            @Override
+            public void treeCollapsed(TreeExpansionEvent event) {
+                DefaultMutableTreeNode node = (DefaultMutableTreeNode) event.getPath().getLastPathComponent();
+                
+                Path directory = ((File) node.getUserObject()).toPath();
+                if (watchedTreeNodes.remove(directory) != null) {
+                    directoryWatcher.unwatch(directory);
+                }
+                
+                // Cancel an unfinished load; it starts over on the next expansion
+                TreeNodeLoader loader = treeLoaders.remove(node);
+                if (loader != null) {
+                    loader.cancelAndReset();
+                }
+            }
+        });
+        
+        // Table mouse listener for double click
+        fileTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    int row = fileTable.rowAtPoint(e.getPoint());
+                    if (row >= 0) {
+                        // Convert view row index to model row index
+                        int modelRow = fileTable.convertRowIndexToModel(row);
+                        File file = fileTableModel.getFile(modelRow);
+                        
+                        if (fileTableModel.isDirectory(modelRow)) {
+                            navigateTo(file);
+                        } else {
+                            openFile(file, fileTableModel.getSize(modelRow));
+                        }
+                    }
+                }
+            }
+        });
+        
+        // Remember the folder under the mouse, it may be opened next
+        fileTable.addMouseMotionListener(new MouseMotionAdapter() {
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                int row = fileTable.rowAtPoint(e.getPoint());
+                int modelRow = row >= 0 ? fileTable.convertRowIndexToModel(row) : -1;
+                setHoveredDirectory(modelRow >= 0 && fileTableModel.isDirectory(modelRow)
+                        ? fileTableModel.getFile(modelRow) : null);
+            }
+        });
+        fileTree.addMouseMotionListener(new MouseMotionAdapter() {
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                TreePath path = fileTree.getPathForLocation(e.getX(), e.getY());
+                DefaultMutableTreeNode node = path != null ? (DefaultMutableTreeNode) path.getLastPathComponent() : null;
+                setHoveredDirectory(node != null && node.getUserObject() instanceof File && node.getAllowsChildren()
+                        ? (File) node.getUserObject() : null);
+            }
+        });
+        
+        // Any click or key press stops prefetching, so the user's own request gets the disk
+        Toolkit.getDefaultToolkit().addAWTEventListener(e -> {
+            if (e.getID() == MouseEvent.MOUSE_PRESSED || e.getID() == KeyEvent.KEY_PRESSED) {
+                directoryModel.cancelPrefetches();
+                prefetchTimer.restart();
+            }
+        }, AWTEvent.MOUSE_EVENT_MASK | AWTEvent.KEY_EVENT_MASK);
+        
+        // Back button action
+        backButton.addActionListener(e -> {
+            if (!backHistory.isEmpty()) {
+                forwardHistory.push(currentDirectory);
+                forwardButton.setEnabled(true);
+                
+                File backFile = backHistory.pop();
+                if (backHistory.isEmpty()) {
+                    backButton.setEnabled(false);
+                }
+                
+                navigateWithoutHistory(backFile);
+            }
+        });
+        
+        // Forward button action
+        forwardButton.addActionListener(e -> {
+            if (!forwardHistory.isEmpty()) {
+                backHistory.push(currentDirectory);
+                backButton.setEnabled(true);
+                
+                File forwardFile = forwardHistory.pop();
+                if (forwardHistory.isEmpty()) {
+                    forwardButton.setEnabled(false);
+                }
+                
+                navigateWithoutHistory(forwardFile);
+            }
+        });
+        
+        // Up button action
+        upButton.addActionListener(e -> {
+            if (currentDirectory != null && currentDirectory.getParentFile() != null) {
+                navigateTo(currentDirectory.getParentFile());
+            }
+        });
+        
+        // Refresh button action
+        refreshButton.addActionListener(e -> {
+            if (currentDirectory != null) {
+                // An explicit refresh always reads the directory again
+                directoryCache.invalidate(currentDirectory.toPath());
+                folderSizeCalculator.clearCache();
+                navigateWithoutHistory(currentDirectory);
+            }
+        });
+        
+        // Home button action
+        homeButton.addActionListener(e -> {
+            navigateTo(fileSystemView.getHomeDirectory());
+        });
+        
+        // Delete button action
+        deleteButton.addActionListener(e -> {
+            // While a deletion is running the button cancels it
+            if (deleteWorker != null) {
+                deleteWorker.stop();
+                return;
+            }
+            
+            int[] selectedRows = fileTable.getSelectedRows();
+            if (selectedRows.length == 0) {
+                return;
+            }
+            
+            List<String> namesToDelete = new ArrayList<>();
+            boolean folders = false;
+            for (int row : selectedRows) {
+                int modelRow = fileTable.convertRowIndexToModel(row);
+                namesToDelete.add(fileTableModel.getName(modelRow));
+                folders |= fileTableModel.isDirectory(modelRow);
+            }
+            
+            int response = JOptionPane.showConfirmDialog(
+                    this,
+                    "Are you sure you want to delete the selected " +
+                            (namesToDelete.size() == 1 ? "file" : namesToDelete.size() + " files") +
+                            (folders ? " and everything in the selected folders" : "") + "?",
+                    "Confirm Delete",
+                    JOptionPane.YES_NO_OPTION,
+                    JOptionPane.WARNING_MESSAGE
+            );
+            
+            if (response == JOptionPane.YES_OPTION) {
+                startDelete(fileTableModel.getDirectory(), namesToDelete);
+            }
+        });
+        
+        // Preview toggle, and the preview following the selection while it is shown
+        previewButton.addActionListener(e -> setPreviewVisible(previewButton.isSelected()));
+        fileTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                updatePreview();
+            }
+        });
+        
+        // Folder sizes toggle
+        folderSizesButton.addActionListener(e -> {
+            if (folderSizesButton.isSelected()) {
+                calculateFolderSizes();
+            } else {
+                folderSizeCalculator.cancel();
+                fileTableModel.clearFolderSizes();
+            }
+        });
+        
+        // Address bar action
+        addressBar.addActionListener(e -> {
+            String address = addressBar.getText().trim();
+            Path path = Paths.get(address);
+            File file = path.toFile();
+            
+            if (file.exists() && file.isDirectory()) {
+                navigateTo(file);
+            } else {
+                JOptionPane.showMessageDialog(this,
+                        "Invalid directory path: " + address,
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                addressBar.setText(currentDirectory.getAbsolutePath());
+            }
+        });
+        
+        // Typing in the table starts filtering it; Ctrl+F goes to the filter, Enter back to the table
+        fileTable.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyTyped(KeyEvent e) {
+                char c = e.getKeyChar();
+                if (c != KeyEvent.CHAR_UNDEFINED && !Character.isISOControl(c) && c != ' '
+                        && !e.isControlDown() && !e.isAltDown() && !e.isMetaDown()) {
+                    filterBar.type(c);
+                    e.consume();
+                }
+            }
+        });
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(
+                KeyStroke.getKeyStroke(KeyEvent.VK_F, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()),
+                "focusFilter");
+        getRootPane().getActionMap().put("focusFilter", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                filterBar.getField().requestFocusInWindow();
+                filterBar.getField().selectAll();
+            }
+        });
+        filterBar.getField().addActionListener(e -> {
+            if (fileTable.getRowCount() > 0) {
+                fileTable.setRowSelectionInterval(0, 0);
+            }
+            fileTable.requestFocusInWindow();
+        });
+        
+        // Search field action
+        searchField.addActionListener(e -> startSearch(searchField.getText().trim()));
+        
+        // Escape leaves the search results
+        searchField.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "clearSearch");
+        searchField.getActionMap().put("clearSearch", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                searchField.setText("");
+                startSearch("");
+            }
+        });
+    }
+    
+    private void navigateTo(File directory) {
+        directory = normalized(directory);
+        if (directory == null || !directory.isDirectory()) {
+            return;
+        }
+        
+        // Add to back history if we're not navigating through history
+        if (currentDirectory != null) {
+            backHistory.push(currentDirectory);
+            backButton.setEnabled(true);
+        }
+        
+        // Clear forward history when navigating to a new location
+        forwardHistory.clear();
+        forwardButton.setEnabled(false);
+        
+        showDirectory(directory);
+    }
+    
+    private void navigateWithoutHistory(File directory) {
+        directory = normalized(directory);
+        if (directory == null || !directory.isDirectory()) {
+            return;
+        }
+        
+        showDirectory(directory);
+    }
+    
+    // The directory as an absolute path without . or .. segments, or null if it is not a
+    // path at all. Navigation normalizes once on the way in, so the table, the history
+    // and the tree compare the same File however the directory was reached.
+    private static File normalized(File directory) {
+        if (directory == null) {
+            return null;
+        }
+        try {
+            return directory.toPath().toAbsolutePath().normalize().toFile();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+    
+    // Shows a directory that is already normalized
+    private void showDirectory(File directory) {
+        currentDirectory = directory;
+        addressBar.setText(directory.getAbsolutePath());
+        
+        // Update tree selection
+        selectDirectoryInTree(directory);
+        
+        // Update file table
+        updateFileTable(directory);
+        diskUsagePanel.setDirectory(directory);
+        contentSearchPanel.setDirectory(directory);
+        duplicatePanel.setDirectory(directory);
+        
+        // Update button states
+        upButton.setEnabled(directory.getParentFile() != null);
+    }
+    
+    // Shows the last session from its snapshot without touching the disk on the EDT:
+    // the listings it needs go into the cache, and the usual background listing of
+    // the table and refresh of the expanded nodes check them against the disk
+    private boolean restoreSession() {
+        SessionSnapshot session;
+        try {
+            session = SessionSnapshot.open(SessionSnapshot.defaultFile());
+            if (session == null || session.getCurrentDirectory() == null) {
+                return false;
+            }
+            
+            session.restoreListings(directoryCache, true);
+            backHistory.addAll(session.getBackHistory());
+            forwardHistory.addAll(session.getForwardHistory());
+            for (File directory : session.getExpandedDirectories()) {
+                expandRestoredDirectory(directory);
+            }
+            restoredDirectory = normalized(session.getCurrentDirectory());
+            showDirectory(restoredDirectory);
+        } catch (IOException | RuntimeException e) {
+            // Unreadable; start afresh
+            backHistory.clear();
+            forwardHistory.clear();
+            restoredDirectory = null;
+            return false;
+        } finally {
+            backButton.setEnabled(!backHistory.isEmpty());
+            forwardButton.setEnabled(!forwardHistory.isEmpty());
+        }
+        
+        // The other recent listings make history and prefetching hit the cache
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                session.restoreListings(directoryCache, false);
+                return null;
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (InterruptedException e) {
+                    // Not restored; nothing to report
+                } catch (ExecutionException e) {
+                    // They are only a head start; the directories are listed when they are opened
+                    statusLabel.setText(" Recent listings not restored: " + e.getCause());
+                }
+            }
+        }.execute();
+        return true;
+    }
+    
+    // Expands a tree folder left open by the last session, filling it and its ancestors
+    // from cached listings; it is skipped if one of them has none
+    private void expandRestoredDirectory(File directory) {
+        Deque<File> chain = new ArrayDeque<>();
+        for (File file = directory; file != null; file = file.getParentFile()) {
+            chain.push(file);
+        }
+        
+        DefaultTreeModel treeModel = (DefaultTreeModel) fileTree.getModel();
+        DefaultMutableTreeNode node = (DefaultMutableTreeNode) treeModel.getRoot();
+        for (File file : chain) {
+            if (node != treeModel.getRoot() && TreeNodeLoader.needsLoading(node)) {
+                // Not cached, or still being loaded by the expansion of an earlier folder
+                List<FileEntry> cached = directoryModel.peek(((File) node.getUserObject()).toPath());
+                if (cached == null || treeLoaders.containsKey(node)) {
+                    return;
+                }
+                TreeNodeLoader.setChildren(treeModel, node, cached);
+            }
+            node = node == treeModel.getRoot() ? findRootNode(node, file)
+                    : TreeNodeLoader.findChild(node, file.getName());
+            if (node == null) {
+                return;
+            }
+        }
+        
+        List<FileEntry> cached = directoryModel.peek(directory.toPath());
+        if (cached != null && TreeNodeLoader.needsLoading(node) && !treeLoaders.containsKey(node)) {
+            TreeNodeLoader.setChildren(treeModel, node, cached);
+        }
+        // Watches the directory and checks the children against the disk, or loads them
+        fileTree.expandPath(new TreePath(node.getPath()));
+    }
+    
+    private static DefaultMutableTreeNode findRootNode(DefaultMutableTreeNode root, File file) {
+        for (int i = 0; i < root.getChildCount(); i++) {
+            DefaultMutableTreeNode node = (DefaultMutableTreeNode) root.getChildAt(i);
+            if (file.equals(node.getUserObject())) {
+                return node;
+            }
+        }
+        return null;
+    }
+    
+    // Saves the session for the next start; nothing is lost but a faster start if it fails
+    private void saveSession() {
+        List<File> expanded = new ArrayList<>();
+        DefaultMutableTreeNode root = (DefaultMutableTreeNode) fileTree.getModel().getRoot();
+        Enumeration<TreePath> paths = fileTree.getExpandedDescendants(new TreePath(root));
+        while (paths != null && paths.hasMoreElements()) {
+            Object directory = ((DefaultMutableTreeNode) paths.nextElement().getLastPathComponent()).getUserObject();
+            if (directory instanceof File) {
+                expanded.add((File) directory);
+            }
+        }
+        // Parents first
+        expanded.sort(Comparator.comparingInt(directory -> directory.getPath().length()));
+        try {
+            SessionSnapshot.save(SessionSnapshot.defaultFile(), currentDirectory, backHistory, forwardHistory,
+                    expanded, directoryCache);
+        } catch (IOException e) {
+            // The next start begins in the home directory
+        }
+    }
+    
+    // Expands the tree down to a directory and selects it. Levels whose children are
+    // loaded already are walked at once; the missing ones are listed in parallel in the
+    // background and go into the tree together, under one model event.
+    private void selectDirectoryInTree(File directory) {
+        if (treeReveal != null) {
+            treeReveal.cancel();
+            treeReveal = null;
+        }
+        
+        List<File> chain = new ArrayList<>();
+        for (File file = directory; file != null; file = file.getParentFile()) {
+            chain.add(0, file);
+        }
+        DefaultMutableTreeNode node = findRootNode((DefaultMutableTreeNode) fileTree.getModel().getRoot(), chain.get(0));
+        int level = 1;
+        while (node != null && level < chain.size() && isLoadedInTree(node)) {
+            node = TreeNodeLoader.findChild(node, chain.get(level++).getName());
+        }
+        if (node == null) {
+            // Not shown in the tree, e.g. a hidden folder
+            return;
+        }
+        if (level == chain.size()) {
+            showInTree(node);
+            return;
+        }
+        
+        // The node reached and the levels below it down to the directory's parent
+        List<Path> missing = new ArrayList<>();
+        for (int i = level - 1; i < chain.size() - 1; i++) {
+            missing.add(chain.get(i).toPath());
+        }
+        DefaultMutableTreeNode first = node;
+        int firstLevel = level;
+        treeReveal = directoryModel.listAll(missing, SwingUtilities::invokeLater, listings -> {
+            treeReveal = null;
+            revealInTree(first, chain, firstLevel, listings);
+        });
+    }
+    
+    // Fills the levels listed for a reveal, reusing any loaded in the meantime, and selects the directory
+    private void revealInTree(DefaultMutableTreeNode first, List<File> chain, int level,
+            List<List<FileEntry>> listings) {
+        DefaultTreeModel treeModel = (DefaultTreeModel) fileTree.getModel();
+        if (first.getRoot() != treeModel.getRoot()) {
+            return;
+        }
+        
+        DefaultMutableTreeNode node = first;
+        DefaultMutableTreeNode filled = null;
+        for (int i = 0; i < listings.size() && node != null; i++) {
+            if (!isLoadedInTree(node)) {
+                List<FileEntry> entries = listings.get(i);
+                if (entries == null) {
+                    // Unreadable
+                    node = null;
+                    break;
+                }
+                // A load started by expanding the node is overtaken
+                TreeNodeLoader loader = treeLoaders.remove(node);
+                if (loader != null) {
+                    loader.cancel(true);
+                }
+                TreeNodeLoader.setChildren(node, entries);
+                if (filled == null) {
+                    filled = node;
+                }
+            }
+            node = TreeNodeLoader.findChild(node, chain.get(level + i).getName());
+        }
+        
+        if (filled != null) {
+            treeModel.nodeStructureChanged(filled);
+        }
+        if (node != null) {
+            showInTree(node);
+        }
+    }
+    
+    private boolean isLoadedInTree(DefaultMutableTreeNode node) {
+        return TreeNodeLoader.isLoaded(node) && !treeLoaders.containsKey(node);
+    }
+    
+    // Expands the node's parents, which watches and refreshes them as usual, and selects it
+    private void showInTree(DefaultMutableTreeNode node) {
+        TreePath path = new TreePath(node.getPath());
+        fileTree.expandPath(path.getParentPath());
+        fileTree.setSelectionPath(path);
+        fileTree.scrollPathToVisible(path);
+    }
+    
+    // Column widths and cell renderers for the file table; also used by the benchmarks
+    static void setupFileTableColumns(JTable fileTable, FileTableModel fileTableModel, IconService iconService) {
+        // Hide the File object column
+        fileTable.getColumnModel().getColumn(0).setMinWidth(0);
+        fileTable.getColumnModel().getColumn(0).setMaxWidth(0);
+        fileTable.getColumnModel().getColumn(0).setWidth(0);
+        
+        // Set up custom renderer for names with icons
+        fileTable.getColumnModel().getColumn(1).setCellRenderer(new DefaultTableCellRenderer() {
+            @Override
+            public Component getTableCellRendererComponent(JTable table, Object value, 
+                    boolean isSelected, boolean hasFocus, int row, int column) {
+                JLabel label = (JLabel) super.getTableCellRendererComponent(
+                        table, value, isSelected, hasFocus, row, column);
+                
+                int modelRow = table.convertRowIndexToModel(row);
+                File file = fileTableModel.getFile(modelRow);
+                // Cached lookup; repaint just this cell once a missing icon arrives
+                label.setIcon(iconService.getIcon(file, fileTableModel.isDirectory(modelRow),
+                        () -> table.repaint(table.getCellRect(row, column, false))));
+                
+                return label;
+            }
+        });
+        
+        // Set up custom renderer for size column
+        fileTable.getColumnModel().getColumn(3).setCellRenderer(new DefaultTableCellRenderer() {
+            @Override
+            public Component getTableCellRendererComponent(JTable table, Object value, 
+                    boolean isSelected, boolean hasFocus, int row, int column) {
+                if (value == null) {
+                    value = "";
+                } else {
+                    // Format file size
+                    value = formatSize((Long) value);
+                }
+                
+                // Folder sizes still being computed
+                if (fileTableModel.isSizePending(table.convertRowIndexToModel(row))) {
+                    value = value + "…";
+                }
+                
+                JLabel label = (JLabel) super.getTableCellRendererComponent(
+                        table, value, isSelected, hasFocus, row, column);
+                label.setHorizontalAlignment(JLabel.RIGHT);
+                
+                return label;
+            }
+        });
+        
+        // Set up custom renderer for date column
+        fileTable.getColumnModel().getColumn(4).setCellRenderer(new DefaultTableCellRenderer() {
+            private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+            
+            @Override
+            public Component getTableCellRendererComponent(JTable table, Object value, 
+                    boolean isSelected, boolean hasFocus, int row, int column) {
+                if (value instanceof Date) {
+                    value = dateFormat.format((Date) value);
+                }
+                
+                return super.getTableCellRendererComponent(
+                        table, value, isSelected, hasFocus, row, column);
+            }
+        });
+        
+        // Set column widths
+        fileTable.getColumnModel().getColumn(1).setPreferredWidth(250);
+        fileTable.getColumnModel().getColumn(2).setPreferredWidth(100);
+        fileTable.getColumnModel().getColumn(3).setPreferredWidth(100);
+        fileTable.getColumnModel().getColumn(4).setPreferredWidth(150);
+    }
+    
+    private void updateFileTable(File directory) {
+        // Refreshing the directory already shown keeps its rows and updates them in place
+        File previousDirectory = fileTableModel.getDirectory();
+        boolean refresh = directory.equals(previousDirectory) && searchWorker == null;
+        boolean streaming = false;
+        cancelSearch();
+        if (!refresh) {
+            folderSizeCalculator.cancel();
+            filterBar.clear();
+            
+            List<FileEntry> cached = directoryModel.peek(directory.toPath());
+            if (cached != null) {
+                // Show the last known listing right away; the listing below checks it against the disk
+                fileTableModel.setEntries(directory, cached);
+            } else {
+                fileTableModel.clear(directory);
+                streaming = true;
+            }
+            
+            // Follow changes to the directory shown instead of the previous one
+            if (previousDirectory != null) {
+                directoryWatcher.unwatch(previousDirectory.toPath());
+            }
+            directoryWatcher.watch(directory.toPath());
+        }
+        
+        // List the directory in the background, streaming rows in as they are read
+        startListing(directory, streaming);
+    }
+    
+    private void startListing(File directory, boolean streaming) {
+        // Cancel a listing still running for the previous directory
+        cancelListing();
+        
+        statusLabel.setText(" Loading " + directory.getAbsolutePath() + "...");
+        
+        listing = directoryModel.list(directory.toPath(), streaming, SwingUtilities::invokeLater,
+                new DirectoryModel.Listener() {
+            @Override
+            public void entriesLoaded(List<FileEntry> batch) {
+                fileTableModel.addEntries(batch);
+                statusLabel.setText(" Loading... " + fileTableModel.getRowCount() + " items");
+            }
+            
+            @Override
+            public void listingFinished(List<FileEntry> entries) {
+                listing = null;
+                restoredDirectory = null;
+                prefetchTimer.restart();
+                
+                // Replace the streamed rows with the sorted listing, or update them in place on refresh
+                fileTableModel.setEntries(directory, entries);
+                showItemCount();
+                calculateFolderSizes();
+            }
+            
+            @Override
+            public void listingFailed(Exception e) {
+                listing = null;
+                if (directory.equals(restoredDirectory)) {
+                    // Gone since the last session
+                    restoredDirectory = null;
+                    navigateWithoutHistory(fileSystemView.getHomeDirectory());
+                    return;
+                }
+                statusLabel.setText(" Error reading " + directory.getAbsolutePath() + ": " + e.getMessage());
+            }
+        });
+    }
+    
+    private void cancelListing() {
+        if (listing != null) {
+            listing.cancel();
+            listing = null;
+        }
+    }
+    
+    private void startSearch(String query) {
+        if (currentDirectory == null) {
+            return;
+        }
+        if (query.isEmpty()) {
+            // Back to the directory listing
+            if (searchWorker != null) {
+                updateFileTable(currentDirectory);
+            }
+            return;
+        }
+        
+        // The results replace the listing until the next navigation
+        cancelListing();
+        folderSizeCalculator.cancel();
+        cancelSearch();
+        
+        File root = currentDirectory;
+        fileTableModel.clear(root);
+        statusLabel.setText(" Searching " + root.getAbsolutePath() + " for \"" + query + "\"...");
+        
+        searchWorker = new FileSearchWorker(root.toPath(), query, new FileSearchWorker.Listener() {
+            @Override
+            public void resultsFound(List<FileEntry> batch) {
+                fileTableModel.addEntries(batch);
+                statusLabel.setText(" Searching... " + fileTableModel.getRowCount() + " results");
+            }
+            
+            @Override
+            public void indexing(int directories) {
+                statusLabel.setText(" Indexing " + root.getAbsolutePath() + "... " + directories + " folders");
+            }
+            
+            @Override
+            public void searchFinished(List<FileEntry> results) {
+                // Results are named by their path below the root, which getFile() resolves
+                fileTableModel.setEntries(root, results);
+                int count = results.size();
+                statusLabel.setText(" " + count + (count == 1 ? " result" : " results") + " for \"" + query + "\""
+                        + (count >= FileSearchWorker.MAX_RESULTS ? " (more not shown)" : ""));
+            }
+            
+            @Override
+            public void searchFailed(Exception e) {
+                statusLabel.setText(" Error searching " + root.getAbsolutePath() + ": " + e.getMessage());
+            }
+        });
+        searchWorker.execute();
+    }
+    
+    private void cancelSearch() {
+        if (searchWorker != null) {
+            searchWorker.cancel(true);
+            searchWorker = null;
+        }
+    }
+    
+    private void startDelete(File directory, List<String> names) {
+        deleteButton.setToolTipText("Cancel delete");
+        statusLabel.setText(" Deleting...");
+        
+        deleteWorker = new BulkDeleteWorker(directory.toPath(), names, new BulkDeleteWorker.Listener() {
+            @Override
+            public void progressChanged(BulkDeleteWorker.Progress progress) {
+                if (progress.scanning) {
+                    statusLabel.setText(" Deleting: " + progress.total + " items found...");
+                    return;
+                }
+                
+                long remaining = progress.remainingMillis();
+                statusLabel.setText(String.format(" Deleting: %d of %d items (%.0f items/s, %s/s)%s",
+                        progress.deleted, progress.total, progress.itemsPerSecond(),
+                        formatSize((long) progress.bytesPerSecond()),
+                        remaining >= 0 ? ", about " + formatDuration(remaining) + " left" : ""));
+            }
+            
+            @Override
+            public void deleteFinished(BulkDeleteWorker.Result result) {
+                deleteWorker = null;
+                deleteButton.setToolTipText("Delete");
+                
+                // Only the removed rows go; the rest of the listing stays as it is
+                if (directory.equals(fileTableModel.getDirectory())) {
+                    fileTableModel.removeEntries(result.removedNames);
+                }
+                
+                statusLabel.setText(" " + (result.cancelled ? "Delete cancelled after " : "Deleted ")
+                        + result.deleted + (result.deleted == 1 ? " item" : " items")
+                        + " (" + formatSize(result.deletedBytes) + ")"
+                        + (result.errorCount > 0 ? ", " + result.errorCount + " failed" : ""));
+                
+                if (result.errorCount > 0) {
+                    // One summary for all failures
+                    StringBuilder message = new StringBuilder(result.errorCount
+                            + (result.errorCount == 1 ? " item" : " items") + " could not be deleted:\n");
+                    for (String error : result.errors.subList(0, Math.min(20, result.errors.size()))) {
+                        message.append("\n").append(error);
+                    }
+                    if (result.errorCount > 20) {
+                        message.append("\n... and ").append(result.errorCount - 20).append(" more");
+                    }
+                    JOptionPane.showMessageDialog(FileExplorer.this, message.toString(),
+                            "Delete Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+        deleteWorker.execute();
+    }
+    
+    static String formatSize(long size) {
+        if (size < 1024) {
+            return size + " B";
+        } else if (size < 1024 * 1024) {
+            return String.format("%.1f KB", size / 1024.0);
+        } else if (size < 1024 * 1024 * 1024) {
+            return String.format("%.1f MB", size / (1024.0 * 1024));
+        } else {
+            return String.format("%.1f GB", size / (1024.0 * 1024 * 1024));
+        }
+    }
+    
+    private static String formatDuration(long millis) {
+        long seconds = (millis + 999) / 1000;
+        return seconds < 60 ? seconds + " s" : (seconds / 60) + " min " + (seconds % 60) + " s";
+    }
+    
+    private void showItemCount() {
+        int count = fileTableModel.getRowCount();
+        statusLabel.setText(" " + count + (count == 1 ? " item" : " items"));
+        
+        // Cache and prefetch counters for tuning fileexplorer.cache.maxBytes and fileexplorer.prefetch.budget
+        long prefetches = directoryModel.getPrefetches();
+        long prefetchHits = directoryModel.getPrefetchHits();
+        statusLabel.setToolTipText(String.format(
+                "Directory cache: %d listings, %.1f of %.1f MB, %d hits, %d misses, %d evictions; "
+                        + "prefetch: %d folders, %d opened (%.0f%% hit rate)",
+                directoryCache.getSize(),
+                directoryCache.getCurrentBytes() / (1024.0 * 1024),
+                directoryCache.getMaxBytes() / (1024.0 * 1024),
+                directoryCache.getHits(), directoryCache.getMisses(), directoryCache.getEvictions(),
+                prefetches, prefetchHits, prefetches > 0 ? 100.0 * prefetchHits / prefetches : 0.0));
+    }
+    
+    private void calculateFolderSizes() {
+        if (!folderSizesButton.isSelected() || searchWorker != null) {
+            return;
+        }
+        
+        // Measure the folders in the table that have no size yet
+        File directory = fileTableModel.getDirectory();
+        List<Path> folders = new ArrayList<>();
+        for (int row = 0; row < fileTableModel.getRowCount(); row++) {
+            if (!fileTableModel.isSizeKnown(row)) {
+                folders.add(fileTableModel.getFile(row).toPath());
+            }
+        }
+        if (folders.isEmpty()) {
+            return;
+        }
+        
+        folderSizeCalculator.calculate(folders, (folder, size, complete) -> {
+            if (directory.equals(fileTableModel.getDirectory())) {
+                fileTableModel.setFolderSize(folder.getFileName().toString(), size, complete);
+            }
+        });
+    }
+    
+    private void setupDirectoryWatcher() {
+        directoryWatcher = new DirectoryWatcher(new DirectoryWatcher.Listener() {
+            @Override
+            public void directoryChanged(Path directory, long lastModified,
+                    List<FileEntry> changed, Set<String> removed) {
+                // Keep the cached listing current, so it stays valid for history navigation
+                directoryCache.applyChanges(directory, lastModified, changed, removed);
+                
+                // Row-level updates instead of listing the directory again
+                if (isShownInTable(directory)) {
+                    fileTableModel.applyChanges(changed, removed);
+                    showItemCount();
+                    calculateFolderSizes();
+                }
+                
+                DefaultMutableTreeNode node = watchedTreeNodes.get(directory);
+                if (node != null) {
+                    TreeNodeLoader.applyChanges((DefaultTreeModel) fileTree.getModel(), node, changed, removed);
+                }
+            }
+            
+            @Override
+            public void directoryOverflowed(Path directory) {
+                // Too many changes to follow one by one
+                if (isShownInTable(directory)) {
+                    updateFileTable(fileTableModel.getDirectory());
+                }
+                
+                DefaultMutableTreeNode node = watchedTreeNodes.get(directory);
+                if (node != null) {
+                    refreshTreeNode(node);
+                }
+            }
+        });
+    }
+    
+    private boolean isShownInTable(Path directory) {
+        // Search results are not a listing of the directory
+        return searchWorker == null && fileTableModel.getDirectory() != null && fileTableModel.getDirectory().toPath().equals(directory);
+    }
+    
+    private void refreshTreeNode(DefaultMutableTreeNode node) {
+        // List the node's directory in the background and merge the result into its children
+        File directory = (File) node.getUserObject();
+        directoryModel.list(directory.toPath(), false, SwingUtilities::invokeLater, new DirectoryModel.Listener() {
+            @Override
+            public void entriesLoaded(List<FileEntry> batch) {
+                // Not streaming
+            }
+            
+            @Override
+            public void listingFinished(List<FileEntry> entries) {
+                TreeNodeLoader.mergeChildren((DefaultTreeModel) fileTree.getModel(), node, entries);
+            }
+            
+            @Override
+            public void listingFailed(Exception e) {
+                // Keep the children shown so far
+            }
+        });
+    }
+    
+    private void setHoveredDirectory(File directory) {
+        if (!Objects.equals(directory, hoveredDirectory)) {
+            hoveredDirectory = directory;
+            prefetchTimer.restart();
+        }
+    }
+    
+    // Lists the directories the user is likely to open next, so opening them is served from
+    // the cache: the folder under the mouse, the targets of Up, Back and Forward, and the
+    // collapsed tree nodes in view. Waits while the current directory is still being listed.
+    private void prefetchLikelyDirectories() {
+        if (listing != null || currentDirectory == null) {
+            return;
+        }
+        
+        List<Path> directories = new ArrayList<>();
+        if (hoveredDirectory != null) {
+            directories.add(hoveredDirectory.toPath());
+        }
+        if (currentDirectory.getParentFile() != null) {
+            directories.add(currentDirectory.getParentFile().toPath());
+        }
+        if (!backHistory.isEmpty()) {
+            directories.add(backHistory.peek().toPath());
+        }
+        if (!forwardHistory.isEmpty()) {
+            directories.add(forwardHistory.peek().toPath());
+        }
+        
+        // Collapsed tree nodes in view
+        Rectangle visible = fileTree.getVisibleRect();
+        int firstRow = fileTree.getClosestRowForLocation(visible.x, visible.y);
+        int lastRow = fileTree.getClosestRowForLocation(visible.x, visible.y + visible.height);
+        for (int row = Math.max(firstRow, 0); row <= lastRow; row++) {
+            DefaultMutableTreeNode node = (DefaultMutableTreeNode) fileTree.getPathForRow(row).getLastPathComponent();
+            if (node.getUserObject() instanceof File && TreeNodeLoader.needsLoading(node)) {
+                directories.add(((File) node.getUserObject()).toPath());
+            }
+        }
+        directoryModel.prefetch(directories);
+    }
+    
+    private void updateMetricsLabel() {
+        long stalls = Metrics.EDT_STALL.getCount();
+        metricsLabel.setText(String.format("List %.0f ms \u00b7 Table %.0f ms \u00b7 Icon %.1f ms \u00b7 %d %s ",
+                Metrics.LISTING.getLastMillis(), Metrics.MODEL_UPDATE.getLastMillis(),
+                Metrics.ICON_LOOKUP.getMeanMillis(), stalls, stalls == 1 ? "stall" : "stalls"));
+        metricsLabel.setForeground(stalls > 0 ? new Color(0xB0, 0x60, 0x00) : UIManager.getColor("Label.foreground"));
+    }
+    
+    // Files the desktop can open go to their application; large files, and any file
+    // when there is no desktop to open it with, are shown in the preview instead. The
+    // size is the listed one, so nothing is read from the disk on the EDT.
+    private void openFile(File file, long size) {
+        if (Desktop.isDesktopSupported() && Desktop.getDesktop().isSupported(Desktop.Action.OPEN)
+                && size < LARGE_FILE_BYTES) {
+            try {
+                Desktop.getDesktop().open(file);
+                return;
+            } catch (IOException ex) {
+                // No application for it - preview it instead
+            }
+        }
+        previewButton.setSelected(true);
+        setPreviewVisible(true);
+        previewPanel.showFile(file);
+    }
+    
+    private void setPreviewVisible(boolean visible) {
+        if (previewPanel.isVisible() == visible) {
+            return;
+        }
+        previewPanel.setVisible(visible);
+        if (visible) {
+            previewSplit.setDividerLocation(0.6);
+            updatePreview();
+        } else {
+            // Let go of the mapping and stop the indexer
+            previewPanel.showFile(null);
+        }
+    }
+    
+    // Shows the selected file in the preview, if it is a single file; the listing says
+    // which rows are folders, so selecting makes no stat call
+    private void updatePreview() {
+        if (!previewPanel.isVisible() || fileTable.getSelectedRowCount() != 1) {
+            return;
+        }
+        int row = fileTable.convertRowIndexToModel(fileTable.getSelectedRow());
+        File file = fileTableModel.getFile(row);
+        if (!fileTableModel.isDirectory(row) && !file.equals(previewPanel.getFile())) {
+            previewPanel.showFile(file);
+        }
+    }
+    
+    private void showDiagnostics() {
+        if (diagnosticsDialog == null) {
+            diagnosticsDialog = new JDialog(this, "Diagnostics", false);
+            diagnosticsDialog.add(new DiagnosticsPanel());
+            diagnosticsDialog.pack();
+            diagnosticsDialog.setLocationRelativeTo(this);
+        }
+        diagnosticsDialog.setVisible(true);
+        diagnosticsDialog.toFront();
+    }
+    
+    public static void main(String[] args) {
+        // Set look and feel to system look and feel
+        try {
+            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        
+        // Metrics are collected from the start, and stalls on the EDT reported
+        EdtWatchdog.install();
+        Metrics.registerMBean();
+        
+        SwingUtilities.invokeLater(() -> {
+            FileExplorer explorer = new FileExplorer();
+            explorer.setVisible(true);
+        });
+    }
+}
@@ -0,0 +1,686 @@
+package fileexplorer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.regex.Pattern;
+
+// Persistent filename index for a directory subtree, stored in a file that is
+// memory-mapped for queries. The file holds a directory table, an entry table
+// (grouped by directory), UTF-8 name pools (original and lower case) and a
+// trigram index over the lower-case names with sorted posting lists of entry ids.
+// Substring and glob queries intersect the posting lists of the query's
+// trigrams and only check the surviving candidates, so they do not scan every name.
+//
+// The index is built by a parallel crawler. Rebuilding with a previous index
+// reuses the entries of every directory whose modification time is unchanged,
+// so only changed directories are listed again.
+final class FileNameIndex {
+    private static final int MAGIC = 0x464E4958;  // "FNIX"
+    private static final int VERSION = 1;
+    
+    private static final int HEADER_SIZE = 64;
+    private static final int DIRECTORY_RECORD_SIZE = 32;
+    private static final int ENTRY_RECORD_SIZE = 40;
+    private static final int TRIGRAM_RECORD_SIZE = 12;
+    
+    private static final byte FLAG_DIRECTORY = 1;
+    
+    // Longest array most JVMs allow
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    
+    // Modification times can be this coarse, see DirectoryCache
+    private static final long TIMESTAMP_GRANULARITY_MILLIS = 2000;
+    
+    private final Path root;
+    private final long builtAt;
+    private final int directoryCount;
+    private final int entryCount;
+    private final int trigramCount;
+    
+    // Sections of the mapped file
+    private final Section directories;
+    private final Section entries;
+    private final Section trigrams;
+    private final Section postings;
+    private final Section names;
+    private final Section lowerNames;
+    
+    // Relative directory paths, built on first use
+    private String[] directoryPaths;
+    private Map<String, Integer> directoryIds;
+    
+    private FileNameIndex(Path root, long builtAt, int directoryCount, int entryCount, int trigramCount,
+            Section directories, Section entries, Section trigrams, Section postings,
+            Section names, Section lowerNames) {
+        this.root = root;
+        this.builtAt = builtAt;
+        this.directoryCount = directoryCount;
+        this.entryCount = entryCount;
+        this.trigramCount = trigramCount;
+        this.directories = directories;
+        this.entries = entries;
+        this.trigrams = trigrams;
+        this.postings = postings;
+        this.names = names;
+        this.lowerNames = lowerNames;
+    }
+    
+    Path getRoot() {
+        return root;
+    }
+    
+    long getBuiltAt() {
+        return builtAt;
+    }
+    
+    int getEntryCount() {
+        return entryCount;
+    }
+    
+    // Where the index for a root directory is kept
+    static Path indexFileFor(Path root) {
+        String home = System.getProperty("user.home");
+        return Paths.get(home, ".fileexplorer", "index", hash(root.toAbsolutePath().toString()) + ".idx");
+    }
+    
+    // Opens a previously built index, or returns null if there is none for this root
+    static FileNameIndex open(Path root) throws IOException {
+        Path file = indexFileFor(root);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                return null;
+            }
+            
+            long builtAt = header.getLong(8);
+            int directoryCount = header.getInt(16);
+            int entryCount = header.getInt(20);
+            int trigramCount = header.getInt(24);
+            int rootLength = header.getInt(28);
+            long postingsBytes = header.getLong(32);
+            long namesBytes = header.getLong(40);
+            long lowerNamesBytes = header.getLong(48);
+            
+            long position = HEADER_SIZE;
+            ByteBuffer rootBytes = channel.map(FileChannel.MapMode.READ_ONLY, position, rootLength);
+            position += rootLength;
+            Section directories = new Section(channel, position, (long) directoryCount * DIRECTORY_RECORD_SIZE,
+                    DIRECTORY_RECORD_SIZE);
+            position += (long) directoryCount * DIRECTORY_RECORD_SIZE;
+            Section entries = new Section(channel, position, (long) entryCount * ENTRY_RECORD_SIZE, ENTRY_RECORD_SIZE);
+            position += (long) entryCount * ENTRY_RECORD_SIZE;
+            Section trigrams = new Section(channel, position, (long) trigramCount * TRIGRAM_RECORD_SIZE,
+                    TRIGRAM_RECORD_SIZE);
+            position += (long) trigramCount * TRIGRAM_RECORD_SIZE;
+            Section postings = new Section(channel, position, postingsBytes, 4);
+            position += postingsBytes;
+            Section names = new Section(channel, position, namesBytes, 1);
+            position += namesBytes;
+            Section lowerNames = new Section(channel, position, lowerNamesBytes, 1);
+            
+            byte[] rootPath = new byte[rootLength];
+            rootBytes.get(rootPath);
+            Path indexedRoot = Paths.get(new String(rootPath, StandardCharsets.UTF_8));
+            if (!indexedRoot.equals(root.toAbsolutePath())) {
+                return null;
+            }
+            
+            // The mappings stay valid after the channel is closed
+            return new FileNameIndex(indexedRoot, builtAt, directoryCount, entryCount, trigramCount,
+                    directories, entries, trigrams, postings, names, lowerNames);
+        }
+    }
+    
+    // A section of the index file. One mapping is limited to 2 GB, so a larger section is
+    // mapped in chunks; a chunk holds whole records, so a record never spans two of them.
+    private static final class Section {
+        private static final long MAX_CHUNK_SIZE = 1L << 30;
+        
+        private final long chunkSize;
+        private final MappedByteBuffer[] chunks;
+        
+        Section(FileChannel channel, long position, long size, int recordSize) throws IOException {
+            chunkSize = MAX_CHUNK_SIZE / recordSize * recordSize;
+            chunks = new MappedByteBuffer[(int) ((size + chunkSize - 1) / chunkSize)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = i * chunkSize;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + start, Math.min(chunkSize, size - start));
+            }
+        }
+        
+        byte get(long offset) {
+            return chunks[(int) (offset / chunkSize)].get((int) (offset % chunkSize));
+        }
+        
+        int getInt(long offset) {
+            return chunks[(int) (offset / chunkSize)].getInt((int) (offset % chunkSize));
+        }
+        
+        long getLong(long offset) {
+            return chunks[(int) (offset / chunkSize)].getLong((int) (offset % chunkSize));
+        }
+    }
+    
+    // Runs a query and passes every match to the consumer, as a FileEntry named by its
+    // path relative to the root. A query containing * or ? is a glob over the whole
+    // name; anything else matches as a substring. Matching ignores case.
+    void search(String query, BooleanSupplier cancelled, Consumer<FileEntry> consumer) {
+        String lowerQuery = query.toLowerCase(Locale.ROOT);
+        
+        // Literal parts that every match must contain
+        List<byte[]> literals = new ArrayList<>();
+        Pattern pattern = null;
+        if (NamePattern.isGlob(lowerQuery)) {
+            pattern = NamePattern.compileGlob(lowerQuery);
+            for (String part : NamePattern.literals(lowerQuery)) {
+                literals.add(part.getBytes(StandardCharsets.UTF_8));
+            }
+        } else {
+            literals.add(lowerQuery.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        int[] candidates = candidates(literals);
+        int count = candidates == null ? entryCount : candidates.length;
+        for (int i = 0; i < count; i++) {
+            if ((i & 1023) == 0 && cancelled.getAsBoolean()) {
+                return;
+            }
+            
+            int entry = candidates == null ? i : candidates[i];
+            if (!containsAll(entry, literals)) {
+                continue;
+            }
+            if (pattern != null && !pattern.matcher(lowerName(entry)).matches()) {
+                continue;
+            }
+            consumer.accept(toFileEntry(entry));
+        }
+    }
+    
+    // Entry ids that contain all trigrams of the literals, or null to check every entry
+    private int[] candidates(List<byte[]> literals) {
+        int[] result = null;
+        for (byte[] literal : literals) {
+            for (int i = 0; i + 3 <= literal.length; i++) {
+                int[] posting = posting(trigram(literal, i));
+                result = result == null ? posting : intersect(result, posting);
+                if (result.length == 0) {
+                    return result;
+                }
+            }
+        }
+        return result;
+    }
+    
+    private int[] posting(int trigram) {
+        // Binary search over the sorted trigram table
+        int low = 0;
+        int high = trigramCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long record = (long) middle * TRIGRAM_RECORD_SIZE;
+            int value = trigrams.getInt(record);
+            if (value < trigram) {
+                low = middle + 1;
+            } else if (value > trigram) {
+                high = middle - 1;
+            } else {
+                long offset = 4L * trigrams.getInt(record + 4);
+                int length = trigrams.getInt(record + 8);
+                int[] posting = new int[length];
+                for (int i = 0; i < length; i++) {
+                    posting[i] = postings.getInt(offset + 4L * i);
+                }
+                return posting;
+            }
+        }
+        return new int[0];
+    }
+    
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+    
+    private boolean containsAll(int entry, List<byte[]> literals) {
+        long record = (long) entry * ENTRY_RECORD_SIZE;
+        int offset = entries.getInt(record + 12);
+        int length = entries.getInt(record + 16);
+        for (byte[] literal : literals) {
+            if (!contains(lowerNames, offset, length, literal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean contains(Section pool, int offset, int length, byte[] literal) {
+        outer:
+        for (int start = offset; start + literal.length <= offset + length; start++) {
+            for (int i = 0; i < literal.length; i++) {
+                if (pool.get(start + i) != literal[i]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+    
+    private FileEntry toFileEntry(int entry) {
+        long record = (long) entry * ENTRY_RECORD_SIZE;
+        int directory = entries.getInt(record);
+        String name = string(names, entries.getInt(record + 4), entries.getInt(record + 8));
+        boolean isDirectory = (entries.get(record + 20) & FLAG_DIRECTORY) != 0;
+        long size = entries.getLong(record + 24);
+        long lastModified = entries.getLong(record + 32);
+        
+        String directoryPath = directoryPath(directory);
+        String relativePath = directoryPath.isEmpty() ? name : directoryPath + java.io.File.separator + name;
+        return new FileEntry(relativePath, isDirectory, false, size, lastModified);
+    }
+    
+    private String lowerName(int entry) {
+        long record = (long) entry * ENTRY_RECORD_SIZE;
+        return string(lowerNames, entries.getInt(record + 12), entries.getInt(record + 16));
+    }
+    
+    private synchronized String directoryPath(int directory) {
+        if (directoryPaths == null) {
+            // Parents always come before their children, so one pass builds every path
+            directoryPaths = new String[directoryCount];
+            for (int id = 0; id < directoryCount; id++) {
+                long record = (long) id * DIRECTORY_RECORD_SIZE;
+                int parent = directories.getInt(record);
+                String name = string(names, directories.getInt(record + 4), directories.getInt(record + 8));
+                directoryPaths[id] = parent < 0 ? ""
+                        : directoryPaths[parent].isEmpty() ? name
+                        : directoryPaths[parent] + java.io.File.separator + name;
+            }
+        }
+        return directoryPaths[directory];
+    }
+    
+    private synchronized Integer directoryId(String relativePath) {
+        if (directoryIds == null) {
+            directoryIds = new HashMap<>(directoryCount * 2);
+            for (int id = 0; id < directoryCount; id++) {
+                directoryIds.put(directoryPath(id), id);
+            }
+        }
+        return directoryIds.get(relativePath);
+    }
+    
+    // Entries recorded for a directory, if its modification time still matches
+    private List<FileEntry> reusableEntries(String relativePath, long lastModified) {
+        Integer id = directoryId(relativePath);
+        if (id == null) {
+            return null;
+        }
+        
+        long record = (long) id * DIRECTORY_RECORD_SIZE;
+        long recordedLastModified = directories.getLong(record + 24);
+        if (recordedLastModified != lastModified || builtAt - lastModified < TIMESTAMP_GRANULARITY_MILLIS) {
+            return null;
+        }
+        
+        int firstEntry = directories.getInt(record + 12);
+        int count = directories.getInt(record + 16);
+        List<FileEntry> result = new ArrayList<>(count);
+        for (int entry = firstEntry; entry < firstEntry + count; entry++) {
+            long entryRecord = (long) entry * ENTRY_RECORD_SIZE;
+            result.add(new FileEntry(
+                    string(names, entries.getInt(entryRecord + 4), entries.getInt(entryRecord + 8)),
+                    (entries.get(entryRecord + 20) & FLAG_DIRECTORY) != 0, false,
+                    entries.getLong(entryRecord + 24), entries.getLong(entryRecord + 32)));
+        }
+        return result;
+    }
+    
+    private static String string(Section pool, int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = pool.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static int trigram(byte[] bytes, int index) {
+        return (bytes[index] & 0xFF) << 16 | (bytes[index + 1] & 0xFF) << 8 | (bytes[index + 2] & 0xFF);
+    }
+    
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+    
+    // ---- Building ----
+    
+    // A directory found by the crawler, with its visible entries and crawled subdirectories
+    private static final class CrawledDirectory {
+        final String name;
+        final long lastModified;
+        final List<FileEntry> entries;
+        final List<CrawledDirectory> children;
+        
+        CrawledDirectory(String name, long lastModified, List<FileEntry> entries, List<CrawledDirectory> children) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.entries = entries;
+            this.children = children;
+        }
+    }
+    
+    private static final class CrawlTask extends RecursiveTask<CrawledDirectory> {
+        private final Path directory;
+        private final String name;
+        private final String relativePath;
+        private final long lastModified;
+        private final FileNameIndex previous;
+        private final BooleanSupplier cancelled;
+        private final AtomicInteger crawled;
+        private final IntConsumer progress;
+        
+        CrawlTask(Path directory, String name, String relativePath, long lastModified, FileNameIndex previous,
+                BooleanSupplier cancelled, AtomicInteger crawled, IntConsumer progress) {
+            this.directory = directory;
+            this.name = name;
+            this.relativePath = relativePath;
+            this.lastModified = lastModified;
+            this.previous = previous;
+            this.cancelled = cancelled;
+            this.crawled = crawled;
+            this.progress = progress;
+        }
+        
+        @Override
+        protected CrawledDirectory compute() {
+            // Unchanged directories are taken from the previous index without listing them
+            List<FileEntry> directoryEntries = previous != null
+                    ? previous.reusableEntries(relativePath, lastModified) : null;
+            if (directoryEntries == null) {
+                List<FileEntry> listed = new ArrayList<>();
+                try {
+                    FileEntry.readDirectory(directory, cancelled, listed::add);
+                } catch (IOException e) {
+                    // Unreadable directory - indexed as empty
+                }
+                directoryEntries = listed;
+            }
+            progress.accept(crawled.incrementAndGet());
+            
+            List<CrawlTask> subtasks = new ArrayList<>();
+            for (FileEntry entry : directoryEntries) {
+                if (!entry.isDirectory() || cancelled.getAsBoolean()) {
+                    continue;
+                }
+                
+                Path child = directory.resolve(entry.getName());
+                try {
+                    // Symbolic links to directories are indexed but not followed
+                    BasicFileAttributes attributes =
+                            Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isDirectory()) {
+                        String childPath = relativePath.isEmpty()
+                                ? entry.getName() : relativePath + java.io.File.separator + entry.getName();
+                        subtasks.add(new CrawlTask(child, entry.getName(), childPath,
+                                attributes.lastModifiedTime().toMillis(), previous, cancelled, crawled, progress));
+                    }
+                } catch (IOException e) {
+                    // Vanished while crawling
+                }
+            }
+            
+            List<CrawledDirectory> children = new ArrayList<>(subtasks.size());
+            for (CrawlTask task : invokeAll(subtasks)) {
+                children.add(task.join());
+            }
+            return new CrawledDirectory(name, lastModified, directoryEntries, children);
+        }
+    }
+    
+    // Crawls the subtree in parallel, writes a new index file and opens it. Passing the
+    // previous index makes the crawl incremental. Returns null if cancelled.
+    static FileNameIndex build(Path root, FileNameIndex previous, BooleanSupplier cancelled,
+            IntConsumer progress) throws IOException {
+        Path absoluteRoot = root.toAbsolutePath();
+        long builtAt = System.currentTimeMillis();
+        long rootLastModified = Files.getLastModifiedTime(absoluteRoot).toMillis();
+        
+        // Listing is I/O bound, so use more threads than cores
+        int parallelism = Math.min(16, Runtime.getRuntime().availableProcessors() * 2);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        CrawledDirectory tree;
+        try {
+            tree = pool.invoke(new CrawlTask(absoluteRoot, "", "", rootLastModified, previous,
+                    cancelled, new AtomicInteger(), progress));
+        } finally {
+            pool.shutdown();
+        }
+        if (cancelled.getAsBoolean()) {
+            return null;
+        }
+        
+        Path file = indexFileFor(absoluteRoot);
+        Files.createDirectories(file.getParent());
+        // Written aside and moved into place, so a search never maps a half-written file
+        Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            write(temporary, absoluteRoot, builtAt, tree);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        
+        return open(absoluteRoot);
+    }
+    
+    // Growable long list used for the trigram/entry pairs while building
+    private static final class LongList {
+        long[] values = new long[1 << 10];
+        int size;
+        
+        void add(long value) throws IOException {
+            if (size == values.length) {
+                if (size == MAX_ARRAY_LENGTH) {
+                    throw new IOException("Too many names to index");
+                }
+                values = Arrays.copyOf(values, (int) Math.min(MAX_ARRAY_LENGTH, size * 2L));
+            }
+            values[size++] = value;
+        }
+    }
+    
+    private static void write(Path file, Path root, long builtAt, CrawledDirectory tree) throws IOException {
+        // Flatten the tree: directories in depth-first order (parents first), entries grouped by directory
+        List<CrawledDirectory> directoryList = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        flatten(tree, -1, directoryList, parents);
+        
+        ByteArrayPool namePool = new ByteArrayPool();
+        ByteArrayPool lowerNamePool = new ByteArrayPool();
+        // Every trigram of every lower-case name, packed as trigram << 32 | entry id
+        LongList pairs = new LongList();
+        byte[] rootBytes = root.toString().getBytes(StandardCharsets.UTF_8);
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+            // The header is written last, once the sizes are known; the tables are
+            // streamed out record by record, so none of them has to fit in one array
+            out.write(new byte[HEADER_SIZE]);
+            out.write(rootBytes);
+            
+            int entryCount = 0;
+            for (int id = 0; id < directoryList.size(); id++) {
+                CrawledDirectory directory = directoryList.get(id);
+                byte[] directoryName = directory.name.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(parents.get(id));
+                out.writeInt(namePool.add(directoryName));
+                out.writeInt(directoryName.length);
+                out.writeInt(entryCount);
+                out.writeInt(directory.entries.size());
+                out.writeInt(0);
+                out.writeLong(directory.lastModified);
+                entryCount += directory.entries.size();
+            }
+            
+            int entryId = 0;
+            for (int id = 0; id < directoryList.size(); id++) {
+                for (FileEntry entry : directoryList.get(id).entries) {
+                    byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+                    byte[] lowerName = entry.getName().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(id);
+                    out.writeInt(namePool.add(name));
+                    out.writeInt(name.length);
+                    out.writeInt(lowerNamePool.add(lowerName));
+                    out.writeInt(lowerName.length);
+                    out.writeByte(entry.isDirectory() ? FLAG_DIRECTORY : 0);
+                    out.writeByte(0);
+                    out.writeShort(0);
+                    out.writeLong(entry.getSize());
+                    out.writeLong(entry.getLastModified());
+                    
+                    for (int i = 0; i + 3 <= lowerName.length; i++) {
+                        pairs.add((long) trigram(lowerName, i) << 32 | entryId);
+                    }
+                    entryId++;
+                }
+            }
+            
+            // Sorted, the pairs are grouped by trigram with ascending entry ids: the
+            // posting lists in order. A trigram repeated within a name is stored once.
+            long[] sorted = pairs.values;
+            Arrays.sort(sorted, 0, pairs.size);
+            int postingCount = 0;
+            for (int i = 0; i < pairs.size; i++) {
+                if (postingCount == 0 || sorted[postingCount - 1] != sorted[i]) {
+                    sorted[postingCount++] = sorted[i];
+                }
+            }
+            
+            int trigramCount = 0;
+            for (int first = 0, next; first < postingCount; first = next) {
+                int trigram = (int) (sorted[first] >>> 32);
+                next = first + 1;
+                while (next < postingCount && (int) (sorted[next] >>> 32) == trigram) {
+                    next++;
+                }
+                out.writeInt(trigram);
+                out.writeInt(first);
+                out.writeInt(next - first);
+                trigramCount++;
+            }
+            for (int i = 0; i < postingCount; i++) {
+                out.writeInt((int) sorted[i]);
+            }
+            
+            namePool.writeTo(out);
+            lowerNamePool.writeTo(out);
+            out.flush();
+            
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putLong(builtAt);
+            header.putInt(directoryList.size());
+            header.putInt(entryCount);
+            header.putInt(trigramCount);
+            header.putInt(rootBytes.length);
+            header.putLong(4L * postingCount);
+            header.putLong(namePool.size());
+            header.putLong(lowerNamePool.size());
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+    }
+    
+    private static void flatten(CrawledDirectory directory, int parent,
+            List<CrawledDirectory> directoryList, List<Integer> parents) {
+        int id = directoryList.size();
+        directoryList.add(directory);
+        parents.add(parent);
+        for (CrawledDirectory child : directory.children) {
+            flatten(child, id, directoryList, parents);
+        }
+    }
+    
+    // Appends byte strings to one growing array and hands out their offsets
+    private static final class ByteArrayPool {
+        private byte[] bytes = new byte[1 << 16];
+        private int size;
+        
+        int add(byte[] value) {
+            if (size + value.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + value.length, bytes.length * 2));
+            }
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+            return size - value.length;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package fileexplorer;
+
+import javax.swing.SwingWorker;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+// Searches the filenames of a directory subtree off the event dispatch thread.
+// If an index of the subtree exists, its matches are streamed to the listener
+// right away. The index is then brought up to date by an incremental crawl, which
+// only lists directories changed since the last one, and the query runs once more
+// against the updated index to give the final, sorted results.
+class FileSearchWorker extends SwingWorker<List<FileEntry>, FileEntry> {
+    
+    interface Listener {
+        // Called on the EDT with matches from the existing index while the search is in progress
+        void resultsFound(List<FileEntry> batch);
+        
+        // Called on the EDT with the number of directories crawled so far
+        void indexing(int directories);
+        
+        // Called on the EDT with all matches, directories first, named by their path relative to the root
+        void searchFinished(List<FileEntry> results);
+        
+        // Called on the EDT if the subtree could not be indexed
+        void searchFailed(Exception e);
+    }
+    
+    // Matches beyond this many are not shown
+    static final int MAX_RESULTS = 50_000;
+    
+    // An index this recent is searched as it is, without crawling again
+    private static final long REINDEX_INTERVAL_MILLIS = 30_000;
+    
+    private static final int PROGRESS_INTERVAL = 100;
+    
+    private final Path root;
+    private final String query;
+    private final Listener listener;
+    
+    // Set on the EDT once done() ran, so late batches are dropped
+    private boolean finished;
+    
+    FileSearchWorker(Path root, String query, Listener listener) {
+        this.root = root;
+        this.query = query;
+        this.listener = listener;
+        
+        // Progress events are delivered on the EDT
+        addPropertyChangeListener(event -> {
+            if ("indexed".equals(event.getPropertyName()) && !finished && !isCancelled()) {
+                listener.indexing((Integer) event.getNewValue());
+            }
+        });
+    }
+    
+    @Override
+    protected List<FileEntry> doInBackground() throws IOException {
+        FileNameIndex index;
+        try {
+            index = FileNameIndex.open(root);
+        } catch (IOException e) {
+            // Unreadable index - built again below
+            index = null;
+        }
+        
+        if (index != null) {
+            int[] found = {0};
+            index.search(query, this::isCancelled, entry -> {
+                if (found[0]++ < MAX_RESULTS) {
+                    publish(entry);
+                }
+            });
+        }
+        
+        if (index == null || System.currentTimeMillis() - index.getBuiltAt() >= REINDEX_INTERVAL_MILLIS) {
+            index = FileNameIndex.build(root, index, this::isCancelled, crawled -> {
+                if (crawled % PROGRESS_INTERVAL == 0) {
+                    firePropertyChange("indexed", crawled - PROGRESS_INTERVAL, crawled);
+                }
+            });
+            if (index == null) {
+                return null;
+            }
+        }
+        
+        List<FileEntry> results = new ArrayList<>();
+        index.search(query, this::isCancelled, entry -> {
+            if (results.size() < MAX_RESULTS) {
+                results.add(entry);
+            }
+        });
+        if (isCancelled()) {
+            return null;
+        }
+        
+        FileEntry.sort(results);
+        return results;
+    }
+    
+    @Override
+    protected void process(List<FileEntry> batch) {
+        if (!finished && !isCancelled()) {
+            listener.resultsFound(batch);
+        }
+    }
+    
+    @Override
+    protected void done() {
+        finished = true;
+        if (isCancelled()) {
+            return;
+        }
+        
+        try {
+            listener.searchFinished(get());
+        } catch (InterruptedException | CancellationException e) {
+            // Superseded by another search
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            listener.searchFailed(cause instanceof Exception ? (Exception) cause : e);
+        }
+    }
+}
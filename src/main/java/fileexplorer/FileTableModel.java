@@ -0,0 +1,746 @@
+package fileexplorer;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.AbstractTableModel;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+// Table model for one directory listing. Entries are kept column by column in
+// primitive arrays, with all names packed into a single char table, and cell
+// values (File, Long, Date, type string) are only created when the table asks.
+// Collation keys for sorting (case-folded names and their packed prefixes) are
+// computed once, as rows are added, and compared by FileTableSorter. The filter bar
+// matches names against a copy of the char tables (copyNames) off the EDT.
+class FileTableModel extends AbstractTableModel {
+    static final int FILE_COLUMN = 0;
+    static final int NAME_COLUMN = 1;
+    static final int TYPE_COLUMN = 2;
+    static final int SIZE_COLUMN = 3;
+    static final int MODIFIED_COLUMN = 4;
+    
+    private static final String[] COLUMN_NAMES = {"File", "Name", "Type", "Size", "Last Modified"};
+    
+    private static final byte FLAG_DIRECTORY = 1;
+    
+    // Directories only: a recursive folder size is in sizes[], possibly still growing
+    private static final byte FLAG_SIZE_KNOWN = 2;
+    private static final byte FLAG_SIZE_PENDING = 4;
+    
+    // Extension characters packed into a type key
+    private static final int TYPE_KEY_CHARS = 3;
+    
+    // Refreshes that change more rows than this replace the listing wholesale
+    private static final int MAX_INCREMENTAL_CHANGES = 1024;
+    
+    // Removals scattered over more row ranges than this are reported as one data change
+    private static final int MAX_DELETION_EVENTS = 64;
+    
+    private File directory;
+    private int rowCount;
+    
+    // True while the rows are in FileEntry.DIRECTORIES_FIRST order
+    private boolean sorted = true;
+    
+    private long[] sizes = new long[0];
+    private long[] lastModified = new long[0];
+    private byte[] flags = new byte[0];
+    
+    // Names packed into one char table; each row stores its offset and length
+    private char[] namePool = new char[0];
+    private int namePoolSize;
+    private int[] nameOffsets = new int[0];
+    private int[] nameLengths = new int[0];
+    
+    // Characters in the pool that belong to removed rows
+    private int unusedNameChars;
+    
+    // The names case-folded, at the same offsets as in namePool, and each row's collation prefix
+    private char[] foldedPool = new char[0];
+    private long[] collationPrefixes = new long[0];
+    
+    // The first folded characters of each row's extension and the extension's length, packed
+    private long[] typeKeys = new long[0];
+    
+    // Bumped whenever rows are added or removed; updates to a row never change its name
+    private int namesVersion;
+    
+    // The names of all rows at one point, for filtering off the EDT
+    static final class Names {
+        private final char[] pool;
+        private final char[] folded;
+        private final int[] offsets;
+        private final int[] lengths;
+        
+        private Names(char[] pool, char[] folded, int[] offsets, int[] lengths) {
+            this.pool = pool;
+            this.folded = folded;
+            this.offsets = offsets;
+            this.lengths = lengths;
+        }
+        
+        int getRowCount() {
+            return offsets.length;
+        }
+        
+        // The rows the filter matches, in ascending order, checking only the given
+        // candidate rows if there are any. Returns null if cancelled.
+        int[] filter(NameFilter filter, int[] candidates, BooleanSupplier cancelled) {
+            NameFilter.NameMatcher matcher = filter.matcher();
+            int count = candidates != null ? candidates.length : offsets.length;
+            int[] rows = new int[count];
+            int matches = 0;
+            for (int i = 0; i < count; i++) {
+                if ((i & 1023) == 0 && cancelled.getAsBoolean()) {
+                    return null;
+                }
+                int row = candidates != null ? candidates[i] : i;
+                if (matcher.matches(pool, folded, offsets[row], lengths[row])) {
+                    rows[matches++] = row;
+                }
+            }
+            return Arrays.copyOf(rows, matches);
+        }
+    }
+    
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+    
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+    
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+    
+    @Override
+    public Class<?> getColumnClass(int column) {
+        switch (column) {
+            case FILE_COLUMN: return File.class;  // File object for sorting
+            case NAME_COLUMN: return String.class;
+            case TYPE_COLUMN: return String.class;
+            case SIZE_COLUMN: return Long.class;
+            case MODIFIED_COLUMN: return Date.class;
+            default: return Object.class;
+        }
+    }
+    
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+            case FILE_COLUMN: return getFile(row);
+            case NAME_COLUMN: return getName(row);
+            case TYPE_COLUMN: return isDirectory(row) ? "Folder" : getFileExtension(getName(row));
+            case SIZE_COLUMN: return isDirectory(row) && !isSizeKnown(row) ? null : Long.valueOf(sizes[row]);
+            case MODIFIED_COLUMN: return new Date(lastModified[row]);
+            default: return null;
+        }
+    }
+    
+    File getDirectory() {
+        return directory;
+    }
+    
+    File getFile(int row) {
+        return new File(directory, getName(row));
+    }
+    
+    String getName(int row) {
+        return new String(namePool, nameOffsets[row], nameLengths[row]);
+    }
+    
+    boolean isDirectory(int row) {
+        return (flags[row] & FLAG_DIRECTORY) != 0;
+    }
+    
+    long getSize(int row) {
+        return sizes[row];
+    }
+    
+    long getLastModified(int row) {
+        return lastModified[row];
+    }
+    
+    // For directories: true once a (possibly partial) folder size has been set
+    boolean isSizeKnown(int row) {
+        return !isDirectory(row) || (flags[row] & FLAG_SIZE_KNOWN) != 0;
+    }
+    
+    // For directories: true while the folder size shown is still being computed
+    boolean isSizePending(int row) {
+        return (flags[row] & FLAG_SIZE_PENDING) != 0;
+    }
+    
+    // Whether the filter matches the name of a row
+    boolean matches(NameFilter.NameMatcher matcher, int row) {
+        return matcher.matches(namePool, foldedPool, nameOffsets[row], nameLengths[row]);
+    }
+    
+    // Copies the names of all rows, so they can be filtered on another thread
+    Names copyNames() {
+        int[] offsets = Arrays.copyOf(nameOffsets, rowCount);
+        int[] lengths = Arrays.copyOf(nameLengths, rowCount);
+        return new Names(Arrays.copyOf(namePool, namePoolSize), Arrays.copyOf(foldedPool, namePoolSize),
+                offsets, lengths);
+    }
+    
+    // Changes whenever rows are added or removed, and so whenever a copy of the names goes stale
+    int getNamesVersion() {
+        return namesVersion;
+    }
+    
+    @Override
+    public void fireTableChanged(TableModelEvent e) {
+        if (e.getType() != TableModelEvent.UPDATE || e.getLastRow() == Integer.MAX_VALUE
+                || e.getFirstRow() == TableModelEvent.HEADER_ROW) {
+            namesVersion++;
+        }
+        super.fireTableChanged(e);
+    }
+    
+    // Shows the recursive size of a subdirectory in the Size column
+    void setFolderSize(String name, long size, boolean complete) {
+        int row = indexOf(name);
+        if (row < 0 || !isDirectory(row)) {
+            return;
+        }
+        
+        byte newFlags = (byte) (FLAG_DIRECTORY | FLAG_SIZE_KNOWN | (complete ? 0 : FLAG_SIZE_PENDING));
+        if (sizes[row] != size || flags[row] != newFlags) {
+            sizes[row] = size;
+            flags[row] = newFlags;
+            fireTableRowsUpdated(row, row);
+        }
+    }
+    
+    // Removes all folder sizes from the Size column
+    void clearFolderSizes() {
+        for (int row = 0; row < rowCount; row++) {
+            if (isDirectory(row)) {
+                flags[row] = FLAG_DIRECTORY;
+            }
+        }
+        if (rowCount > 0) {
+            fireTableRowsUpdated(0, rowCount - 1);
+        }
+    }
+    
+    // Empties the model and makes it show the given directory
+    void clear(File directory) {
+        update("clear", rowCount, () -> {
+            this.directory = directory;
+            rowCount = 0;
+            sorted = true;
+            
+            // Let go of the arrays of a previous large listing
+            if (sizes.length > 1024) {
+                sizes = new long[0];
+                lastModified = new long[0];
+                flags = new byte[0];
+                nameOffsets = new int[0];
+                nameLengths = new int[0];
+                namePool = new char[0];
+                collationPrefixes = new long[0];
+                typeKeys = new long[0];
+                foldedPool = new char[0];
+            }
+            namePoolSize = 0;
+            unusedNameChars = 0;
+            
+            fireTableDataChanged();
+        });
+    }
+    
+    // Appends entries that are still arriving in directory order
+    void addEntries(List<FileEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        
+        update("add", entries.size(), () -> {
+            int firstRow = rowCount;
+            ensureCapacity(rowCount + entries.size());
+            for (FileEntry entry : entries) {
+                setRow(rowCount++, entry);
+            }
+            sorted = false;
+            
+            fireTableRowsInserted(firstRow, rowCount - 1);
+        });
+    }
+    
+    // Installs the complete listing of a directory, sorted directories first.
+    // When the model already shows that directory the rows are updated in place,
+    // so selection and scroll position survive a refresh.
+    void setEntries(File directory, List<FileEntry> entries) {
+        update("set", entries.size(), () -> {
+            if (directory.equals(this.directory) && sorted && rowCount > 0
+                    && countChanges(entries) <= MAX_INCREMENTAL_CHANGES) {
+                mergeEntries(entries);
+                return;
+            }
+            
+            this.directory = directory;
+            rowCount = 0;
+            namePoolSize = 0;
+            unusedNameChars = 0;
+            ensureCapacity(entries.size());
+            for (FileEntry entry : entries) {
+                setRow(rowCount++, entry);
+            }
+            sorted = true;
+            
+            fireTableDataChanged();
+        });
+    }
+    
+    // Applies changes reported for the directory shown: entries that were created or
+    // modified, and names that were removed. Only the affected rows are touched.
+    void applyChanges(List<FileEntry> changed, Collection<String> removed) {
+        update("apply changes", changed.size() + removed.size(), () -> {
+            for (String name : removed) {
+                int row = indexOf(name);
+                if (row >= 0) {
+                    removeRow(row);
+                }
+            }
+            
+            for (FileEntry entry : changed) {
+                int row = indexOf(entry.getName());
+                if (row >= 0 && isDirectory(row) == entry.isDirectory()) {
+                    if (!sameAttributes(row, entry)) {
+                        sizes[row] = entry.getSize();
+                        lastModified[row] = entry.getLastModified();
+                        flags[row] = flagsOf(entry);
+                        fireTableRowsUpdated(row, row);
+                    }
+                    continue;
+                }
+                
+                // New entry, or a file replaced by a directory of the same name
+                if (row >= 0) {
+                    removeRow(row);
+                }
+                insertRow(sorted ? -binarySearch(entry.isDirectory(), entry.getName()) - 1 : rowCount, entry);
+            }
+        });
+    }
+    
+    // Removes the rows showing the given names in one pass
+    void removeEntries(Collection<String> names) {
+        update("remove", names.size(), () -> {
+            boolean[] removed = new boolean[rowCount];
+            int removedCount = 0;
+            for (String name : names) {
+                int row = indexOf(name);
+                if (row >= 0 && !removed[row]) {
+                    removed[row] = true;
+                    removedCount++;
+                }
+            }
+            if (removedCount == 0) {
+                return;
+            }
+            
+            // Contiguous runs of removed rows, reported last to first so earlier row numbers stay valid
+            List<int[]> runs = new ArrayList<>();
+            int newRowCount = 0;
+            for (int row = 0; row < rowCount; row++) {
+                if (removed[row]) {
+                    unusedNameChars += nameLengths[row];
+                    if (row > 0 && removed[row - 1]) {
+                        runs.get(runs.size() - 1)[1] = row;
+                    } else {
+                        runs.add(new int[] {row, row});
+                    }
+                    continue;
+                }
+                sizes[newRowCount] = sizes[row];
+                lastModified[newRowCount] = lastModified[row];
+                flags[newRowCount] = flags[row];
+                nameOffsets[newRowCount] = nameOffsets[row];
+                nameLengths[newRowCount] = nameLengths[row];
+                collationPrefixes[newRowCount] = collationPrefixes[row];
+                typeKeys[newRowCount] = typeKeys[row];
+                newRowCount++;
+            }
+            rowCount = newRowCount;
+            
+            if (unusedNameChars > 4096 && unusedNameChars > namePoolSize / 2) {
+                compactNames();
+            }
+            
+            if (runs.size() > MAX_DELETION_EVENTS) {
+                fireTableDataChanged();
+                return;
+            }
+            for (int i = runs.size() - 1; i >= 0; i--) {
+                fireTableRowsDeleted(runs.get(i)[0], runs.get(i)[1]);
+            }
+        });
+    }
+    
+    // Runs a change to the rows, timing it together with the listeners it notifies
+    private void update(String operation, int rows, Runnable change) {
+        JfrEvents.ModelUpdate event = new JfrEvents.ModelUpdate();
+        event.begin();
+        long started = System.nanoTime();
+        change.run();
+        Metrics.MODEL_UPDATE.record(System.nanoTime() - started);
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.rows = rows;
+            event.commit();
+        }
+    }
+    
+    // Returns the row showing the given name, or -1
+    int indexOf(String name) {
+        if (!sorted) {
+            for (int row = 0; row < rowCount; row++) {
+                if (compareRow(row, isDirectory(row), name) == 0) {
+                    return row;
+                }
+            }
+            return -1;
+        }
+        
+        // The name could be in the directory or in the file part of the listing
+        int row = binarySearch(true, name);
+        if (row < 0) {
+            row = binarySearch(false, name);
+        }
+        return Math.max(row, -1);
+    }
+    
+    // Binary search over the sorted rows; returns -(insertion point) - 1 if not found
+    private int binarySearch(boolean directory, String name) {
+        int low = 0;
+        int high = rowCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int result = compareRow(middle, directory, name);
+            if (result < 0) {
+                low = middle + 1;
+            } else if (result > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+    
+    private int countChanges(List<FileEntry> entries) {
+        int changes = 0;
+        int row = 0;
+        int index = 0;
+        while (row < rowCount || index < entries.size()) {
+            int result = row >= rowCount ? 1
+                    : index >= entries.size() ? -1
+                    : compareRow(row, entries.get(index));
+            if (result < 0) {
+                row++;
+            } else if (result > 0) {
+                index++;
+            } else {
+                if (!sameAttributes(row, entries.get(index))) {
+                    changes++;
+                    if (changes > MAX_INCREMENTAL_CHANGES) break;
+                }
+                row++;
+                index++;
+                continue;
+            }
+            changes++;
+            if (changes > MAX_INCREMENTAL_CHANGES) break;
+        }
+        return changes;
+    }
+    
+    private void mergeEntries(List<FileEntry> entries) {
+        // Walk the old and new listings together; both are in the same order
+        int row = 0;
+        int index = 0;
+        while (row < rowCount || index < entries.size()) {
+            if (index >= entries.size()) {
+                removeRow(row);
+                continue;
+            }
+            
+            FileEntry entry = entries.get(index);
+            int result = row >= rowCount ? 1 : compareRow(row, entry);
+            if (result < 0) {
+                removeRow(row);
+            } else if (result > 0) {
+                insertRow(row, entry);
+                row++;
+                index++;
+            } else {
+                if (!sameAttributes(row, entry)) {
+                    sizes[row] = entry.getSize();
+                    lastModified[row] = entry.getLastModified();
+                    flags[row] = flagsOf(entry);
+                    fireTableRowsUpdated(row, row);
+                }
+                row++;
+                index++;
+            }
+        }
+    }
+    
+    private void insertRow(int row, FileEntry entry) {
+        ensureCapacity(rowCount + 1);
+        int moved = rowCount - row;
+        System.arraycopy(sizes, row, sizes, row + 1, moved);
+        System.arraycopy(lastModified, row, lastModified, row + 1, moved);
+        System.arraycopy(flags, row, flags, row + 1, moved);
+        System.arraycopy(nameOffsets, row, nameOffsets, row + 1, moved);
+        System.arraycopy(nameLengths, row, nameLengths, row + 1, moved);
+        System.arraycopy(collationPrefixes, row, collationPrefixes, row + 1, moved);
+        System.arraycopy(typeKeys, row, typeKeys, row + 1, moved);
+        rowCount++;
+        setRow(row, entry);
+        
+        fireTableRowsInserted(row, row);
+    }
+    
+    private void removeRow(int row) {
+        unusedNameChars += nameLengths[row];
+        int moved = rowCount - row - 1;
+        System.arraycopy(sizes, row + 1, sizes, row, moved);
+        System.arraycopy(lastModified, row + 1, lastModified, row, moved);
+        System.arraycopy(flags, row + 1, flags, row, moved);
+        System.arraycopy(nameOffsets, row + 1, nameOffsets, row, moved);
+        System.arraycopy(nameLengths, row + 1, nameLengths, row, moved);
+        System.arraycopy(collationPrefixes, row + 1, collationPrefixes, row, moved);
+        System.arraycopy(typeKeys, row + 1, typeKeys, row, moved);
+        rowCount--;
+        
+        if (unusedNameChars > 4096 && unusedNameChars > namePoolSize / 2) {
+            compactNames();
+        }
+        
+        fireTableRowsDeleted(row, row);
+    }
+    
+    private void setRow(int row, FileEntry entry) {
+        String name = entry.getName();
+        if (namePoolSize + name.length() > namePool.length) {
+            namePool = Arrays.copyOf(namePool, Math.max(namePoolSize + name.length(), namePool.length * 3 / 2 + 256));
+            foldedPool = Arrays.copyOf(foldedPool, namePool.length);
+        }
+        name.getChars(0, name.length(), namePool, namePoolSize);
+        for (int i = namePoolSize; i < namePoolSize + name.length(); i++) {
+            foldedPool[i] = FileEntry.fold(namePool[i]);
+        }
+        nameOffsets[row] = namePoolSize;
+        nameLengths[row] = name.length();
+        namePoolSize += name.length();
+        
+        sizes[row] = entry.getSize();
+        lastModified[row] = entry.getLastModified();
+        flags[row] = flagsOf(entry);
+        collationPrefixes[row] = FileEntry.collationPrefix(entry.isDirectory(), foldedPool, nameOffsets[row], nameLengths[row]);
+        typeKeys[row] = typeKey(row);
+    }
+    
+    private void compactNames() {
+        char[] pool = new char[namePoolSize - unusedNameChars + 256];
+        char[] folded = new char[pool.length];
+        int size = 0;
+        for (int row = 0; row < rowCount; row++) {
+            System.arraycopy(namePool, nameOffsets[row], pool, size, nameLengths[row]);
+            System.arraycopy(foldedPool, nameOffsets[row], folded, size, nameLengths[row]);
+            nameOffsets[row] = size;
+            size += nameLengths[row];
+        }
+        namePool = pool;
+        foldedPool = folded;
+        namePoolSize = size;
+        unusedNameChars = 0;
+    }
+    
+    private void ensureCapacity(int capacity) {
+        if (capacity <= sizes.length) {
+            return;
+        }
+        
+        int newCapacity = Math.max(capacity, sizes.length * 3 / 2 + 16);
+        sizes = Arrays.copyOf(sizes, newCapacity);
+        lastModified = Arrays.copyOf(lastModified, newCapacity);
+        flags = Arrays.copyOf(flags, newCapacity);
+        nameOffsets = Arrays.copyOf(nameOffsets, newCapacity);
+        nameLengths = Arrays.copyOf(nameLengths, newCapacity);
+        collationPrefixes = Arrays.copyOf(collationPrefixes, newCapacity);
+        typeKeys = Arrays.copyOf(typeKeys, newCapacity);
+    }
+    
+    private boolean sameAttributes(int row, FileEntry entry) {
+        if (isDirectory(row) != entry.isDirectory() || lastModified[row] != entry.getLastModified()) {
+            return false;
+        }
+        // A directory's own size is not shown, so a computed folder size is kept
+        return entry.isDirectory() || sizes[row] == entry.getSize();
+    }
+    
+    private static byte flagsOf(FileEntry entry) {
+        return entry.isDirectory() ? FLAG_DIRECTORY : 0;
+    }
+    
+    private int compareRow(int row, FileEntry entry) {
+        return compareRow(row, entry.isDirectory(), entry.getName());
+    }
+    
+    // Same order as FileEntry.DIRECTORIES_FIRST, without creating a String for the row
+    private int compareRow(int row, boolean entryDirectory, String name) {
+        boolean directory = isDirectory(row);
+        if (directory && !entryDirectory) return -1;
+        if (!directory && entryDirectory) return 1;
+        
+        int offset = nameOffsets[row];
+        int length = nameLengths[row];
+        int limit = Math.min(length, name.length());
+        
+        // Case-insensitive comparison as in String.compareToIgnoreCase
+        for (int i = 0; i < limit; i++) {
+            char c1 = namePool[offset + i];
+            char c2 = name.charAt(i);
+            if (c1 != c2) {
+                c1 = Character.toUpperCase(c1);
+                c2 = Character.toUpperCase(c2);
+                if (c1 != c2) {
+                    c1 = Character.toLowerCase(c1);
+                    c2 = Character.toLowerCase(c2);
+                    if (c1 != c2) {
+                        return c1 - c2;
+                    }
+                }
+            }
+        }
+        if (length != name.length()) {
+            return length - name.length();
+        }
+        
+        // Exact comparison breaks ties between names that differ only in case
+        for (int i = 0; i < limit; i++) {
+            char c1 = namePool[offset + i];
+            char c2 = name.charAt(i);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return 0;
+    }
+    
+    // Compares two rows by the value shown in a column, from the primitive arrays and
+    // collation keys; a folder without a computed size sorts before every size
+    int compareValues(int row1, int row2, int column) {
+        switch (column) {
+            case TYPE_COLUMN: return compareTypes(row1, row2);
+            case SIZE_COLUMN: return Long.compare(isSizeKnown(row1) ? sizes[row1] : -1, isSizeKnown(row2) ? sizes[row2] : -1);
+            case MODIFIED_COLUMN: return Long.compare(lastModified[row1], lastModified[row2]);
+            default: return compareNames(row1, row2);
+        }
+    }
+    
+    // The DIRECTORIES_FIRST order of two rows
+    int compareNames(int row1, int row2) {
+        // While the rows are in that order, a row's number is its rank
+        if (sorted) {
+            return Integer.compare(row1, row2);
+        }
+        
+        int result = Long.compareUnsigned(collationPrefixes[row1], collationPrefixes[row2]);
+        if (result != 0) {
+            return result;
+        }
+        
+        int offset1 = nameOffsets[row1];
+        int offset2 = nameOffsets[row2];
+        result = FileEntry.compareFolded(foldedPool, offset1, nameLengths[row1], offset2, nameLengths[row2]);
+        if (result != 0) {
+            return result;
+        }
+        
+        // Exact comparison breaks ties between names that differ only in case
+        for (int i = 0; i < nameLengths[row1]; i++) {
+            char c1 = namePool[offset1 + i];
+            char c2 = namePool[offset2 + i];
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return 0;
+    }
+    
+    // Orders files by extension case-insensitively, those without one first; folders are all alike
+    private int compareTypes(int row1, int row2) {
+        if (isDirectory(row1) || isDirectory(row2)) {
+            return Boolean.compare(!isDirectory(row1), !isDirectory(row2));
+        }
+        
+        // The packed keys decide unless both extensions are longer than the characters they hold
+        long key1 = typeKeys[row1];
+        long key2 = typeKeys[row2];
+        int length1 = (int) (key1 & 0xFFFF);
+        int length2 = (int) (key2 & 0xFFFF);
+        if (key1 >>> 16 != key2 >>> 16 || length1 <= TYPE_KEY_CHARS || length2 <= TYPE_KEY_CHARS) {
+            return Long.compareUnsigned(key1, key2);
+        }
+        
+        int start1 = nameOffsets[row1] + nameLengths[row1] - length1;
+        int start2 = nameOffsets[row2] + nameLengths[row2] - length2;
+        for (int i = TYPE_KEY_CHARS; i < Math.min(length1, length2); i++) {
+            char c1 = foldedPool[start1 + i];
+            char c2 = foldedPool[start2 + i];
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return length1 - length2;
+    }
+    
+    // Three folded characters of the extension in the high bits and its length in the low 16,
+    // so the unsigned order is the extension order for extensions of up to three characters
+    private long typeKey(int row) {
+        int start = extensionStart(row);
+        int length = nameOffsets[row] + nameLengths[row] - start;
+        long key = Math.min(length, 0xFFFF);
+        for (int i = 0; i < TYPE_KEY_CHARS && i < length; i++) {
+            key |= (long) foldedPool[start + i] << (16 * (TYPE_KEY_CHARS - i));
+        }
+        return key;
+    }
+    
+    // Pool offset of the extension after the last dot, or the end of the name if it has none
+    private int extensionStart(int row) {
+        int offset = nameOffsets[row];
+        int end = offset + nameLengths[row];
+        for (int i = end - 1; i > offset; i--) {
+            if (namePool[i] == '.') {
+                // A trailing dot is no extension
+                return i < end - 1 ? i + 1 : end;
+            }
+        }
+        return end;
+    }
+    
+    static String getFileExtension(String name) {
+        int lastDotIndex = name.lastIndexOf('.');
+        if (lastDotIndex > 0 && lastDotIndex < name.length() - 1) {
+            return name.substring(lastDotIndex + 1).toUpperCase() + " File";
+        }
+        return "File";
+    }
+}
@@ -0,0 +1,416 @@
+package fileexplorer;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Row sorter for the file table. Rows are compared through FileTableModel's primitive
+// arrays and precomputed collation keys, and the view order is an int array sorted with
+// IndexSort, so re-sorting a large listing creates no cell values and boxes nothing.
+// Directories stay above files in either direction, and rows that compare equal are
+// ordered by name. Without sort keys the view shows the model's own order.
+//
+// A name filter narrows the view to the rows it matches. The filter bar matches the
+// whole listing off the EDT and passes the rows in; rows added later are matched
+// here as they arrive, and only a listing replaced wholesale is matched on the EDT.
+class FileTableSorter extends RowSorter<FileTableModel> {
+    // Earlier sort keys kept as tie breakers when another column is clicked
+    private static final int MAX_SORT_KEYS = 3;
+    
+    // Updates of more rows than this re-sort everything instead of merging the rows back in
+    private static final int MAX_MERGED_ROWS = 64;
+    
+    private final FileTableModel model;
+    
+    private List<SortKey> sortKeys = Collections.emptyList();
+    private int[] keyColumns = new int[0];
+    private boolean[] keyDescending = new boolean[0];
+    
+    // Null while every row is shown
+    private NameFilter filter;
+    
+    // View row to model row while sorted or filtered, null otherwise
+    private int[] viewToModel;
+    // The inverse, -1 for rows filtered out, built when first needed
+    private int[] modelToView;
+    // Model rows as of the last event seen. The model may be further along: removeEntries
+    // fires one event per run of removed rows once all of them are gone.
+    private int modelRowCount;
+    
+    FileTableSorter(FileTableModel model) {
+        this.model = model;
+        modelRowCount = model.getRowCount();
+    }
+    
+    @Override
+    public FileTableModel getModel() {
+        return model;
+    }
+    
+    @Override
+    public void toggleSortOrder(int column) {
+        SortOrder order = SortOrder.ASCENDING;
+        if (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() == column
+                && sortKeys.get(0).getSortOrder() == SortOrder.ASCENDING) {
+            order = SortOrder.DESCENDING;
+        }
+        
+        List<SortKey> keys = new ArrayList<>();
+        keys.add(new SortKey(column, order));
+        for (SortKey key : sortKeys) {
+            if (key.getColumn() != column && keys.size() < MAX_SORT_KEYS) {
+                keys.add(key);
+            }
+        }
+        setSortKeys(keys);
+    }
+    
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        List<SortKey> newKeys = keys != null ? new ArrayList<>(keys) : new ArrayList<>();
+        if (newKeys.equals(sortKeys)) {
+            return;
+        }
+        
+        sortKeys = Collections.unmodifiableList(newKeys);
+        keyColumns = new int[newKeys.size()];
+        keyDescending = new boolean[newKeys.size()];
+        int count = 0;
+        for (SortKey key : newKeys) {
+            if (key.getSortOrder() != SortOrder.UNSORTED) {
+                keyColumns[count] = key.getColumn();
+                keyDescending[count] = key.getSortOrder() == SortOrder.DESCENDING;
+                count++;
+            }
+        }
+        keyColumns = Arrays.copyOf(keyColumns, count);
+        keyDescending = Arrays.copyOf(keyDescending, count);
+        
+        fireSortOrderChanged();
+        modelRowCount = model.getRowCount();
+        show(shownRows());
+    }
+    
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+    
+    // Shows only the rows the filter matches, given in ascending order as they are in the
+    // model now, or every row if the filter is null
+    void setFilter(NameFilter filter, int[] matchingRows) {
+        this.filter = filter;
+        modelRowCount = model.getRowCount();
+        if (filter == null) {
+            show(IndexSort.identity(model.getRowCount()));
+            return;
+        }
+        
+        // Narrowing the rows shown keeps their order, so they need not be compared again
+        int[] projected = project(matchingRows);
+        if (projected != null) {
+            install(projected);
+        } else {
+            show(matchingRows.clone());
+        }
+    }
+    
+    NameFilter getFilter() {
+        return filter;
+    }
+    
+    @Override
+    public int convertRowIndexToModel(int index) {
+        if (viewToModel == null) {
+            checkIndex(index);
+            return index;
+        }
+        return viewToModel[index];
+    }
+    
+    @Override
+    public int convertRowIndexToView(int index) {
+        if (viewToModel == null) {
+            checkIndex(index);
+            return index;
+        }
+        if (modelToView == null) {
+            modelToView = new int[modelRowCount];
+            Arrays.fill(modelToView, -1);
+            for (int view = 0; view < viewToModel.length; view++) {
+                modelToView[viewToModel[view]] = view;
+            }
+        }
+        return modelToView[index];
+    }
+    
+    @Override
+    public int getViewRowCount() {
+        return viewToModel != null ? viewToModel.length : model.getRowCount();
+    }
+    
+    @Override
+    public int getModelRowCount() {
+        return model.getRowCount();
+    }
+    
+    @Override
+    public void modelStructureChanged() {
+        allRowsChanged();
+    }
+    
+    @Override
+    public void allRowsChanged() {
+        modelRowCount = model.getRowCount();
+        if (viewToModel != null || keyColumns.length > 0 || filter != null) {
+            show(matchingRows(0, model.getRowCount() - 1));
+        }
+    }
+    
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        modelRowCount += endRow - firstRow + 1;
+        if (viewToModel == null) {
+            return;
+        }
+        
+        // Rows from firstRow on moved down; the new rows that pass the filter are sorted and merged in
+        int count = endRow - firstRow + 1;
+        int[] previous = viewToModel;
+        int[] existing = new int[previous.length];
+        for (int view = 0; view < previous.length; view++) {
+            existing[view] = previous[view] >= firstRow ? previous[view] + count : previous[view];
+        }
+        int[] rows = matchingRows(firstRow, endRow);
+        if (rows.length > existing.length / 10) {
+            // Sorting everything at once is cheaper than merging many rows
+            int[] all = Arrays.copyOf(existing, existing.length + rows.length);
+            System.arraycopy(rows, 0, all, existing.length, rows.length);
+            show(all);
+            return;
+        }
+        install(mergeRows(existing, rows));
+    }
+    
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        modelRowCount -= endRow - firstRow + 1;
+        if (viewToModel == null) {
+            return;
+        }
+        
+        // Deleted rows that were filtered out are not in the view
+        int count = endRow - firstRow + 1;
+        int[] remaining = new int[viewToModel.length];
+        int view = 0;
+        for (int row : viewToModel) {
+            if (row < firstRow) {
+                remaining[view++] = row;
+            } else if (row > endRow) {
+                remaining[view++] = row - count;
+            }
+        }
+        install(Arrays.copyOf(remaining, view));
+    }
+    
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        // Updates never change a name, so they only matter to the sort order
+        if (viewToModel == null || keyColumns.length == 0) {
+            return;
+        }
+        if (endRow - firstRow + 1 > MAX_MERGED_ROWS) {
+            show(shownRows());
+            return;
+        }
+        
+        if (firstRow == endRow) {
+            // A single row is moved within the array, if it moves at all
+            int from = convertRowIndexToView(firstRow);
+            if (from < 0) {
+                // Filtered out
+                return;
+            }
+            int to = findPlace(from);
+            if (to != from) {
+                int[] previous = viewToModel.clone();
+                move(from, to);
+                fireRowSorterChanged(previous);
+            }
+            return;
+        }
+        
+        // The other rows keep their order; the updated ones shown are merged back in
+        int[] others = new int[viewToModel.length];
+        int[] updated = new int[Math.min(viewToModel.length, endRow - firstRow + 1)];
+        int otherCount = 0;
+        int updatedCount = 0;
+        for (int row : viewToModel) {
+            if (row < firstRow || row > endRow) {
+                others[otherCount++] = row;
+            } else {
+                updated[updatedCount++] = row;
+            }
+        }
+        install(mergeRows(Arrays.copyOf(others, otherCount), Arrays.copyOf(updated, updatedCount)));
+    }
+    
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        // Only the sort columns decide the order; names never change in place
+        for (int keyColumn : keyColumns) {
+            if (keyColumn == column) {
+                rowsUpdated(firstRow, endRow);
+                return;
+            }
+        }
+    }
+    
+    // Sorts the rows into the view; the view is the model itself without sort keys or filter
+    private void show(int[] rows) {
+        if (keyColumns.length == 0 && filter == null) {
+            install(null);
+        } else {
+            IndexSort.sort(rows, this::compare);
+            install(rows);
+        }
+    }
+    
+    private void install(int[] order) {
+        int[] previous = viewToModel;
+        viewToModel = order;
+        modelToView = null;
+        fireRowSorterChanged(previous);
+    }
+    
+    // The view order cut down to the given rows, or null if the view does not show them all
+    private int[] project(int[] rows) {
+        if (viewToModel == null) {
+            return null;
+        }
+        boolean[] wanted = new boolean[model.getRowCount()];
+        for (int row : rows) {
+            wanted[row] = true;
+        }
+        int[] projected = new int[rows.length];
+        int count = 0;
+        for (int row : viewToModel) {
+            if (wanted[row]) {
+                projected[count++] = row;
+            }
+        }
+        return count == rows.length ? projected : null;
+    }
+    
+    // The model rows the view shows, in no particular order
+    private int[] shownRows() {
+        return filter != null ? viewToModel.clone() : IndexSort.identity(model.getRowCount());
+    }
+    
+    // The model rows from firstRow to endRow that pass the filter
+    private int[] matchingRows(int firstRow, int endRow) {
+        int[] rows = new int[Math.max(endRow - firstRow + 1, 0)];
+        NameFilter.NameMatcher matcher = filter != null ? filter.matcher() : null;
+        int count = 0;
+        for (int row = firstRow; row <= endRow; row++) {
+            if (matcher == null || model.matches(matcher, row)) {
+                rows[count++] = row;
+            }
+        }
+        return count < rows.length ? Arrays.copyOf(rows, count) : rows;
+    }
+    
+    // Merges model rows into a sorted view order that lacks them
+    private int[] mergeRows(int[] sorted, int[] rows) {
+        int count = rows.length;
+        IndexSort.sort(rows, this::compare);
+        
+        int[] merged = new int[sorted.length + count];
+        int left = 0;
+        int right = 0;
+        for (int view = 0; view < merged.length; view++) {
+            if (right < count && (left == sorted.length || compare(rows[right], sorted[left]) < 0)) {
+                merged[view] = rows[right++];
+            } else {
+                merged[view] = sorted[left++];
+            }
+        }
+        return merged;
+    }
+    
+    private int compare(int row1, int row2) {
+        // Filtered but not sorted: the model's order
+        if (keyColumns.length == 0) {
+            return Integer.compare(row1, row2);
+        }
+        
+        // Directories stay above files in either direction
+        boolean directory1 = model.isDirectory(row1);
+        if (directory1 != model.isDirectory(row2)) {
+            return directory1 ? -1 : 1;
+        }
+        
+        for (int i = 0; i < keyColumns.length; i++) {
+            int result = model.compareValues(row1, row2, keyColumns[i]);
+            if (result != 0) {
+                return keyDescending[i] ? -result : result;
+            }
+        }
+        return model.compareNames(row1, row2);
+    }
+    
+    // The view position the row at view position from belongs at, by binary search among the other rows
+    private int findPlace(int from) {
+        int row = viewToModel[from];
+        if (from > 0 && compare(viewToModel[from - 1], row) > 0) {
+            int low = 0;
+            int high = from - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compare(viewToModel[middle], row) > 0) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            return low;
+        }
+        if (from < viewToModel.length - 1 && compare(viewToModel[from + 1], row) < 0) {
+            int low = from + 1;
+            int high = viewToModel.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (compare(viewToModel[middle], row) < 0) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+        return from;
+    }
+    
+    private void move(int from, int to) {
+        int row = viewToModel[from];
+        if (to < from) {
+            System.arraycopy(viewToModel, to, viewToModel, to + 1, from - to);
+        } else {
+            System.arraycopy(viewToModel, from + 1, viewToModel, from, to - from);
+        }
+        viewToModel[to] = row;
+        
+        for (int view = Math.min(from, to); view <= Math.max(from, to); view++) {
+            modelToView[viewToModel[view]] = view;
+        }
+    }
+    
+    private void checkIndex(int index) {
+        if (index < 0 || index >= model.getRowCount()) {
+            throw new IndexOutOfBoundsException("Invalid index " + index);
+        }
+    }
+}
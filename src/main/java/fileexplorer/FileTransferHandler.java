@@ -0,0 +1,155 @@
+package fileexplorer;
+
+import javax.swing.*;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Copy, cut and paste (the table's standard Ctrl+C/X/V bindings) and drag-and-drop
+// for the file table. Files travel as a java file list, so they can also be
+// exchanged with other applications. Pasting or dropping hands the files to the
+// transfer service; nothing is copied on the EDT.
+class FileTransferHandler extends TransferHandler {
+    private final FileTableModel tableModel;
+    private final FileTransferService transferService;
+    
+    // Files last cut to the clipboard; pasting exactly these moves them
+    private List<File> cutFiles = Collections.emptyList();
+    
+    FileTransferHandler(FileTableModel tableModel, FileTransferService transferService) {
+        this.tableModel = tableModel;
+        this.transferService = transferService;
+    }
+    
+    @Override
+    public int getSourceActions(JComponent component) {
+        return COPY_OR_MOVE;
+    }
+    
+    @Override
+    protected Transferable createTransferable(JComponent component) {
+        JTable table = (JTable) component;
+        List<File> files = new ArrayList<>();
+        for (int row : table.getSelectedRows()) {
+            files.add(tableModel.getFile(table.convertRowIndexToModel(row)));
+        }
+        return files.isEmpty() ? null : new FileListTransferable(files);
+    }
+    
+    @Override
+    public void exportToClipboard(JComponent component, Clipboard clipboard, int action) {
+        super.exportToClipboard(component, clipboard, action);
+        cutFiles = action == MOVE ? getFiles(clipboard.getContents(null)) : Collections.emptyList();
+    }
+    
+    @Override
+    protected void exportDone(JComponent source, Transferable data, int action) {
+        // The receiving side does the move, so there is nothing to delete here
+    }
+    
+    @Override
+    public boolean canImport(TransferSupport support) {
+        return support.isDataFlavorSupported(DataFlavor.javaFileListFlavor) && tableModel.getDirectory() != null;
+    }
+    
+    @Override
+    public boolean importData(TransferSupport support) {
+        if (!canImport(support)) {
+            return false;
+        }
+        
+        List<File> files = getFiles(support.getTransferable());
+        if (files.isEmpty()) {
+            return false;
+        }
+        
+        File targetDirectory = tableModel.getDirectory();
+        FileTransferService.Operation operation;
+        if (support.isDrop()) {
+            // Dropped onto a folder row: into that folder
+            JTable.DropLocation location = (JTable.DropLocation) support.getDropLocation();
+            JTable table = (JTable) support.getComponent();
+            int row = location.getRow();
+            if (row >= 0 && row < table.getRowCount() && !location.isInsertRow()) {
+                int modelRow = table.convertRowIndexToModel(row);
+                if (tableModel.isDirectory(modelRow)) {
+                    targetDirectory = tableModel.getFile(modelRow);
+                }
+            }
+            if (files.contains(targetDirectory)) {
+                return false;
+            }
+            operation = support.getDropAction() == MOVE
+                    ? FileTransferService.Operation.MOVE : FileTransferService.Operation.COPY;
+        } else if (files.equals(cutFiles)) {
+            // A cut is pasted once
+            operation = FileTransferService.Operation.MOVE;
+            cutFiles = Collections.emptyList();
+        } else {
+            operation = FileTransferService.Operation.COPY;
+        }
+        
+        List<Path> sources = new ArrayList<>();
+        for (File file : files) {
+            sources.add(file.toPath());
+        }
+        transferService.submit(operation, sources, targetDirectory.toPath());
+        return true;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<File> getFiles(Transferable transferable) {
+        try {
+            if (transferable != null && transferable.isDataFlavorSupported(DataFlavor.javaFileListFlavor)) {
+                return new ArrayList<>((List<File>) transferable.getTransferData(DataFlavor.javaFileListFlavor));
+            }
+        } catch (UnsupportedFlavorException | IOException e) {
+            // Clipboard changed or the source application went away
+        }
+        return Collections.emptyList();
+    }
+    
+    // Files as a java file list, with their paths as plain text for other applications
+    private static final class FileListTransferable implements Transferable {
+        private final List<File> files;
+        
+        FileListTransferable(List<File> files) {
+            this.files = files;
+        }
+        
+        @Override
+        public DataFlavor[] getTransferDataFlavors() {
+            return new DataFlavor[] {DataFlavor.javaFileListFlavor, DataFlavor.stringFlavor};
+        }
+        
+        @Override
+        public boolean isDataFlavorSupported(DataFlavor flavor) {
+            return DataFlavor.javaFileListFlavor.equals(flavor) || DataFlavor.stringFlavor.equals(flavor);
+        }
+        
+        @Override
+        public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException {
+            if (DataFlavor.javaFileListFlavor.equals(flavor)) {
+                return files;
+            }
+            if (DataFlavor.stringFlavor.equals(flavor)) {
+                StringBuilder paths = new StringBuilder();
+                for (File file : files) {
+                    if (paths.length() > 0) {
+                        paths.append('\n');
+                    }
+                    paths.append(file.getAbsolutePath());
+                }
+                return paths.toString();
+            }
+            throw new UnsupportedFlavorException(flavor);
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package fileexplorer;
+
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Copies and moves files in the background. Jobs are queued and run one after
+// another; within a job, small files are batched and spread over a pool of
+// workers, and large files are copied chunk by chunk with FileChannel.transferTo,
+// which the JDK maps to copy_file_range/sendfile where the OS offers them. A move
+// is first tried as an atomic rename, which is immediate on the same file system;
+// only what cannot be renamed is copied and then deleted. Jobs can be paused,
+// resumed and cancelled between two chunks.
+class FileTransferService {
+    
+    interface Listener {
+        // Called on the EDT when a job's progress or state has changed
+        void jobChanged(Job job);
+    }
+    
+    enum Operation { COPY, MOVE }
+    
+    enum State { QUEUED, SCANNING, RUNNING, PAUSED, FINISHED, CANCELLED }
+    
+    // Files up to this size are grouped into one task; larger ones are copied in chunks
+    private static final long SMALL_FILE_BYTES = 1024 * 1024;
+    private static final int MAX_FILES_PER_TASK = 64;
+    private static final long CHUNK_BYTES = 16L * 1024 * 1024;
+    private static final int PROGRESS_INTERVAL_MILLIS = 500;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    
+    private final Listener listener;
+    private final ExecutorService scheduler;
+    private final ExecutorService workers;
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    
+    FileTransferService(Listener listener) {
+        this(listener, Integer.getInteger("fileexplorer.transfer.parallelism",
+                Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+    
+    FileTransferService(Listener listener, int parallelism) {
+        this.listener = listener;
+        this.scheduler = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transfer-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "transfer-worker-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    // Queues a copy or move of the sources into the target directory
+    Job submit(Operation operation, List<Path> sources, Path targetDirectory) {
+        Job job = new Job(nextId.getAndIncrement(), operation, new ArrayList<>(sources), targetDirectory);
+        scheduler.execute(() -> run(job));
+        notifyListener(job);
+        return job;
+    }
+    
+    // One queued copy or move. Counters are updated by the workers and read on any thread.
+    final class Job {
+        private final int id;
+        private final Operation operation;
+        private final List<Path> sources;
+        private final Path targetDirectory;
+        
+        private volatile State state = State.QUEUED;
+        private volatile boolean paused;
+        private volatile boolean cancelled;
+        private final Object pauseLock = new Object();
+        
+        private final AtomicLong totalBytes = new AtomicLong();
+        private final AtomicLong totalFiles = new AtomicLong();
+        private final AtomicLong copiedBytes = new AtomicLong();
+        private final AtomicLong copiedFiles = new AtomicLong();
+        private volatile double bytesPerSecond;
+        private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger errorCount = new AtomicInteger();
+        private final CountDownLatch completion = new CountDownLatch(1);
+        
+        private Job(int id, Operation operation, List<Path> sources, Path targetDirectory) {
+            this.id = id;
+            this.operation = operation;
+            this.sources = sources;
+            this.targetDirectory = targetDirectory;
+        }
+        
+        int getId() {
+            return id;
+        }
+        
+        Operation getOperation() {
+            return operation;
+        }
+        
+        List<Path> getSources() {
+            return Collections.unmodifiableList(sources);
+        }
+        
+        Path getTargetDirectory() {
+            return targetDirectory;
+        }
+        
+        State getState() {
+            return state;
+        }
+        
+        long getTotalBytes() {
+            return totalBytes.get();
+        }
+        
+        long getTotalFiles() {
+            return totalFiles.get();
+        }
+        
+        long getCopiedBytes() {
+            return copiedBytes.get();
+        }
+        
+        long getCopiedFiles() {
+            return copiedFiles.get();
+        }
+        
+        // Recent throughput, measured over the last progress interval
+        double getBytesPerSecond() {
+            return bytesPerSecond;
+        }
+        
+        List<String> getErrors() {
+            return new ArrayList<>(errors);
+        }
+        
+        int getErrorCount() {
+            return errorCount.get();
+        }
+        
+        boolean isDone() {
+            return state == State.FINISHED || state == State.CANCELLED;
+        }
+        
+        void pause() {
+            if (!isDone()) {
+                paused = true;
+                setState(State.PAUSED);
+            }
+        }
+        
+        void resume() {
+            synchronized (pauseLock) {
+                paused = false;
+                pauseLock.notifyAll();
+            }
+            if (state == State.PAUSED) {
+                setState(State.RUNNING);
+            }
+        }
+        
+        void cancel() {
+            cancelled = true;
+            resume();
+        }
+        
+        // Waits until the job has finished or was cancelled
+        void awaitCompletion() throws InterruptedException {
+            completion.await();
+        }
+        
+        // Called by workers between files and chunks: blocks while paused, false once cancelled
+        private boolean checkpoint() {
+            synchronized (pauseLock) {
+                while (paused && !cancelled) {
+                    try {
+                        pauseLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+            }
+            return !cancelled;
+        }
+        
+        private void setState(State newState) {
+            if (!isDone()) {
+                state = newState;
+            }
+            notifyListener(this);
+        }
+        
+        private void recordError(Path path, Exception e) {
+            if (errorCount.incrementAndGet() <= MAX_REPORTED_ERRORS) {
+                errors.add(path + ": " + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+            }
+        }
+    }
+    
+    // A file to copy, found while scanning a source tree
+    private static final class FileCopy {
+        final Path source;
+        final Path target;
+        final long size;
+        final boolean link;
+        
+        FileCopy(Path source, Path target, long size, boolean link) {
+            this.source = source;
+            this.target = target;
+            this.size = size;
+            this.link = link;
+        }
+    }
+    
+    private void run(Job job) {
+        try {
+            if (job.cancelled) {
+                return;
+            }
+            job.setState(job.paused ? State.PAUSED : State.SCANNING);
+            
+            // Moves are renames where possible; the rest is copied and then deleted
+            List<Path[]> copies = new ArrayList<>();
+            for (Path source : job.sources) {
+                Path target = targetFor(job, source);
+                if (target == null) {
+                    continue;
+                }
+                if (job.operation == Operation.MOVE && rename(source, target)) {
+                    job.copiedFiles.incrementAndGet();
+                    job.totalFiles.incrementAndGet();
+                    continue;
+                }
+                copies.add(new Path[] {source, target});
+            }
+            
+            // Directories are created during the scan, so the files can be copied in any order
+            List<FileCopy> files = new ArrayList<>();
+            for (Path[] copy : copies) {
+                if (!job.checkpoint()) {
+                    return;
+                }
+                scan(job, copy[0], copy[1], files);
+            }
+            if (!job.paused) {
+                job.setState(State.RUNNING);
+            }
+            
+            copyFiles(job, files);
+            
+            // A move that had to be copied removes its source once the copy is complete
+            if (job.operation == Operation.MOVE && job.errorCount.get() == 0 && !job.cancelled) {
+                for (Path[] copy : copies) {
+                    deleteTree(job, copy[0]);
+                }
+            }
+        } catch (InterruptedException e) {
+            job.cancelled = true;
+        } finally {
+            job.bytesPerSecond = 0;
+            job.state = job.cancelled ? State.CANCELLED : State.FINISHED;
+            job.completion.countDown();
+            notifyListener(job);
+        }
+    }
+    
+    // The target path for a top-level source, renamed if the name is taken, or null to skip it
+    private static Path targetFor(Job job, Path source) {
+        Path target = job.targetDirectory.resolve(source.getFileName().toString());
+        if (job.operation == Operation.MOVE && target.equals(source)) {
+            // Moving into the folder it is already in
+            return null;
+        }
+        if (job.targetDirectory.startsWith(source)) {
+            job.recordError(source, new IOException("Cannot copy a folder into itself"));
+            return null;
+        }
+        return uniqueTarget(target);
+    }
+    
+    // "name.ext", then "name (2).ext", "name (3).ext", ...
+    static Path uniqueTarget(Path target) {
+        if (!Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            return target;
+        }
+        
+        String name = target.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int i = 2; ; i++) {
+            Path candidate = target.resolveSibling(base + " (" + i + ")" + extension);
+            if (!Files.exists(candidate, LinkOption.NOFOLLOW_LINKS)) {
+                return candidate;
+            }
+        }
+    }
+    
+    private static boolean rename(Path source, Path target) {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (AtomicMoveNotSupportedException e) {
+            // Different file system
+            return false;
+        } catch (IOException e) {
+            // Falls back to copy and delete, which reports the actual problem
+            return false;
+        }
+    }
+    
+    // Walks a source tree without following links, creating its directories below the
+    // target and collecting the files to copy
+    private static void scan(Job job, Path source, Path target, List<FileCopy> files) throws InterruptedException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(source, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            job.recordError(source, e);
+            return;
+        }
+        
+        if (!attributes.isDirectory()) {
+            files.add(new FileCopy(source, target, attributes.size(), attributes.isSymbolicLink()));
+            job.totalFiles.incrementAndGet();
+            job.totalBytes.addAndGet(attributes.size());
+            return;
+        }
+        
+        try {
+            Files.createDirectories(target);
+        } catch (IOException e) {
+            job.recordError(target, e);
+            return;
+        }
+        
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(source)) {
+            for (Path child : stream) {
+                children.add(child);
+            }
+        } catch (IOException e) {
+            job.recordError(source, e);
+        }
+        for (Path child : children) {
+            if (!job.checkpoint()) {
+                throw new InterruptedException();
+            }
+            scan(job, child, target.resolve(child.getFileName().toString()), files);
+        }
+    }
+    
+    private void copyFiles(Job job, List<FileCopy> files) throws InterruptedException {
+        // Small files travel in batches so a task is not spent on a single tiny file
+        List<Future<?>> tasks = new ArrayList<>();
+        List<FileCopy> batch = new ArrayList<>();
+        for (FileCopy file : files) {
+            if (file.size > SMALL_FILE_BYTES) {
+                List<FileCopy> single = Collections.singletonList(file);
+                tasks.add(workers.submit(() -> copyBatch(job, single)));
+                continue;
+            }
+            batch.add(file);
+            if (batch.size() == MAX_FILES_PER_TASK) {
+                List<FileCopy> full = batch;
+                tasks.add(workers.submit(() -> copyBatch(job, full)));
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            List<FileCopy> last = batch;
+            tasks.add(workers.submit(() -> copyBatch(job, last)));
+        }
+        
+        // Throughput is sampled here, on the scheduler thread, while the workers copy
+        long lastBytes = job.copiedBytes.get();
+        long lastTime = System.nanoTime();
+        for (Future<?> task : tasks) {
+            while (true) {
+                try {
+                    task.get(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    long bytes = job.copiedBytes.get();
+                    long time = System.nanoTime();
+                    job.bytesPerSecond = job.paused ? 0 : (bytes - lastBytes) * 1e9 / (time - lastTime);
+                    lastBytes = bytes;
+                    lastTime = time;
+                    notifyListener(job);
+                } catch (ExecutionException e) {
+                    job.recordError(job.targetDirectory, new IOException(e.getCause()));
+                    break;
+                }
+            }
+        }
+    }
+    
+    private static void copyBatch(Job job, List<FileCopy> batch) {
+        for (FileCopy file : batch) {
+            if (!job.checkpoint()) {
+                return;
+            }
+            try {
+                if (file.link) {
+                    Files.copy(file.source, file.target, LinkOption.NOFOLLOW_LINKS);
+                    job.copiedBytes.addAndGet(file.size);
+                } else {
+                    copyFile(job, file);
+                }
+                job.copiedFiles.incrementAndGet();
+            } catch (IOException e) {
+                job.recordError(file.source, e);
+                deleteQuietly(file.target);
+            } catch (InterruptedException e) {
+                // Cancelled in the middle of the file
+                deleteQuietly(file.target);
+                return;
+            }
+        }
+    }
+    
+    // Copies one file with transferTo, in chunks so a large file can be paused or cancelled
+    private static void copyFile(Job job, FileCopy file) throws IOException, InterruptedException {
+        try (FileChannel in = FileChannel.open(file.source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(file.target,
+                     StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                if (!job.checkpoint()) {
+                    throw new InterruptedException();
+                }
+                long transferred = in.transferTo(position, Math.min(CHUNK_BYTES, size - position), out);
+                if (transferred <= 0) {
+                    // File shrank while being copied
+                    break;
+                }
+                position += transferred;
+                job.copiedBytes.addAndGet(transferred);
+            }
+        }
+        Files.setLastModifiedTime(file.target, Files.getLastModifiedTime(file.source));
+    }
+    
+    private static void deleteTree(Job job, Path root) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+                
+                @Override
+                public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                    if (e != null) {
+                        throw e;
+                    }
+                    Files.delete(directory);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            job.recordError(root, e);
+        }
+    }
+    
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Left behind; reported with the failure that caused it
+        }
+    }
+    
+    private void notifyListener(Job job) {
+        SwingUtilities.invokeLater(() -> listener.jobChanged(job));
+    }
+}
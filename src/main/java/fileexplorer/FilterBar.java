@@ -0,0 +1,204 @@
+package fileexplorer;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.PatternSyntaxException;
+
+// The filter field above the file table. As the user types, the table narrows to the
+// names that match, without touching the model: the names are matched off the EDT,
+// against a copy taken when the listing last changed, and FileTableSorter shows only
+// the matching rows. Typing is debounced, a newer query cancels the one still running,
+// and a query that narrows an earlier one only checks that one's matches.
+class FilterBar extends JPanel {
+    
+    private static final int DEBOUNCE_MILLIS = 150;
+    
+    // Earlier results kept to narrow from, also when characters are deleted again
+    private static final int MAX_CACHED_RESULTS = 16;
+    
+    private static final String TOOLTIP = "Show only the names that match (Esc to clear)";
+    
+    private final FileTableModel model;
+    private final FileTableSorter sorter;
+    private final JTextField field = new JTextField(20);
+    private final JComboBox<NameFilter.Mode> modeBox = new JComboBox<>(NameFilter.Mode.values());
+    private final JLabel countLabel = new JLabel();
+    private final Timer debounceTimer;
+    
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "table-filter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Bumped for every query, so a result that is no longer wanted is dropped
+    private final AtomicInteger generation = new AtomicInteger();
+    
+    // The copy of the names the cached results refer to, and the model's names version when it was taken
+    private FileTableModel.Names names;
+    private int namesVersion;
+    private final Map<NameFilter, int[]> results = new LinkedHashMap<NameFilter, int[]>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<NameFilter, int[]> eldest) {
+            return size() > MAX_CACHED_RESULTS;
+        }
+    };
+    
+    FilterBar(FileTableModel model, FileTableSorter sorter) {
+        super(new BorderLayout(4, 0));
+        this.model = model;
+        this.sorter = sorter;
+        setBorder(BorderFactory.createEmptyBorder(2, 4, 2, 4));
+        
+        field.setToolTipText(TOOLTIP);
+        modeBox.setToolTipText("Substring, glob (* and ? as wildcards) or regular expression; case is ignored");
+        modeBox.setFocusable(false);
+        
+        add(new JLabel("Filter: "), BorderLayout.WEST);
+        add(field, BorderLayout.CENTER);
+        JPanel east = new JPanel(new BorderLayout(4, 0));
+        east.add(modeBox, BorderLayout.WEST);
+        east.add(countLabel, BorderLayout.EAST);
+        add(east, BorderLayout.EAST);
+        
+        debounceTimer = new Timer(DEBOUNCE_MILLIS, e -> applyFilter());
+        debounceTimer.setRepeats(false);
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounceTimer.restart();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounceTimer.restart();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attributes only
+            }
+        });
+        modeBox.addActionListener(e -> applyFilter());
+        
+        // Escape clears the filter
+        field.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "clearFilter");
+        field.getActionMap().put("clearFilter", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                clear();
+            }
+        });
+        
+        // The count follows the rows shown as the listing changes
+        sorter.addRowSorterListener(e -> showCount());
+    }
+    
+    JTextField getField() {
+        return field;
+    }
+    
+    // Starts filtering with a character typed elsewhere, e.g. in the table
+    void type(char c) {
+        field.requestFocusInWindow();
+        field.replaceSelection(String.valueOf(c));
+    }
+    
+    // Removes the filter at once
+    void clear() {
+        if (!field.getText().isEmpty()) {
+            field.setText("");
+        }
+        applyFilter();
+    }
+    
+    private void applyFilter() {
+        debounceTimer.stop();
+        int query = generation.incrementAndGet();
+        
+        String text = field.getText();
+        if (text.isEmpty()) {
+            showError(null);
+            if (sorter.getFilter() != null) {
+                sorter.setFilter(null, null);
+            }
+            return;
+        }
+        
+        NameFilter filter;
+        try {
+            filter = new NameFilter((NameFilter.Mode) modeBox.getSelectedItem(), text);
+        } catch (PatternSyntaxException e) {
+            // Keep the rows of the last valid filter
+            showError(e.getDescription());
+            return;
+        }
+        showError(null);
+        
+        // Results for an earlier listing cannot be narrowed
+        if (names == null || namesVersion != model.getNamesVersion()) {
+            names = model.copyNames();
+            namesVersion = model.getNamesVersion();
+            results.clear();
+        }
+        
+        int[] cached = results.get(filter);
+        if (cached != null) {
+            sorter.setFilter(filter, cached);
+            return;
+        }
+        
+        // Only the matches of the smallest earlier result this filter narrows are checked
+        int[] candidates = null;
+        for (Map.Entry<NameFilter, int[]> result : results.entrySet()) {
+            if (filter.narrows(result.getKey()) && (candidates == null || result.getValue().length < candidates.length)) {
+                candidates = result.getValue();
+            }
+        }
+        
+        FileTableModel.Names snapshot = names;
+        int version = namesVersion;
+        int[] from = candidates;
+        executor.execute(() -> {
+            int[] rows = snapshot.filter(filter, from, () -> generation.get() != query);
+            if (rows == null) {
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (generation.get() != query) {
+                    return;
+                }
+                if (version != model.getNamesVersion()) {
+                    // The listing changed while the names were matched
+                    applyFilter();
+                    return;
+                }
+                results.put(filter, rows);
+                sorter.setFilter(filter, rows);
+            });
+        });
+    }
+    
+    private void showCount() {
+        if (sorter.getFilter() == null) {
+            countLabel.setText("");
+        } else {
+            countLabel.setText(sorter.getViewRowCount() + " of " + model.getRowCount());
+        }
+    }
+    
+    private void showError(String message) {
+        field.setForeground(message != null ? Color.RED : UIManager.getColor("TextField.foreground"));
+        field.setToolTipText(message != null ? message : TOOLTIP);
+    }
+}
@@ -0,0 +1,238 @@
+package fileexplorer;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Computes recursive folder sizes with a fork-join traversal. Every directory is
+// listed once with Files.walkFileTree (depth 1) and its subdirectories are forked
+// as separate tasks, on a pool of bounded parallelism. Symbolic links are not
+// followed, and each directory is visited once per run, so link and bind-mount
+// loops cannot recurse. Totals are cached per directory (file key and modification
+// time), which makes revisiting a folder cheap; the least recently used are dropped
+// beyond MAX_CACHED_DIRECTORIES. The cache does not notice changes deep inside a
+// subtree that leave the directory itself untouched; clearCache() starts over.
+class FolderSizeCalculator {
+    
+    interface Listener {
+        // Called on the EDT with a running total while the directory is being measured,
+        // and once more with complete set to true
+        void sizeUpdated(Path directory, long size, boolean complete);
+    }
+    
+    private static final int MAX_CACHED_DIRECTORIES = 200_000;
+    private static final int PROGRESS_INTERVAL_MILLIS = 250;
+    
+    private static final class CachedSize {
+        final long lastModified;
+        final long size;
+        
+        CachedSize(long lastModified, long size) {
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+    
+    private final ForkJoinPool pool;
+    private final Map<Object, CachedSize> cache = Collections.synchronizedMap(
+            new LinkedHashMap<Object, CachedSize>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, CachedSize> eldest) {
+                    return size() > MAX_CACHED_DIRECTORIES;
+                }
+            });
+    
+    // The calculation in progress; accessed on the EDT
+    private Run currentRun;
+    
+    FolderSizeCalculator() {
+        this(Integer.getInteger("fileexplorer.folderSize.parallelism",
+                Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+    
+    FolderSizeCalculator(int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+    }
+    
+    // Measures the given directories, replacing any calculation still running
+    void calculate(List<Path> directories, Listener listener) {
+        cancel();
+        if (!directories.isEmpty()) {
+            currentRun = new Run(directories, listener);
+        }
+    }
+    
+    void cancel() {
+        if (currentRun != null) {
+            currentRun.cancel();
+            currentRun = null;
+        }
+    }
+    
+    void clearCache() {
+        cache.clear();
+    }
+    
+    // One call to calculate(): a top-level task per directory plus a progress timer
+    private final class Run {
+        private volatile boolean cancelled;
+        private final Listener listener;
+        private final Set<Object> visited = ConcurrentHashMap.newKeySet();
+        
+        // Running totals of the directories still being measured; accessed on the EDT
+        private final Map<Path, AtomicLong> running = new LinkedHashMap<>();
+        private final Timer progressTimer;
+        
+        Run(List<Path> directories, Listener listener) {
+            this.listener = listener;
+            
+            for (Path directory : directories) {
+                AtomicLong total = new AtomicLong();
+                running.put(directory, total);
+                pool.execute(new TopLevelTask(this, directory, total));
+            }
+            
+            // Report partial totals as subtrees finish
+            progressTimer = new Timer(PROGRESS_INTERVAL_MILLIS, e -> {
+                for (Map.Entry<Path, AtomicLong> entry : running.entrySet()) {
+                    listener.sizeUpdated(entry.getKey(), entry.getValue().get(), false);
+                }
+            });
+            progressTimer.start();
+        }
+        
+        void finished(Path directory, long size) {
+            SwingUtilities.invokeLater(() -> {
+                if (cancelled) {
+                    return;
+                }
+                running.remove(directory);
+                if (running.isEmpty()) {
+                    progressTimer.stop();
+                }
+                listener.sizeUpdated(directory, size, true);
+            });
+        }
+        
+        void cancel() {
+            cancelled = true;
+            progressTimer.stop();
+        }
+    }
+    
+    private final class TopLevelTask extends RecursiveAction {
+        private final Run run;
+        private final Path directory;
+        private final AtomicLong total;
+        
+        TopLevelTask(Run run, Path directory, AtomicLong total) {
+            this.run = run;
+            this.directory = directory;
+            this.total = total;
+        }
+        
+        @Override
+        protected void compute() {
+            if (run.cancelled) {
+                return;
+            }
+            
+            long size;
+            try {
+                BasicFileAttributes attributes =
+                        Files.readAttributes(directory, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                size = new SizeTask(run, directory, attributes, total).compute();
+            } catch (IOException e) {
+                size = 0;
+            }
+            run.finished(directory, size);
+        }
+    }
+    
+    private final class SizeTask extends RecursiveTask<Long> {
+        private final Run run;
+        private final Path directory;
+        private final BasicFileAttributes attributes;
+        private final AtomicLong total;
+        
+        SizeTask(Run run, Path directory, BasicFileAttributes attributes, AtomicLong total) {
+            this.run = run;
+            this.directory = directory;
+            this.attributes = attributes;
+            this.total = total;
+        }
+        
+        @Override
+        protected Long compute() {
+            Object key = attributes.fileKey() != null ? attributes.fileKey() : directory;
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            
+            // A directory reached twice in one run (e.g. through a bind mount) is counted once,
+            // whether it is measured or cached
+            if (run.cancelled || !run.visited.add(key)) {
+                return 0L;
+            }
+            
+            CachedSize cached = cache.get(key);
+            if (cached != null && cached.lastModified == lastModified) {
+                total.addAndGet(cached.size);
+                return cached.size;
+            }
+            
+            long[] fileBytes = {0};
+            List<SizeTask> subdirectories = new ArrayList<>();
+            try {
+                // Depth 1: files and subdirectories arrive with their attributes, without recursion
+                Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), 1,
+                        new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes fileAttributes) {
+                        if (fileAttributes.isDirectory()) {
+                            subdirectories.add(new SizeTask(run, file, fileAttributes, total));
+                        } else {
+                            fileBytes[0] += fileAttributes.size();
+                        }
+                        return run.cancelled ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                    }
+                    
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                // Unreadable directory - counts as empty
+            }
+            total.addAndGet(fileBytes[0]);
+            
+            long size = fileBytes[0];
+            for (SizeTask task : invokeAll(subdirectories)) {
+                size += task.join();
+            }
+            
+            if (!run.cancelled) {
+                cache.put(key, new CachedSize(lastModified, size));
+            }
+            return size;
+        }
+    }
+}
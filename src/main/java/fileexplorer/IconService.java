@@ -0,0 +1,203 @@
+package fileexplorer;
+
+import javax.swing.Icon;
+import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+import javax.swing.filechooser.FileSystemView;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Caches system icons and display names for the tree and table renderers.
+// Icons are shared per file type (folder, or file extension); only files that
+// can carry an icon of their own - drives and executables/shortcuts on Windows -
+// are cached per file, in a bounded LRU. Cache misses are resolved on a background
+// pool while a placeholder is shown, and the caller's callback runs on the EDT
+// once the real value is available so it can repaint just the affected row.
+// All methods must be called on the EDT.
+class IconService {
+    private static final int MAX_TYPE_ICONS = 1024;
+    private static final int MAX_FILE_ICONS = 512;
+    private static final int MAX_DISPLAY_NAMES = 2048;
+    
+    // Extensions whose files usually have an icon of their own
+    private static final Set<String> PER_FILE_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "exe", "lnk", "ico", "url", "scr", "cur", "ani", "msc", "appref-ms"));
+    
+    private static final String FOLDER_KEY = "<folder>";
+    private static final String FILE_KEY = "<file>";
+    
+    private final FileSystemView fileSystemView;
+    private final Icon folderPlaceholder;
+    private final Icon filePlaceholder;
+    
+    private final Map<String, Icon> typeIcons = lruMap(MAX_TYPE_ICONS);
+    private final Map<File, Icon> fileIcons = lruMap(MAX_FILE_ICONS);
+    private final Map<File, String> displayNames = lruMap(MAX_DISPLAY_NAMES);
+    
+    // Lookups in flight, with the callbacks waiting for them
+    private final Map<Object, List<Runnable>> pendingIcons = new HashMap<>();
+    private final Map<File, List<Runnable>> pendingNames = new HashMap<>();
+    
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "icon-loader");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    
+    IconService(FileSystemView fileSystemView) {
+        this.fileSystemView = fileSystemView;
+        this.folderPlaceholder = UIManager.getIcon("FileView.directoryIcon");
+        this.filePlaceholder = UIManager.getIcon("FileView.fileIcon");
+    }
+    
+    // Returns the icon for a file, or a placeholder while it is being looked up
+    Icon getIcon(File file, boolean directory, Runnable onLoaded) {
+        String typeKey = typeKey(file, directory);
+        if (typeKey == null) {
+            Icon icon = fileIcons.get(file);
+            if (icon == null) {
+                requestIcon(file, file, directory, onLoaded);
+            }
+            return icon != null ? icon : placeholder(directory);
+        }
+        
+        Icon icon = typeIcons.get(typeKey);
+        if (icon == null) {
+            // Any file of this type will do to look up the shared icon
+            requestIcon(typeKey, file, directory, onLoaded);
+            return placeholder(directory);
+        }
+        return icon;
+    }
+    
+    // Returns the display name for a file, or its plain name while it is being looked up
+    String getDisplayName(File file, Runnable onLoaded) {
+        String cached = displayNames.get(file);
+        if (cached != null) {
+            return cached;
+        }
+        
+        List<Runnable> callbacks = pendingNames.get(file);
+        if (callbacks == null) {
+            pendingNames.put(file, callbacks = new ArrayList<>());
+            executor.execute(() -> {
+                String name = null;
+                JfrEvents.IconLookup event = new JfrEvents.IconLookup();
+                event.begin();
+                long started = System.nanoTime();
+                try {
+                    name = fileSystemView.getSystemDisplayName(file);
+                } catch (RuntimeException e) {
+                    // Fall back to the plain name below
+                }
+                Metrics.DISPLAY_NAME_LOOKUP.record(System.nanoTime() - started);
+                commit(event, file, true);
+                String displayName = name != null && !name.isEmpty() ? name : fallbackName(file);
+                SwingUtilities.invokeLater(() -> {
+                    displayNames.put(file, displayName);
+                    runCallbacks(pendingNames.remove(file));
+                });
+            });
+        }
+        callbacks.add(onLoaded);
+        
+        return fallbackName(file);
+    }
+    
+    private void requestIcon(Object key, File file, boolean directory, Runnable onLoaded) {
+        List<Runnable> callbacks = pendingIcons.get(key);
+        if (callbacks == null) {
+            pendingIcons.put(key, callbacks = new ArrayList<>());
+            executor.execute(() -> {
+                Icon systemIcon = null;
+                JfrEvents.IconLookup event = new JfrEvents.IconLookup();
+                event.begin();
+                long started = System.nanoTime();
+                try {
+                    systemIcon = fileSystemView.getSystemIcon(file);
+                } catch (RuntimeException e) {
+                    // Fall back to the placeholder below
+                }
+                Metrics.ICON_LOOKUP.record(System.nanoTime() - started);
+                commit(event, file, false);
+                // Remember failed lookups too, so they are not retried on every paint
+                Icon icon = systemIcon != null ? systemIcon : placeholder(directory);
+                SwingUtilities.invokeLater(() -> {
+                    if (key instanceof String) {
+                        typeIcons.put((String) key, icon);
+                    } else {
+                        fileIcons.put(file, icon);
+                    }
+                    runCallbacks(pendingIcons.remove(key));
+                });
+            });
+        }
+        callbacks.add(onLoaded);
+    }
+    
+    private static void commit(JfrEvents.IconLookup event, File file, boolean displayName) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = file.getPath();
+            event.displayName = displayName;
+            event.commit();
+        }
+    }
+    
+    private static void runCallbacks(List<Runnable> callbacks) {
+        if (callbacks != null) {
+            for (Runnable callback : callbacks) {
+                callback.run();
+            }
+        }
+    }
+    
+    // Returns the shared cache key for a file, or null if it needs its own icon
+    private static String typeKey(File file, boolean directory) {
+        if (file.getParentFile() == null) {
+            // Drives and file system roots
+            return null;
+        }
+        if (directory) {
+            return FOLDER_KEY;
+        }
+        
+        String name = file.getName();
+        int lastDotIndex = name.lastIndexOf('.');
+        if (lastDotIndex <= 0 || lastDotIndex == name.length() - 1) {
+            return FILE_KEY;
+        }
+        
+        String extension = name.substring(lastDotIndex + 1).toLowerCase(Locale.ROOT);
+        return PER_FILE_EXTENSIONS.contains(extension) ? null : extension;
+    }
+    
+    private Icon placeholder(boolean directory) {
+        return directory ? folderPlaceholder : filePlaceholder;
+    }
+    
+    private static String fallbackName(File file) {
+        String name = file.getName();
+        return name.isEmpty() ? file.getPath() : name;
+    }
+    
+    private static <K, V> Map<K, V> lruMap(int maxEntries) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+}
@@ -0,0 +1,146 @@
+package fileexplorer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Stable merge sort of an int array of row or list indices, ordered by a comparator
+// on the indices themselves, so the values being compared stay in primitive arrays
+// and nothing is boxed. Large arrays are split across the common fork-join pool.
+// Runs that are already in order are merged with a single comparison, and a range in
+// strictly descending order is reversed, so sorting a sorted array either way is linear.
+final class IndexSort {
+    
+    interface IndexComparator {
+        int compare(int index1, int index2);
+    }
+    
+    // Runs this short are sorted by insertion
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+    
+    // Ranges this short are not split into parallel tasks
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+    
+    private IndexSort() {
+    }
+    
+    static void sort(int[] indices, IndexComparator comparator) {
+        sort(indices, 0, indices.length, comparator);
+    }
+    
+    // Sorts indices[from, to)
+    static void sort(int[] indices, int from, int to, IndexComparator comparator) {
+        int[] buffer = new int[indices.length];
+        if (to - from < 2 * PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            mergeSort(indices, buffer, from, to, comparator);
+        } else {
+            ForkJoinPool.commonPool().invoke(new SortTask(indices, buffer, from, to, comparator));
+        }
+    }
+    
+    // Fills an array with 0, 1, ..., count - 1
+    static int[] identity(int count) {
+        int[] indices = new int[count];
+        for (int i = 0; i < count; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+    
+    // Reverses the range if it is in strictly descending order. Stops at the first pair
+    // that is not, so it is cheap on other input; without ties the reversal keeps the sort stable.
+    private static boolean reverseIfDescending(int[] indices, int from, int to, IndexComparator comparator) {
+        for (int i = from + 1; i < to; i++) {
+            if (comparator.compare(indices[i - 1], indices[i]) <= 0) {
+                return false;
+            }
+        }
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            int index = indices[i];
+            indices[i] = indices[j];
+            indices[j] = index;
+        }
+        return true;
+    }
+    
+    private static final class SortTask extends RecursiveAction {
+        private final int[] indices;
+        private final int[] buffer;
+        private final int from;
+        private final int to;
+        private final IndexComparator comparator;
+        
+        SortTask(int[] indices, int[] buffer, int from, int to, IndexComparator comparator) {
+            this.indices = indices;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from < PARALLEL_THRESHOLD) {
+                mergeSort(indices, buffer, from, to, comparator);
+                return;
+            }
+            if (reverseIfDescending(indices, from, to, comparator)) {
+                return;
+            }
+            
+            int middle = (from + to) >>> 1;
+            invokeAll(new SortTask(indices, buffer, from, middle, comparator),
+                    new SortTask(indices, buffer, middle, to, comparator));
+            merge(indices, buffer, from, middle, to, comparator);
+        }
+    }
+    
+    private static void mergeSort(int[] indices, int[] buffer, int from, int to, IndexComparator comparator) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(indices, from, to, comparator);
+            return;
+        }
+        if (reverseIfDescending(indices, from, to, comparator)) {
+            return;
+        }
+        
+        int middle = (from + to) >>> 1;
+        mergeSort(indices, buffer, from, middle, comparator);
+        mergeSort(indices, buffer, middle, to, comparator);
+        merge(indices, buffer, from, middle, to, comparator);
+    }
+    
+    private static void insertionSort(int[] indices, int from, int to, IndexComparator comparator) {
+        for (int i = from + 1; i < to; i++) {
+            int index = indices[i];
+            int j = i - 1;
+            while (j >= from && comparator.compare(indices[j], index) > 0) {
+                indices[j + 1] = indices[j];
+                j--;
+            }
+            indices[j + 1] = index;
+        }
+    }
+    
+    // Merges the sorted ranges [from, middle) and [middle, to)
+    private static void merge(int[] indices, int[] buffer, int from, int middle, int to,
+            IndexComparator comparator) {
+        if (comparator.compare(indices[middle - 1], indices[middle]) <= 0) {
+            // Already in order
+            return;
+        }
+        
+        System.arraycopy(indices, from, buffer, from, middle - from);
+        int left = from;
+        int right = middle;
+        int target = from;
+        while (left < middle && right < to) {
+            // Taking from the left on ties keeps the sort stable
+            if (comparator.compare(indices[right], buffer[left]) < 0) {
+                indices[target++] = indices[right++];
+            } else {
+                indices[target++] = buffer[left++];
+            }
+        }
+        System.arraycopy(buffer, left, indices, target, middle - left);
+    }
+}
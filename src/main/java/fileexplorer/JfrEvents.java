@@ -0,0 +1,71 @@
+package fileexplorer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Flight recorder events for the work Metrics counts, so a recording shows it on the
+// timeline next to GC, I/O and thread activity. They cost nothing until a recording
+// enables them, e.g. java -XX:StartFlightRecording=filename=explorer.jfr ...
+final class JfrEvents {
+    private static final String CATEGORY = "File Explorer";
+    
+    private JfrEvents() {
+    }
+    
+    @Name("fileexplorer.DirectoryListing")
+    @Label("Directory Listing")
+    @Category(CATEGORY)
+    static final class Listing extends Event {
+        @Label("Directory")
+        String directory;
+        
+        @Label("Entries")
+        int entries;
+    }
+    
+    @Name("fileexplorer.IconLookup")
+    @Label("Icon Lookup")
+    @Description("A system icon or display name looked up through FileSystemView")
+    @Category(CATEGORY)
+    static final class IconLookup extends Event {
+        @Label("File")
+        String file;
+        
+        @Label("Display Name")
+        boolean displayName;
+    }
+    
+    @Name("fileexplorer.TableModelUpdate")
+    @Label("Table Model Update")
+    @Description("Rows added, replaced or removed in the file table, including the sorter and repaint bookkeeping")
+    @Category(CATEGORY)
+    static final class ModelUpdate extends Event {
+        @Label("Operation")
+        String operation;
+        
+        @Label("Rows")
+        int rows;
+    }
+    
+    // Committed by the EDT once the event is over, so the stack trace is the one the watchdog caught
+    @Name("fileexplorer.EdtStall")
+    @Label("EDT Stall")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class EdtStall extends Event {
+        @Label("Event")
+        String event;
+        
+        @Label("Stall Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long stallDuration;
+        
+        @Label("EDT Stack Trace")
+        String edtStackTrace;
+    }
+}
@@ -0,0 +1,189 @@
+package fileexplorer;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Where the lines of a MappedFile start, found by a background thread that reads
+// the file front to back once. Only a checkpoint every 1024 lines, and every 1 MB for
+// files with long lines, is kept, so the index of a 20 GB log with a few hundred
+// million lines takes a few megabytes; any other line is found by counting newlines
+// from the checkpoint before it, which reads at most 1023 lines and 1 MB. Lines can
+// be looked up as soon as the indexer has passed them.
+final class LineIndex {
+    
+    private static final int CHECKPOINT_BITS = 10;
+    private static final int LINES_PER_CHECKPOINT = 1 << CHECKPOINT_BITS;
+    private static final int BYTES_PER_CHECKPOINT = 1 << 20;
+    
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "line-index");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    
+    private final MappedFile file;
+    
+    // Checkpoint i is the offset checkpoints[2 * i] and the line (counted from 0) that
+    // holds it, checkpoints[2 * i + 1]; both increase. Grown by copying; the entries
+    // below checkpointCount never change.
+    private volatile long[] checkpoints = new long[512];
+    private volatile int checkpointCount;
+    
+    // How far the indexer has read, and the lines that start before that
+    private volatile long indexedBytes;
+    private volatile long indexedLines;
+    private volatile boolean complete;
+    private volatile boolean cancelled;
+    
+    LineIndex(MappedFile file) {
+        this.file = file;
+        checkpointCount = 1;
+        indexedLines = 1;
+        executor.execute(this::build);
+    }
+    
+    void cancel() {
+        cancelled = true;
+    }
+    
+    boolean isComplete() {
+        return complete;
+    }
+    
+    long getIndexedBytes() {
+        return indexedBytes;
+    }
+    
+    // The lines known so far; all of them once complete
+    long getLineCount() {
+        return indexedLines;
+    }
+    
+    // The offset where the line (counted from 0) starts, or -1 if the indexer has not reached it yet
+    long offsetOf(long line) throws IOException {
+        if (line >= indexedLines) {
+            return -1;
+        }
+        if (line == 0) {
+            return 0;
+        }
+        int count = checkpointCount;
+        long[] points = checkpoints;
+        
+        // The last checkpoint on an earlier line: the line starts after it, and before the next
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (points[2 * middle + 1] < line) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        long offset = points[2 * low];
+        for (long remaining = line - points[2 * low + 1]; remaining > 0; offset++) {
+            if (file.get(offset) == '\n') {
+                remaining--;
+            }
+        }
+        return offset;
+    }
+    
+    // The line (counted from 0) holding the offset, or -1 if the indexer has not reached it yet
+    long lineOf(long offset) throws IOException {
+        if (offset >= indexedBytes && !complete) {
+            return -1;
+        }
+        int count = checkpointCount;
+        long[] points = checkpoints;
+        
+        // The last checkpoint at or before the offset
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (points[2 * middle] <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        long line = points[2 * low + 1];
+        for (long position = points[2 * low]; position < offset; position++) {
+            if (file.get(position) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+    
+    private void build() {
+        long size = file.size();
+        long position = 0;
+        long lines = 1;
+        try {
+            while (position < size && !cancelled) {
+                MappedByteBuffer region = file.region(position);
+                int start = MappedFile.regionOffset(position);
+                int limit = region.limit();
+                // Publish progress every 1 MB, so a lookup can go as far as the indexer has
+                for (int chunk = start; chunk < limit && !cancelled; chunk += BYTES_PER_CHECKPOINT) {
+                    int end = Math.min(limit, chunk + BYTES_PER_CHECKPOINT);
+                    for (int i = chunk; i < end; i++) {
+                        if (region.get(i) == '\n') {
+                            if ((lines & (LINES_PER_CHECKPOINT - 1)) == 0) {
+                                addCheckpoint(position + (i - start) + 1, lines);
+                            }
+                            lines++;
+                        }
+                    }
+                    // However long its lines, no stretch of the file is left without a checkpoint
+                    long chunkEnd = position + (end - start);
+                    if (chunkEnd < size) {
+                        addCheckpoint(chunkEnd, lines - 1);
+                    }
+                    indexedLines = lines;
+                    indexedBytes = chunkEnd;
+                }
+                position += limit - start;
+            }
+        } catch (IOException | InternalError e) {
+            // Unreadable or truncated: the index ends where reading stopped
+        }
+        // A final newline does not start another line
+        if (position >= size && size > 0 && lines > 1 && endsWithNewline(size)) {
+            lines--;
+        }
+        indexedLines = lines;
+        complete = true;
+    }
+    
+    private void addCheckpoint(long offset, long line) {
+        long[] points = checkpoints;
+        int count = checkpointCount;
+        if (points[2 * (count - 1)] == offset) {
+            // A line checkpoint on the boundary
+            return;
+        }
+        if (2 * count == points.length) {
+            points = Arrays.copyOf(points, points.length * 2);
+        }
+        points[2 * count] = offset;
+        points[2 * count + 1] = line;
+        checkpoints = points;
+        checkpointCount = count + 1;
+    }
+    
+    private boolean endsWithNewline(long size) {
+        try {
+            return file.get(size - 1) == '\n';
+        } catch (IOException | InternalError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package fileexplorer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Read-only memory mapping of a file of any size. A single mapping is limited to
+// 2 GB, so the file is mapped in regions, each on first use; the pages are read by
+// the OS as they are touched and the heap only holds the region objects. The size
+// is fixed when the file is opened: bytes appended later are not seen, and reading
+// a region of a file truncated since then fails with an InternalError from the JVM,
+// which read() reports as the end of the file and get() as an IOException. The JVM
+// may raise it a little after the access, past the catch; a caller that gets it
+// calls markTruncated(), and from then on nothing touches the mapping again.
+final class MappedFile implements Closeable {
+    
+    private static final int REGION_BITS = 28;
+    private static final long REGION_SIZE = 1L << REGION_BITS;
+    
+    private final Path path;
+    private final FileChannel channel;
+    private final long size;
+    private final AtomicReferenceArray<MappedByteBuffer> regions;
+    private volatile boolean truncated;
+    
+    MappedFile(Path path) throws IOException {
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        size = channel.size();
+        regions = new AtomicReferenceArray<>((int) ((size + REGION_SIZE - 1) >>> REGION_BITS));
+    }
+    
+    Path getPath() {
+        return path;
+    }
+    
+    long size() {
+        return size;
+    }
+    
+    // The byte at the position, which must be below size()
+    byte get(long position) throws IOException {
+        if (truncated) {
+            throw new IOException("Truncated since it was opened");
+        }
+        try {
+            return region(position).get(regionOffset(position));
+        } catch (InternalError e) {
+            truncated = true;
+            throw new IOException("Truncated since it was opened", e);
+        }
+    }
+    
+    // Copies up to length bytes from the position; returns the number copied, 0 at the end of the file
+    int read(long position, byte[] bytes, int offset, int length) throws IOException {
+        int copied = 0;
+        if (truncated) {
+            return 0;
+        }
+        try {
+            while (copied < length && position < size) {
+                MappedByteBuffer region = region(position);
+                int regionOffset = regionOffset(position);
+                int count = Math.min(length - copied, region.limit() - regionOffset);
+                region.duplicate().position(regionOffset).get(bytes, offset + copied, count);
+                copied += count;
+                position += count;
+            }
+        } catch (InternalError e) {
+            // The file was truncated under the mapping
+            truncated = true;
+        }
+        return copied;
+    }
+    
+    void markTruncated() {
+        truncated = true;
+    }
+    
+    // The mapping of the region holding the position. Shared by all threads, so it
+    // must only be read with absolute gets or through a duplicate().
+    MappedByteBuffer region(long position) throws IOException {
+        int index = (int) (position >>> REGION_BITS);
+        MappedByteBuffer region = regions.get(index);
+        if (region == null) {
+            synchronized (regions) {
+                region = regions.get(index);
+                if (region == null) {
+                    long start = (long) index << REGION_BITS;
+                    region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, size - start));
+                    regions.set(index, region);
+                }
+            }
+        }
+        return region;
+    }
+    
+    // Offset of a position within its region
+    static int regionOffset(long position) {
+        return (int) (position & (REGION_SIZE - 1));
+    }
+    
+    // The mappings stay valid until they are garbage collected; closing releases the file handle
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,285 @@
+package fileexplorer;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters and timers for the places the UI waits on: listing directories and the
+// stat calls they make, icon and display name lookups, updating the table model,
+// and events on the EDT, with the stalls among them that EdtWatchdog caught. An
+// update costs a few atomic adds, so they are always on. They are shown in the status
+// bar and the diagnostics panel, exported over JMX as fileexplorer:type=Diagnostics,
+// and the same work is recorded as JFR events (JfrEvents) while a recording runs.
+final class Metrics {
+    
+    static final Metric LISTING = new Metric("Directory listing", true);
+    static final Metric STAT_CALLS = new Metric("Stat calls", false);
+    static final Metric ICON_LOOKUP = new Metric("Icon lookup", true);
+    static final Metric DISPLAY_NAME_LOOKUP = new Metric("Display name lookup", true);
+    static final Metric MODEL_UPDATE = new Metric("Table model update", true);
+    static final Metric EDT_EVENT = new Metric("EDT event", true);
+    static final Metric EDT_STALL = new Metric("EDT stall", true);
+    
+    static final List<Metric> ALL = Collections.unmodifiableList(Arrays.asList(
+            LISTING, STAT_CALLS, ICON_LOOKUP, DISPLAY_NAME_LOOKUP, MODEL_UPDATE, EDT_EVENT, EDT_STALL));
+    
+    private static final int MAX_STALLS = 20;
+    
+    // Most recent first; guarded by itself
+    private static final Deque<Stall> stalls = new ArrayDeque<>();
+    
+    // Why the metrics are not exported over JMX, or null
+    private static volatile String mbeanFailure;
+    
+    private Metrics() {
+    }
+    
+    // A count of events and, if timed, their durations. Percentiles come from
+    // power-of-two buckets, so they are upper bounds within a factor of two.
+    static final class Metric {
+        private static final int BUCKETS = 48;
+        
+        private final String name;
+        private final boolean timed;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private volatile long lastNanos;
+        
+        private Metric(String name, boolean timed) {
+            this.name = name;
+            this.timed = timed;
+        }
+        
+        String getName() {
+            return name;
+        }
+        
+        boolean isTimed() {
+            return timed;
+        }
+        
+        void increment() {
+            count.increment();
+        }
+        
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            lastNanos = nanos;
+            buckets.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(Math.max(nanos, 0)), BUCKETS - 1));
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+        
+        long getCount() {
+            return count.sum();
+        }
+        
+        double getMeanMillis() {
+            long count = getCount();
+            return count > 0 ? totalNanos.sum() / 1e6 / count : 0;
+        }
+        
+        double getMaxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+        
+        double getLastMillis() {
+            return lastNanos / 1e6;
+        }
+        
+        // The duration that the given fraction of events stayed within
+        double getPercentileMillis(double fraction) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            long wanted = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= wanted && seen > 0) {
+                    // Bucket i holds durations below 2^i ns
+                    return Math.min((1L << i) / 1e6, getMaxMillis());
+                }
+            }
+            return 0;
+        }
+        
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+            lastNanos = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+        }
+    }
+    
+    // An EDT event that ran over the stall threshold
+    static final class Stall {
+        private final long time;
+        private final long nanos;
+        private final String event;
+        private final StackTraceElement[] stackTrace;
+        
+        Stall(long time, long nanos, String event, StackTraceElement[] stackTrace) {
+            this.time = time;
+            this.nanos = nanos;
+            this.event = event;
+            this.stackTrace = stackTrace;
+        }
+        
+        long getTime() {
+            return time;
+        }
+        
+        double getMillis() {
+            return nanos / 1e6;
+        }
+        
+        String getEvent() {
+            return event;
+        }
+        
+        // Where the EDT was while it stalled, or null if the watchdog did not catch it in time
+        StackTraceElement[] getStackTrace() {
+            return stackTrace;
+        }
+        
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(String.format("%tT %.0f ms %s", new Date(time), getMillis(), event));
+            if (stackTrace != null) {
+                for (StackTraceElement element : stackTrace) {
+                    text.append("\n    at ").append(element);
+                }
+            }
+            return text.toString();
+        }
+    }
+    
+    static void addStall(Stall stall) {
+        synchronized (stalls) {
+            stalls.addFirst(stall);
+            if (stalls.size() > MAX_STALLS) {
+                stalls.removeLast();
+            }
+        }
+    }
+    
+    // The last few stalls, most recent first
+    static List<Stall> getStalls() {
+        synchronized (stalls) {
+            return new ArrayList<>(stalls);
+        }
+    }
+    
+    static void reset() {
+        for (Metric metric : ALL) {
+            metric.reset();
+        }
+        synchronized (stalls) {
+            stalls.clear();
+        }
+    }
+    
+    // Registers the metrics with the platform MBean server, for JConsole or Mission Control
+    static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Diagnostics(),
+                    new ObjectName("fileexplorer:type=Diagnostics"));
+        } catch (InstanceAlreadyExistsException e) {
+            // Another window registered it
+        } catch (JMException | SecurityException e) {
+            mbeanFailure = e.toString();
+        }
+    }
+    
+    static String getMBeanFailure() {
+        return mbeanFailure;
+    }
+    
+    private static final class Diagnostics implements DiagnosticsMXBean {
+        @Override
+        public Map<String, Long> getCounts() {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (Metric metric : ALL) {
+                counts.put(metric.getName(), metric.getCount());
+            }
+            return counts;
+        }
+        
+        @Override
+        public Map<String, Double> getMeanMillis() {
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (Metric metric : ALL) {
+                if (metric.isTimed()) {
+                    values.put(metric.getName(), metric.getMeanMillis());
+                }
+            }
+            return values;
+        }
+        
+        @Override
+        public Map<String, Double> getP99Millis() {
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (Metric metric : ALL) {
+                if (metric.isTimed()) {
+                    values.put(metric.getName(), metric.getPercentileMillis(0.99));
+                }
+            }
+            return values;
+        }
+        
+        @Override
+        public Map<String, Double> getMaxMillis() {
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (Metric metric : ALL) {
+                if (metric.isTimed()) {
+                    values.put(metric.getName(), metric.getMaxMillis());
+                }
+            }
+            return values;
+        }
+        
+        @Override
+        public List<String> getRecentStalls() {
+            List<String> texts = new ArrayList<>();
+            for (Stall stall : getStalls()) {
+                texts.add(stall.toString());
+            }
+            return texts;
+        }
+        
+        @Override
+        public long getStallThresholdMillis() {
+            return EdtWatchdog.getThresholdMillis();
+        }
+        
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
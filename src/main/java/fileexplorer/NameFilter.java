@@ -0,0 +1,184 @@
+package fileexplorer;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// A filter on the names in the file table. Contains matches a substring, Glob
+// matches the whole name with * and ? as wildcards, and Regex finds the pattern
+// anywhere in the name; all three ignore case. Names are matched where they are,
+// in FileTableModel's char tables, through a NameMatcher per thread.
+final class NameFilter {
+    
+    enum Mode {
+        CONTAINS("Contains"),
+        GLOB("Glob"),
+        REGEX("Regex");
+        
+        private final String label;
+        
+        Mode(String label) {
+            this.label = label;
+        }
+        
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+    
+    private final Mode mode;
+    private final String text;
+    
+    // The text case-folded, for Contains; globs are matched against the folded names too
+    private final char[] foldedText;
+    private final Pattern pattern;
+    
+    // The parts of a glob between wildcards, folded; a name that lacks one is rejected without the regex
+    private final char[][] literals;
+    
+    // Throws PatternSyntaxException for an invalid regex
+    NameFilter(Mode mode, String text) {
+        this.mode = mode;
+        this.text = text;
+        foldedText = new char[text.length()];
+        for (int i = 0; i < text.length(); i++) {
+            foldedText[i] = FileEntry.fold(text.charAt(i));
+        }
+        
+        if (mode == Mode.GLOB) {
+            pattern = NamePattern.compileGlob(new String(foldedText));
+            literals = NamePattern.literals(new String(foldedText)).stream()
+                    .map(String::toCharArray)
+                    .toArray(char[][]::new);
+        } else if (mode == Mode.REGEX) {
+            pattern = Pattern.compile(text, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+            literals = new char[0][];
+        } else {
+            pattern = null;
+            literals = new char[0][];
+        }
+    }
+    
+    Mode getMode() {
+        return mode;
+    }
+    
+    String getText() {
+        return text;
+    }
+    
+    // True if every name this filter matches is matched by the previous one too, so
+    // only the previous matches need to be checked: a longer substring, or a glob
+    // extended after a trailing *
+    boolean narrows(NameFilter previous) {
+        if (mode != previous.mode) {
+            return false;
+        }
+        switch (mode) {
+            case CONTAINS:
+                return indexOf(foldedText, 0, foldedText.length, previous.foldedText) >= 0;
+            case GLOB:
+                return text.equals(previous.text) || previous.text.endsWith("*") && text.startsWith(previous.text);
+            default:
+                return text.equals(previous.text);
+        }
+    }
+    
+    // Not thread-safe; each thread that filters creates its own
+    NameMatcher matcher() {
+        return new NameMatcher();
+    }
+    
+    final class NameMatcher {
+        private final CharSlice slice = new CharSlice();
+        private final Matcher matcher = pattern != null ? pattern.matcher(slice) : null;
+        
+        // Whether the name at the offset in the pool matches; folded holds the same name case-folded
+        boolean matches(char[] pool, char[] folded, int offset, int length) {
+            switch (mode) {
+                case CONTAINS:
+                    return indexOf(folded, offset, length, foldedText) >= 0;
+                case GLOB:
+                    for (char[] literal : literals) {
+                        if (indexOf(folded, offset, length, literal) < 0) {
+                            return false;
+                        }
+                    }
+                    slice.set(folded, offset, length);
+                    return matcher.reset(slice).matches();
+                default:
+                    slice.set(pool, offset, length);
+                    return matcher.reset(slice).find();
+            }
+        }
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof NameFilter)) {
+            return false;
+        }
+        NameFilter other = (NameFilter) o;
+        return mode == other.mode && text.equals(other.text);
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * mode.hashCode() + text.hashCode();
+    }
+    
+    // Position of the text within chars[offset, offset + length) relative to offset, or -1
+    private static int indexOf(char[] chars, int offset, int length, char[] text) {
+        if (text.length == 0) {
+            return 0;
+        }
+        char first = text[0];
+        int last = offset + length - text.length;
+        for (int i = offset; i <= last; i++) {
+            if (chars[i] != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < text.length && chars[i + j] == text[j]) {
+                j++;
+            }
+            if (j == text.length) {
+                return i - offset;
+            }
+        }
+        return -1;
+    }
+    
+    // A window onto a char array, moved from name to name so matching allocates nothing
+    private static final class CharSlice implements CharSequence {
+        private char[] chars = new char[0];
+        private int offset;
+        private int length;
+        
+        void set(char[] chars, int offset, int length) {
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+        }
+        
+        @Override
+        public int length() {
+            return length;
+        }
+        
+        @Override
+        public char charAt(int index) {
+            return chars[offset + index];
+        }
+        
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, offset + start, end - start);
+        }
+        
+        @Override
+        public String toString() {
+            return new String(chars, offset, length);
+        }
+    }
+}
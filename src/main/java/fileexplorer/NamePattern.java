@@ -0,0 +1,53 @@
+package fileexplorer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+// Globs over file names, shared by the filter bar (NameFilter) and the name index
+// (FileNameIndex): * matches any run of characters, ? any one, and everything else
+// itself. Both fold the glob and the names before matching, so case is left to them.
+final class NamePattern {
+    
+    private NamePattern() {
+    }
+    
+    static boolean isGlob(String text) {
+        return text.indexOf('*') >= 0 || text.indexOf('?') >= 0;
+    }
+    
+    // Matches whole names only
+    static Pattern compileGlob(String glob) {
+        return Pattern.compile(globToRegex(glob), Pattern.DOTALL);
+    }
+    
+    // The parts of a glob between wildcards, which every name it matches contains
+    static List<String> literals(String glob) {
+        List<String> literals = new ArrayList<>();
+        for (String part : glob.split("[*?]+")) {
+            if (!part.isEmpty()) {
+                literals.add(part);
+            }
+        }
+        return literals;
+    }
+    
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int literalStart = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (i > literalStart) {
+                    regex.append(Pattern.quote(glob.substring(literalStart, i)));
+                }
+                regex.append(c == '*' ? ".*" : ".");
+                literalStart = i + 1;
+            }
+        }
+        if (literalStart < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(literalStart)));
+        }
+        return regex.toString();
+    }
+}
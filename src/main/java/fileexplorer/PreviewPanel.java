@@ -0,0 +1,502 @@
+package fileexplorer;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+// Shows a file as text or hex without loading it: the file is memory-mapped and
+// only the lines in view are read and decoded, so a 20 GB log opens at once and the
+// heap does not grow with it. The view is positioned by byte offset, which makes
+// scrolling anywhere instant; line numbers come from a LineIndex built in the
+// background and appear as soon as it has passed the lines shown, and "go to line"
+// jumps there once the index has reached that line.
+class PreviewPanel extends JPanel {
+    
+    enum Mode {
+        TEXT("Text"),
+        HEX("Hex");
+        
+        private final String label;
+        
+        Mode(String label) {
+            this.label = label;
+        }
+        
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+    
+    // Longer lines are shown as several lines of this many bytes
+    private static final int MAX_LINE_BYTES = 4096;
+    
+    // How far back a line start is looked for before a long line is cut at MAX_LINE_BYTES
+    private static final int MAX_BACKWARD_SCAN = 1 << 20;
+    
+    private static final int HEX_BYTES_PER_ROW = 16;
+    
+    // Lines shown above one opened at an offset
+    private static final int CONTEXT_LINES = 3;
+    
+    // Resolution of the vertical scroll bar, which maps linearly onto byte offsets
+    private static final int SCROLL_RANGE = 1 << 24;
+    
+    private final JComboBox<Mode> modeBox = new JComboBox<>(Mode.values());
+    private final JTextField lineField = new JTextField(9);
+    private final JLabel statusLabel = new JLabel(" ");
+    private final ContentView view = new ContentView();
+    private final JScrollBar verticalBar = new JScrollBar(JScrollBar.VERTICAL, 0, 0, 0, SCROLL_RANGE);
+    private final JScrollBar horizontalBar = new JScrollBar(JScrollBar.HORIZONTAL, 0, 0, 0, 0);
+    private final Timer progressTimer;
+    
+    private MappedFile file;
+    private LineIndex index;
+    private Mode mode = Mode.TEXT;
+    
+    // Byte offset of the first line shown, and the first column shown
+    private long top;
+    private int column;
+    
+    // The start of the line opened by showFile(file, offset), which is highlighted, or -1
+    private long highlighted = -1;
+    
+    // The line "go to line" is waiting for the index to reach, or -1
+    private long pendingLine = -1;
+    private boolean updatingScrollBars;
+    
+    // Why the last file could not be shown, or null
+    private String error;
+    
+    PreviewPanel() {
+        super(new BorderLayout());
+        
+        modeBox.setFocusable(false);
+        modeBox.addActionListener(e -> setMode((Mode) modeBox.getSelectedItem()));
+        lineField.setToolTipText("Go to line");
+        lineField.addActionListener(e -> goToLine(lineField.getText().trim()));
+        
+        JPanel header = new JPanel(new BorderLayout(4, 0));
+        header.setBorder(BorderFactory.createEmptyBorder(2, 4, 2, 4));
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        controls.add(modeBox);
+        controls.add(new JLabel("Line:"));
+        controls.add(lineField);
+        header.add(controls, BorderLayout.WEST);
+        header.add(statusLabel, BorderLayout.CENTER);
+        
+        JPanel content = new JPanel(new BorderLayout());
+        content.add(view, BorderLayout.CENTER);
+        content.add(verticalBar, BorderLayout.EAST);
+        content.add(horizontalBar, BorderLayout.SOUTH);
+        add(header, BorderLayout.NORTH);
+        add(content, BorderLayout.CENTER);
+        
+        verticalBar.addAdjustmentListener(e -> {
+            if (!updatingScrollBars && file != null) {
+                scrollToOffset((long) ((double) e.getValue() / SCROLL_RANGE * file.size()));
+            }
+        });
+        horizontalBar.addAdjustmentListener(e -> {
+            if (!updatingScrollBars) {
+                column = e.getValue();
+                view.repaint();
+            }
+        });
+        view.addMouseWheelListener(e -> scrollLines(e.getWheelRotation() * 3));
+        setupKeys();
+        
+        // While the index is built: line numbers, the status and a pending "go to line"
+        progressTimer = new Timer(250, e -> {
+            if (pendingLine >= 0) {
+                goToLine(pendingLine);
+            }
+            showStatus();
+            view.repaint();
+            if (index == null || index.isComplete()) {
+                ((Timer) e.getSource()).stop();
+            }
+        });
+        
+        showStatus();
+    }
+    
+    // Shows the file, or nothing if it is null
+    void showFile(File newFile) {
+        close();
+        error = null;
+        highlighted = -1;
+        if (newFile != null) {
+            try {
+                file = new MappedFile(newFile.toPath());
+                index = new LineIndex(file);
+                setMode(looksBinary() ? Mode.HEX : Mode.TEXT);
+                progressTimer.start();
+            } catch (IOException | RuntimeException e) {
+                close();
+                error = "Cannot preview " + newFile.getName() + ": " + e.getMessage();
+            }
+        }
+        top = 0;
+        column = 0;
+        updateScrollBars();
+        showStatus();
+        view.repaint();
+    }
+    
+    // Shows the file with the line starting at the offset near the top, a few lines below it
+    // in view; a file already shown is only scrolled
+    void showFile(File newFile, long offset) {
+        if (!newFile.equals(getFile())) {
+            showFile(newFile);
+        }
+        if (file != null && mode == Mode.TEXT) {
+            scrollToOffset(Math.min(offset, file.size()));
+            highlighted = top;
+            scrollLines(-CONTEXT_LINES);
+        }
+    }
+    
+    File getFile() {
+        return file != null ? file.getPath().toFile() : null;
+    }
+    
+    private void close() {
+        progressTimer.stop();
+        pendingLine = -1;
+        if (index != null) {
+            index.cancel();
+            index = null;
+        }
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // Nothing to do
+            }
+            file = null;
+        }
+    }
+    
+    private void setMode(Mode newMode) {
+        if (modeBox.getSelectedItem() != newMode) {
+            modeBox.setSelectedItem(newMode);
+        }
+        mode = newMode;
+        lineField.setEnabled(mode == Mode.TEXT);
+        if (file != null) {
+            scrollToOffset(top);
+        }
+    }
+    
+    // A NUL byte among the first few KB means binary
+    private boolean looksBinary() throws IOException {
+        byte[] head = new byte[4096];
+        int count = file.read(0, head, 0, head.length);
+        for (int i = 0; i < count; i++) {
+            if (head[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void setupKeys() {
+        view.setFocusable(true);
+        bindKey(KeyEvent.VK_DOWN, "lineDown", () -> scrollLines(1));
+        bindKey(KeyEvent.VK_UP, "lineUp", () -> scrollLines(-1));
+        bindKey(KeyEvent.VK_PAGE_DOWN, "pageDown", () -> scrollLines(Math.max(1, view.visibleLines() - 1)));
+        bindKey(KeyEvent.VK_PAGE_UP, "pageUp", () -> scrollLines(-Math.max(1, view.visibleLines() - 1)));
+        bindKey(KeyEvent.VK_HOME, "start", () -> scrollToOffset(0));
+        bindKey(KeyEvent.VK_END, "end", this::scrollToEnd);
+    }
+    
+    private void bindKey(int key, String name, Runnable action) {
+        view.getInputMap().put(KeyStroke.getKeyStroke(key, 0), name);
+        view.getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+    
+    private void goToLine(String text) {
+        if (index == null || text.isEmpty()) {
+            return;
+        }
+        try {
+            goToLine(Long.parseLong(text.replace(",", "")));
+        } catch (NumberFormatException e) {
+            statusLabel.setText(" Not a line number: " + text);
+        }
+    }
+    
+    // Line numbers count from 1 for the user
+    private void goToLine(long line) {
+        try {
+            long target = Math.max(line, 1) - 1;
+            if (index.isComplete()) {
+                target = Math.min(target, index.getLineCount() - 1);
+            }
+            long offset = index.offsetOf(target);
+            if (offset < 0) {
+                // Not indexed yet; the progress timer tries again
+                pendingLine = line;
+                return;
+            }
+            pendingLine = -1;
+            scrollToOffset(offset);
+            view.requestFocusInWindow();
+        } catch (IOException | InternalError e) {
+            pendingLine = -1;
+        }
+    }
+    
+    private void scrollToOffset(long offset) {
+        try {
+            top = mode == Mode.HEX ? offset - offset % HEX_BYTES_PER_ROW : lineStartAtOrBefore(offset);
+        } catch (IOException | InternalError e) {
+            top = 0;
+        }
+        updateScrollBars();
+        view.repaint();
+    }
+    
+    private void scrollToEnd() {
+        if (file == null || file.size() == 0) {
+            return;
+        }
+        scrollToOffset(file.size() - 1);
+        scrollLines(-(view.visibleLines() - 1));
+    }
+    
+    private void scrollLines(int lines) {
+        if (file == null) {
+            return;
+        }
+        try {
+            for (int i = 0; i < lines && nextLineStart(top) < file.size(); i++) {
+                top = nextLineStart(top);
+            }
+            for (int i = 0; i > lines && top > 0; i--) {
+                top = previousLineStart(top);
+            }
+        } catch (IOException | InternalError e) {
+            // Keep the position
+        }
+        updateScrollBars();
+        view.repaint();
+    }
+    
+    private void updateScrollBars() {
+        updatingScrollBars = true;
+        long size = file != null ? file.size() : 0;
+        verticalBar.setEnabled(size > 0);
+        // Not while the user drags the thumb, which would then jump back to the line start
+        if (!verticalBar.getValueIsAdjusting()) {
+            verticalBar.setValue(size > 0 ? (int) ((double) top / size * SCROLL_RANGE) : 0);
+        }
+        verticalBar.setBlockIncrement(SCROLL_RANGE / 20);
+        updatingScrollBars = false;
+    }
+    
+    // The end of the line starting at the offset: its newline, or where it is cut
+    private long lineEnd(long start) throws IOException {
+        long limit = Math.min(file.size(), start + MAX_LINE_BYTES);
+        for (long position = start; position < limit; position++) {
+            if (file.get(position) == '\n') {
+                return position;
+            }
+        }
+        return limit;
+    }
+    
+    private long nextLineStart(long start) throws IOException {
+        if (mode == Mode.HEX) {
+            return start + HEX_BYTES_PER_ROW;
+        }
+        long end = lineEnd(start);
+        return end < file.size() && file.get(end) == '\n' ? end + 1 : end;
+    }
+    
+    private long previousLineStart(long start) throws IOException {
+        if (mode == Mode.HEX) {
+            return Math.max(0, start - HEX_BYTES_PER_ROW);
+        }
+        return start > 0 ? lineStartAtOrBefore(start - 1) : 0;
+    }
+    
+    // The start of the shown line holding the offset
+    private long lineStartAtOrBefore(long offset) throws IOException {
+        if (offset <= 0 || file.size() == 0) {
+            return 0;
+        }
+        offset = Math.min(offset, file.size() - 1);
+        // The newline ending the previous line; the offset itself may be this line's newline
+        long limit = Math.max(0, offset - MAX_BACKWARD_SCAN);
+        long position = offset - 1;
+        while (position >= limit && file.get(position) != '\n') {
+            position--;
+        }
+        long lineStart = position >= limit ? position + 1 : position < 0 ? 0 : -1;
+        if (lineStart < 0) {
+            // A line longer than the scan: cut it at the offset
+            return offset;
+        }
+        // Long lines are shown in pieces of MAX_LINE_BYTES
+        return lineStart + (offset - lineStart) / MAX_LINE_BYTES * MAX_LINE_BYTES;
+    }
+    
+    private void showStatus() {
+        if (file == null) {
+            statusLabel.setText(" " + (error != null ? error : "Select a file to preview it"));
+            return;
+        }
+        String text = " " + file.getPath().getFileName() + ", " + FileExplorer.formatSize(file.size());
+        if (index.isComplete()) {
+            text += ", " + String.format("%,d", index.getLineCount()) + " lines";
+        } else {
+            long percent = file.size() > 0 ? index.getIndexedBytes() * 100 / file.size() : 100;
+            text += ", indexing lines " + percent + "%";
+            if (pendingLine >= 0) {
+                text += " (waiting for line " + String.format("%,d", pendingLine) + ")";
+            }
+        }
+        statusLabel.setText(text);
+    }
+    
+    private final class ContentView extends JComponent {
+        private final Font font = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+        private final Color highlight = new Color(0xFF, 0xF0, 0xA0);
+        private final byte[] buffer = new byte[MAX_LINE_BYTES];
+        
+        ContentView() {
+            setOpaque(true);
+            setBackground(UIManager.getColor("TextArea.background"));
+            setFont(font);
+        }
+        
+        int visibleLines() {
+            return Math.max(1, getHeight() / getFontMetrics(font).getHeight());
+        }
+        
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(getBackground() != null ? getBackground() : Color.WHITE);
+            g.fillRect(0, 0, getWidth(), getHeight());
+            if (file == null) {
+                return;
+            }
+            ((Graphics2D) g).setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                    RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(font);
+            FontMetrics metrics = g.getFontMetrics();
+            int charWidth = metrics.charWidth('0');
+            int lineHeight = metrics.getHeight();
+            int lines = getHeight() / lineHeight + 1;
+            
+            try {
+                int widest = mode == Mode.HEX ? paintHex(g, metrics, lines) : paintText(g, metrics, lines);
+                // The horizontal bar covers the widest line in view
+                int visibleColumns = Math.max(1, getWidth() / charWidth);
+                column = Math.min(column, Math.max(0, widest - visibleColumns));
+                updatingScrollBars = true;
+                horizontalBar.setValues(column, visibleColumns, 0, Math.max(widest, visibleColumns));
+                updatingScrollBars = false;
+            } catch (IOException e) {
+                g.setColor(Color.RED);
+                g.drawString("Cannot read " + file.getPath() + ": " + e.getMessage(), 4, lineHeight);
+            } catch (InternalError e) {
+                // Truncated under the mapping, and raised after get() had returned
+                file.markTruncated();
+                g.setColor(Color.RED);
+                g.drawString("Cannot read " + file.getPath() + ": truncated since it was opened", 4, lineHeight);
+            }
+        }
+        
+        // Returns the length in characters of the longest line drawn
+        private int paintText(Graphics g, FontMetrics metrics, int lines) throws IOException {
+            int lineHeight = metrics.getHeight();
+            long line = index.lineOf(top);
+            int gutterColumns = Math.max(6, Long.toString(index.getLineCount()).length() + 1);
+            int gutterWidth = gutterColumns * metrics.charWidth('0') + 6;
+            int widest = 0;
+            
+            long position = top;
+            for (int i = 0; i < lines && position < file.size(); i++) {
+                long end = lineEnd(position);
+                int length = file.read(position, buffer, 0, (int) (end - position));
+                if (length > 0 && buffer[length - 1] == '\r') {
+                    length--;
+                }
+                String text = new String(buffer, 0, length, StandardCharsets.UTF_8).replace("\t", "    ");
+                widest = Math.max(widest, text.length());
+                
+                int baseline = i * lineHeight + metrics.getAscent();
+                if (position == highlighted) {
+                    g.setColor(highlight);
+                    g.fillRect(gutterWidth - 2, i * lineHeight, getWidth(), lineHeight);
+                }
+                g.setColor(Color.GRAY);
+                if (line >= 0) {
+                    String number = Long.toString(line + 1);
+                    g.drawString(number, gutterWidth - 6 - metrics.stringWidth(number), baseline);
+                }
+                g.setColor(getForeground());
+                if (column < text.length()) {
+                    g.drawString(text.substring(column, Math.min(text.length(), column + 1000)),
+                            gutterWidth, baseline);
+                }
+                
+                boolean newline = end < file.size() && file.get(end) == '\n';
+                if (line >= 0 && newline) {
+                    line++;
+                }
+                position = newline ? end + 1 : end;
+            }
+            g.setColor(Color.LIGHT_GRAY);
+            g.drawLine(gutterWidth - 3, 0, gutterWidth - 3, getHeight());
+            return widest + gutterColumns + 1;
+        }
+        
+        private int paintHex(Graphics g, FontMetrics metrics, int lines) throws IOException {
+            int lineHeight = metrics.getHeight();
+            StringBuilder text = new StringBuilder();
+            long position = top;
+            for (int i = 0; i < lines && position < file.size(); i++) {
+                int length = file.read(position, buffer, 0, HEX_BYTES_PER_ROW);
+                text.setLength(0);
+                text.append(String.format("%012X  ", position));
+                for (int j = 0; j < HEX_BYTES_PER_ROW; j++) {
+                    if (j < length) {
+                        text.append(Character.forDigit((buffer[j] >> 4) & 0xF, 16))
+                                .append(Character.forDigit(buffer[j] & 0xF, 16)).append(' ');
+                    } else {
+                        text.append("   ");
+                    }
+                    if (j == 7) {
+                        text.append(' ');
+                    }
+                }
+                text.append(' ');
+                for (int j = 0; j < length; j++) {
+                    char c = (char) (buffer[j] & 0xFF);
+                    text.append(c >= 0x20 && c < 0x7F ? c : '.');
+                }
+                g.setColor(getForeground());
+                String row = text.toString();
+                if (column < row.length()) {
+                    g.drawString(row.substring(column), 4, i * lineHeight + metrics.getAscent());
+                }
+                position += HEX_BYTES_PER_ROW;
+            }
+            return 14 + HEX_BYTES_PER_ROW * 4 + 2;
+        }
+    }
+}
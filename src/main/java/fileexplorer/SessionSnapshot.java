@@ -0,0 +1,387 @@
+package fileexplorer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// The state of the last session, saved on exit so the next start can show it at
+// once: the current directory, the back and forward history, the expanded tree
+// folders and the most recent listings with the modification times they were
+// taken at. Like FileNameIndex, it is one binary file that is memory-mapped to be
+// read: fixed-size path, listing and entry records followed by UTF-8 pools. The
+// records are checked against the pools when it is opened, but nothing is decoded
+// until it is asked for. The listings go back into the DirectoryCache, where the
+// next listing of a directory checks them against the disk as usual.
+final class SessionSnapshot {
+    private static final int MAGIC = 0x46534553;  // "FSES"
+    private static final int VERSION = 1;
+    
+    private static final int HEADER_SIZE = 64;
+    private static final int PATH_RECORD_SIZE = 8;
+    private static final int LISTING_RECORD_SIZE = 32;
+    private static final int ENTRY_RECORD_SIZE = 32;
+    
+    private static final byte FLAG_DIRECTORY = 1;
+    private static final byte FLAG_HIDDEN = 2;
+    
+    // What is saved at most; the listings of the current directory and the expanded folders come first
+    private static final int MAX_HISTORY = 50;
+    private static final int MAX_EXPANDED = 256;
+    private static final int MAX_LISTINGS = 256;
+    private static final int MAX_ENTRIES = 200_000;
+    
+    private final long savedAt;
+    private final boolean hasCurrent;
+    private final int backCount;
+    private final int forwardCount;
+    private final int expandedCount;
+    private final int listingCount;
+    private final int shownListingCount;
+    
+    // Sections of the mapped file
+    private final ByteBuffer paths;
+    private final ByteBuffer listings;
+    private final ByteBuffer entries;
+    private final ByteBuffer pathPool;
+    private final ByteBuffer namePool;
+    
+    private SessionSnapshot(long savedAt, boolean hasCurrent, int backCount, int forwardCount, int expandedCount,
+            int listingCount, int shownListingCount, ByteBuffer paths, ByteBuffer listings, ByteBuffer entries, ByteBuffer pathPool,
+            ByteBuffer namePool) {
+        this.savedAt = savedAt;
+        this.hasCurrent = hasCurrent;
+        this.backCount = backCount;
+        this.forwardCount = forwardCount;
+        this.expandedCount = expandedCount;
+        this.listingCount = listingCount;
+        this.shownListingCount = shownListingCount;
+        this.paths = paths;
+        this.listings = listings;
+        this.entries = entries;
+        this.pathPool = pathPool;
+        this.namePool = namePool;
+    }
+    
+    // Where the session is kept
+    static Path defaultFile() {
+        return Paths.get(System.getProperty("user.home"), ".fileexplorer", "session.bin");
+    }
+    
+    // Opens a saved session, or returns null if there is none or it is unreadable
+    static SessionSnapshot open(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                return null;
+            }
+            
+            long savedAt = header.getLong(8);
+            boolean hasCurrent = header.getInt(16) != 0;
+            int backCount = header.getInt(20);
+            int forwardCount = header.getInt(24);
+            int expandedCount = header.getInt(28);
+            int listingCount = header.getInt(32);
+            int entryCount = header.getInt(36);
+            int pathPoolBytes = header.getInt(40);
+            int namePoolBytes = header.getInt(44);
+            int shownListingCount = header.getInt(48);
+            
+            if ((backCount | forwardCount | expandedCount | listingCount | entryCount) < 0) {
+                return null;
+            }
+            long pathCount = (hasCurrent ? 1L : 0) + backCount + forwardCount + expandedCount;
+            long[] sizes = {pathCount * PATH_RECORD_SIZE, (long) listingCount * LISTING_RECORD_SIZE,
+                    (long) entryCount * ENTRY_RECORD_SIZE, pathPoolBytes, namePoolBytes};
+            long position = HEADER_SIZE;
+            ByteBuffer[] sections = new ByteBuffer[sizes.length];
+            for (int i = 0; i < sizes.length; i++) {
+                if (sizes[i] < 0 || position + sizes[i] > channel.size()) {
+                    // Truncated or corrupt
+                    return null;
+                }
+                sections[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, sizes[i]);
+                position += sizes[i];
+            }
+            
+            if (!isValid(sections[0], sections[1], sections[2], pathPoolBytes, namePoolBytes, entryCount)) {
+                return null;
+            }
+            
+            // The mappings stay valid after the channel is closed
+            return new SessionSnapshot(savedAt, hasCurrent, backCount, forwardCount, expandedCount, listingCount,
+                    Math.max(0, Math.min(shownListingCount, listingCount)), sections[0], sections[1], sections[2], sections[3], sections[4]);
+        }
+    }
+    
+    // Whether every string a record points at lies within its pool and every listing
+    // within the entries, so that reading the snapshot cannot run off a section
+    private static boolean isValid(ByteBuffer paths, ByteBuffer listings, ByteBuffer entries,
+            int pathPoolBytes, int namePoolBytes, int entryCount) {
+        for (int record = 0; record < paths.capacity(); record += PATH_RECORD_SIZE) {
+            if (!isWithin(paths.getInt(record), paths.getInt(record + 4), pathPoolBytes)) {
+                return false;
+            }
+        }
+        for (int record = 0; record < listings.capacity(); record += LISTING_RECORD_SIZE) {
+            if (!isWithin(listings.getInt(record), listings.getInt(record + 4), pathPoolBytes)
+                    || !isWithin(listings.getInt(record + 8), listings.getInt(record + 12), entryCount)) {
+                return false;
+            }
+        }
+        for (int record = 0; record < entries.capacity(); record += ENTRY_RECORD_SIZE) {
+            if (!isWithin(entries.getInt(record), entries.getInt(record + 4), namePoolBytes)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean isWithin(int offset, int length, int size) {
+        return offset >= 0 && length >= 0 && (long) offset + length <= size;
+    }
+    
+    long getSavedAt() {
+        return savedAt;
+    }
+    
+    // The directory shown when the session ended, or null
+    File getCurrentDirectory() {
+        return hasCurrent ? new File(path(0)) : null;
+    }
+    
+    // Oldest first, as they were pushed
+    List<File> getBackHistory() {
+        return files(hasCurrent ? 1 : 0, backCount);
+    }
+    
+    List<File> getForwardHistory() {
+        return files((hasCurrent ? 1 : 0) + backCount, forwardCount);
+    }
+    
+    // Parents before their subfolders
+    List<File> getExpandedDirectories() {
+        return files((hasCurrent ? 1 : 0) + backCount + forwardCount, expandedCount);
+    }
+    
+    // Puts saved listings into the cache, except for directories it already holds: those
+    // of the current directory and the expanded folders, or all the others. Either way
+    // the most important is restored last, leaving it the most recently used.
+    void restoreListings(DirectoryCache cache, boolean shown) {
+        int first = shown ? 0 : shownListingCount;
+        int end = shown ? shownListingCount : listingCount;
+        for (int listing = end - 1; listing >= first; listing--) {
+            restoreListing(cache, listing);
+        }
+    }
+    
+    private void restoreListing(DirectoryCache cache, int listing) {
+        int record = listing * LISTING_RECORD_SIZE;
+        Path directory;
+        try {
+            directory = Paths.get(string(pathPool, listings.getInt(record), listings.getInt(record + 4)));
+        } catch (InvalidPathException e) {
+            // Not a path here; the other listings are still good
+            return;
+        }
+        if (cache.peek(directory) != null) {
+            return;
+        }
+        int first = listings.getInt(record + 8);
+        int count = listings.getInt(record + 12);
+        List<FileEntry> restored = new ArrayList<>(count);
+        for (int entry = first; entry < first + count; entry++) {
+            int entryRecord = entry * ENTRY_RECORD_SIZE;
+            byte flags = entries.get(entryRecord + 8);
+            restored.add(new FileEntry(string(namePool, entries.getInt(entryRecord), entries.getInt(entryRecord + 4)),
+                    (flags & FLAG_DIRECTORY) != 0, (flags & FLAG_HIDDEN) != 0,
+                    entries.getLong(entryRecord + 16), entries.getLong(entryRecord + 24)));
+        }
+        cache.restore(directory, restored, listings.getLong(record + 16), listings.getLong(record + 24));
+    }
+    
+    private List<File> files(int first, int count) {
+        List<File> files = new ArrayList<>(count);
+        for (int i = first; i < first + count; i++) {
+            files.add(new File(path(i)));
+        }
+        return files;
+    }
+    
+    private String path(int index) {
+        return string(pathPool, paths.getInt(index * PATH_RECORD_SIZE), paths.getInt(index * PATH_RECORD_SIZE + 4));
+    }
+    
+    private static String string(ByteBuffer pool, int offset, int length) {
+        byte[] bytes = new byte[length];
+        pool.duplicate().position(offset).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    // Writes the session aside and moves it into place, so a crash while saving keeps the previous one
+    static void save(Path file, File currentDirectory, Collection<File> backHistory, Collection<File> forwardHistory,
+            Collection<File> expandedDirectories, DirectoryCache cache) throws IOException {
+        List<String> pathList = new ArrayList<>();
+        if (currentDirectory != null) {
+            pathList.add(currentDirectory.getAbsolutePath());
+        }
+        List<String> back = newest(backHistory, MAX_HISTORY);
+        List<String> forward = newest(forwardHistory, MAX_HISTORY);
+        // Parents come first, so the deepest folders are the ones left out
+        List<String> expanded = new ArrayList<>();
+        for (File directory : expandedDirectories) {
+            if (expanded.size() < MAX_EXPANDED) {
+                expanded.add(directory.getAbsolutePath());
+            }
+        }
+        pathList.addAll(back);
+        pathList.addAll(forward);
+        pathList.addAll(expanded);
+        
+        // The listings needed to show the session first, then the most recently used
+        Set<Path> directories = new LinkedHashSet<>();
+        if (currentDirectory != null) {
+            directories.add(currentDirectory.toPath());
+        }
+        for (String directory : expanded) {
+            directories.add(Paths.get(directory));
+        }
+        int shown = directories.size();
+        directories.addAll(cache.getDirectories());
+        
+        ByteArrayPool pathPool = new ByteArrayPool();
+        ByteArrayPool namePool = new ByteArrayPool();
+        ByteBuffer pathTable = ByteBuffer.allocate(pathList.size() * PATH_RECORD_SIZE);
+        for (String path : pathList) {
+            byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+            pathTable.putInt(pathPool.add(bytes)).putInt(bytes.length);
+        }
+        
+        List<byte[]> listingRecords = new ArrayList<>();
+        List<byte[]> entryRecords = new ArrayList<>();
+        int entryCount = 0;
+        int shownListingCount = 0;
+        int index = 0;
+        for (Path directory : directories) {
+            DirectoryCache.Snapshot snapshot = cache.peek(directory);
+            boolean isShown = index++ < shown;
+            if (snapshot == null || entryCount + snapshot.getEntries().size() > MAX_ENTRIES) {
+                continue;
+            }
+            byte[] pathBytes = directory.toString().getBytes(StandardCharsets.UTF_8);
+            List<FileEntry> listing = snapshot.getEntries();
+            listingRecords.add(ByteBuffer.allocate(LISTING_RECORD_SIZE)
+                    .putInt(pathPool.add(pathBytes)).putInt(pathBytes.length)
+                    .putInt(entryCount).putInt(listing.size())
+                    .putLong(snapshot.getLastModified()).putLong(snapshot.getListedAt()).array());
+            
+            ByteBuffer entryTable = ByteBuffer.allocate(listing.size() * ENTRY_RECORD_SIZE);
+            for (FileEntry entry : listing) {
+                byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+                byte flags = (byte) ((entry.isDirectory() ? FLAG_DIRECTORY : 0) | (entry.isHidden() ? FLAG_HIDDEN : 0));
+                entryTable.putInt(namePool.add(name)).putInt(name.length).put(flags).put(new byte[7])
+                        .putLong(entry.getSize()).putLong(entry.getLastModified());
+            }
+            entryRecords.add(entryTable.array());
+            entryCount += listing.size();
+            if (isShown) {
+                shownListingCount = listingRecords.size();
+            }
+            if (listingRecords.size() == MAX_LISTINGS) {
+                break;
+            }
+        }
+        
+        Files.createDirectories(file.getParent());
+        Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream stream = Files.newOutputStream(temporary);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(currentDirectory != null ? 1 : 0);
+                out.writeInt(back.size());
+                out.writeInt(forward.size());
+                out.writeInt(expanded.size());
+                out.writeInt(listingRecords.size());
+                out.writeInt(entryCount);
+                out.writeInt(pathPool.size());
+                out.writeInt(namePool.size());
+                out.writeInt(shownListingCount);
+                out.write(new byte[HEADER_SIZE - 52]);
+                
+                out.write(pathTable.array());
+                for (byte[] record : listingRecords) {
+                    out.write(record);
+                }
+                for (byte[] records : entryRecords) {
+                    out.write(records);
+                }
+                pathPool.writeTo(out);
+                namePool.writeTo(out);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+    
+    // The absolute paths of the last files of a collection, in order
+    private static List<String> newest(Collection<File> files, int max) {
+        List<String> paths = new ArrayList<>(Math.min(files.size(), max));
+        int skip = Math.max(0, files.size() - max);
+        for (File file : files) {
+            if (skip-- <= 0) {
+                paths.add(file.getAbsolutePath());
+            }
+        }
+        return paths;
+    }
+    
+    // Appends byte strings to one growing array and hands out their offsets
+    private static final class ByteArrayPool {
+        private byte[] bytes = new byte[1 << 16];
+        private int size;
+        
+        int add(byte[] value) {
+            if (size + value.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + value.length, bytes.length * 2));
+            }
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+            return size - value.length;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package fileexplorer;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableCellRenderer;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// The queue of copy and move jobs, shown below the file views while there are any.
+// Each job shows its progress and current throughput, and the selected job can
+// be paused, resumed or cancelled.
+class TransferPanel extends JPanel implements FileTransferService.Listener {
+    
+    private final List<FileTransferService.Job> jobs = new ArrayList<>();
+    private final Set<FileTransferService.Job> reportedJobs = new HashSet<>();
+    private final JobTableModel tableModel = new JobTableModel();
+    private final JTable table = new JTable(tableModel);
+    private final JButton pauseButton = new JButton("Pause");
+    private final JButton cancelButton = new JButton("Cancel");
+    private final JButton clearButton = new JButton("Clear finished");
+    
+    TransferPanel() {
+        super(new BorderLayout());
+        setBorder(BorderFactory.createTitledBorder("Transfers"));
+        
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setShowGrid(false);
+        table.setIntercellSpacing(new Dimension(0, 0));
+        table.getColumnModel().getColumn(0).setPreferredWidth(350);
+        table.getColumnModel().getColumn(1).setPreferredWidth(150);
+        table.getColumnModel().getColumn(1).setCellRenderer(new ProgressRenderer());
+        table.getColumnModel().getColumn(2).setPreferredWidth(100);
+        table.getColumnModel().getColumn(3).setPreferredWidth(150);
+        table.getSelectionModel().addListSelectionListener(e -> updateButtons());
+        
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(0, 110));
+        add(scrollPane, BorderLayout.CENTER);
+        
+        JPanel buttons = new JPanel(new GridLayout(0, 1, 0, 4));
+        buttons.add(pauseButton);
+        buttons.add(cancelButton);
+        buttons.add(clearButton);
+        JPanel buttonPanel = new JPanel(new BorderLayout());
+        buttonPanel.add(buttons, BorderLayout.NORTH);
+        add(buttonPanel, BorderLayout.EAST);
+        
+        pauseButton.addActionListener(e -> {
+            FileTransferService.Job job = getSelectedJob();
+            if (job != null) {
+                if (job.getState() == FileTransferService.State.PAUSED) {
+                    job.resume();
+                } else {
+                    job.pause();
+                }
+            }
+        });
+        
+        cancelButton.addActionListener(e -> {
+            FileTransferService.Job job = getSelectedJob();
+            if (job != null) {
+                job.cancel();
+            }
+        });
+        
+        clearButton.addActionListener(e -> {
+            jobs.removeIf(FileTransferService.Job::isDone);
+            reportedJobs.retainAll(jobs);
+            tableModel.fireTableDataChanged();
+            updateButtons();
+            setVisible(!jobs.isEmpty());
+        });
+        
+        updateButtons();
+        setVisible(false);
+    }
+    
+    @Override
+    public void jobChanged(FileTransferService.Job job) {
+        int row = jobs.indexOf(job);
+        if (row < 0) {
+            jobs.add(job);
+            row = jobs.size() - 1;
+            tableModel.fireTableRowsInserted(row, row);
+            setVisible(true);
+            revalidate();
+        } else {
+            tableModel.fireTableRowsUpdated(row, row);
+        }
+        updateButtons();
+        
+        if (job.isDone() && job.getErrorCount() > 0 && reportedJobs.add(job)) {
+            showErrors(job);
+        }
+    }
+    
+    private void showErrors(FileTransferService.Job job) {
+        // One summary per job
+        List<String> errors = job.getErrors();
+        StringBuilder message = new StringBuilder(job.getErrorCount()
+                + (job.getErrorCount() == 1 ? " item" : " items") + " could not be transferred:\n");
+        for (String error : errors.subList(0, Math.min(20, errors.size()))) {
+            message.append("\n").append(error);
+        }
+        if (job.getErrorCount() > 20) {
+            message.append("\n... and ").append(job.getErrorCount() - 20).append(" more");
+        }
+        JOptionPane.showMessageDialog(SwingUtilities.getWindowAncestor(this), message.toString(),
+                "Transfer Error", JOptionPane.ERROR_MESSAGE);
+    }
+    
+    private FileTransferService.Job getSelectedJob() {
+        int row = table.getSelectedRow();
+        return row >= 0 ? jobs.get(table.convertRowIndexToModel(row)) : null;
+    }
+    
+    private void updateButtons() {
+        FileTransferService.Job job = getSelectedJob();
+        boolean active = job != null && !job.isDone();
+        pauseButton.setEnabled(active);
+        pauseButton.setText(job != null && job.getState() == FileTransferService.State.PAUSED ? "Resume" : "Pause");
+        cancelButton.setEnabled(active);
+        boolean anyDone = false;
+        for (FileTransferService.Job each : jobs) {
+            anyDone |= each.isDone();
+        }
+        clearButton.setEnabled(anyDone);
+    }
+    
+    private final class JobTableModel extends AbstractTableModel {
+        private final String[] columnNames = {"Job", "Progress", "Speed", "Status"};
+        
+        @Override
+        public int getRowCount() {
+            return jobs.size();
+        }
+        
+        @Override
+        public int getColumnCount() {
+            return columnNames.length;
+        }
+        
+        @Override
+        public String getColumnName(int column) {
+            return columnNames[column];
+        }
+        
+        @Override
+        public Object getValueAt(int row, int column) {
+            FileTransferService.Job job = jobs.get(row);
+            switch (column) {
+                case 0: return describe(job);
+                case 1: return job;
+                case 2: return job.getState() == FileTransferService.State.RUNNING
+                        ? FileExplorer.formatSize((long) job.getBytesPerSecond()) + "/s" : "";
+                case 3: return status(job);
+                default: return null;
+            }
+        }
+        
+        private String describe(FileTransferService.Job job) {
+            int count = job.getSources().size();
+            String what = count == 1 ? job.getSources().get(0).getFileName().toString() : count + " items";
+            return (job.getOperation() == FileTransferService.Operation.COPY ? "Copy " : "Move ")
+                    + what + " to " + job.getTargetDirectory();
+        }
+        
+        private String status(FileTransferService.Job job) {
+            String files = job.getCopiedFiles() + " of " + job.getTotalFiles() + " files";
+            switch (job.getState()) {
+                case QUEUED: return "Queued";
+                case SCANNING: return "Scanning... " + job.getTotalFiles() + " files";
+                case PAUSED: return "Paused, " + files;
+                case CANCELLED: return "Cancelled, " + files;
+                case FINISHED: return job.getErrorCount() > 0 ? job.getErrorCount() + " failed" : "Done, " + files;
+                default: return files;
+            }
+        }
+    }
+    
+    // Progress bar by bytes, with the byte counts as its text
+    private static final class ProgressRenderer extends JProgressBar implements TableCellRenderer {
+        ProgressRenderer() {
+            super(0, 1000);
+            setStringPainted(true);
+        }
+        
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value,
+                boolean isSelected, boolean hasFocus, int row, int column) {
+            FileTransferService.Job job = (FileTransferService.Job) value;
+            long total = job.getTotalBytes();
+            long copied = job.getCopiedBytes();
+            boolean complete = job.getState() == FileTransferService.State.FINISHED;
+            setValue(complete ? 1000 : total > 0 ? (int) (copied * 1000 / total) : 0);
+            setString(FileExplorer.formatSize(copied) + " of " + FileExplorer.formatSize(total));
+            return this;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package fileexplorer;
+
+import javax.swing.SwingWorker;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+// Loads the children of a directory node in the tree off the EDT. Each entry's
+// attributes are read once, before sorting, and the sorted children are inserted
+// in chunks. The "Loading..." placeholder stays as the node's last child and
+// shows progress until the load has finished.
+class TreeNodeLoader extends SwingWorker<Void, List<FileEntry>> {
+    static final String PLACEHOLDER_TEXT = "Loading...";
+    
+    private static final int CHUNK_SIZE = 256;
+    private static final int PROGRESS_INTERVAL = 1000;
+    
+    // Published after the last chunk, so the placeholder is removed only after every chunk is in
+    private static final List<FileEntry> END_OF_CHILDREN = Collections.emptyList();
+    
+    private final DefaultTreeModel treeModel;
+    private final DefaultMutableTreeNode node;
+    private final File directory;
+    private final DirectoryModel directoryModel;
+    private final Runnable onFinished;
+    
+    TreeNodeLoader(DefaultTreeModel treeModel, DefaultMutableTreeNode node, DirectoryModel directoryModel,
+            Runnable onFinished) {
+        this.treeModel = treeModel;
+        this.node = node;
+        this.directory = (File) node.getUserObject();
+        this.directoryModel = directoryModel;
+        this.onFinished = onFinished;
+        
+        // Progress events are delivered on the EDT
+        addPropertyChangeListener(event -> {
+            if ("loaded".equals(event.getPropertyName())) {
+                showProgress((Integer) event.getNewValue());
+            }
+        });
+    }
+    
+    static DefaultMutableTreeNode createPlaceholder() {
+        return new DefaultMutableTreeNode(PLACEHOLDER_TEXT, false);
+    }
+    
+    // True if the node's children have not been loaded yet
+    static boolean needsLoading(DefaultMutableTreeNode node) {
+        return node.getChildCount() == 1 && isPlaceholder(node.getFirstChild());
+    }
+    
+    static boolean isPlaceholder(Object node) {
+        return ((DefaultMutableTreeNode) node).getUserObject() instanceof String;
+    }
+    
+    static DefaultMutableTreeNode createNode(File directory, FileEntry entry) {
+        DefaultMutableTreeNode childNode =
+                new DefaultMutableTreeNode(new File(directory, entry.getName()), entry.isDirectory());
+        // Add dummy node to directories to show expand icon
+        if (entry.isDirectory()) {
+            childNode.add(createPlaceholder());
+        }
+        return childNode;
+    }
+    
+    // True once the node's children are completely loaded
+    static boolean isLoaded(DefaultMutableTreeNode node) {
+        return node.getChildCount() == 0 || !isPlaceholder(node.getLastChild());
+    }
+    
+    // Applies changes reported for a loaded node's directory: entries that were created
+    // or modified, and names that were removed. Only the affected children are touched.
+    static void applyChanges(DefaultTreeModel treeModel, DefaultMutableTreeNode node,
+            List<FileEntry> changed, Collection<String> removed) {
+        if (!isLoaded(node)) {
+            return;
+        }
+        
+        File directory = (File) node.getUserObject();
+        for (String name : removed) {
+            int index = indexOf(node, name);
+            if (index >= 0) {
+                removeChild(treeModel, node, index);
+            }
+        }
+        
+        for (FileEntry entry : changed) {
+            int index = indexOf(node, entry.getName());
+            if (index >= 0) {
+                if (((DefaultMutableTreeNode) node.getChildAt(index)).getAllowsChildren() == entry.isDirectory()) {
+                    // Size and time are not shown in the tree
+                    continue;
+                }
+                removeChild(treeModel, node, index);
+            }
+            insertChild(treeModel, node, insertionPoint(node, entry), createNode(directory, entry));
+        }
+    }
+    
+    // Brings a loaded node's children in line with a fresh sorted listing. Children
+    // that are still present are kept, together with their own loaded subtrees.
+    static void mergeChildren(DefaultTreeModel treeModel, DefaultMutableTreeNode node, List<FileEntry> entries) {
+        if (!isLoaded(node)) {
+            return;
+        }
+        
+        File directory = (File) node.getUserObject();
+        int index = 0;
+        for (FileEntry entry : entries) {
+            boolean isDirectory = entry.isDirectory();
+            while (index < node.getChildCount() && compareChild(node, index, isDirectory, entry.getName()) < 0) {
+                removeChild(treeModel, node, index);
+            }
+            if (index < node.getChildCount() && compareChild(node, index, isDirectory, entry.getName()) == 0) {
+                index++;
+            } else {
+                insertChild(treeModel, node, index++, createNode(directory, entry));
+            }
+        }
+        while (index < node.getChildCount()) {
+            removeChild(treeModel, node, index);
+        }
+    }
+    
+    // The loaded child with the given name, or null
+    static DefaultMutableTreeNode findChild(DefaultMutableTreeNode node, String name) {
+        if (needsLoading(node)) {
+            return null;
+        }
+        int index = indexOf(node, name);
+        return index >= 0 ? (DefaultMutableTreeNode) node.getChildAt(index) : null;
+    }
+    
+    // Fills an unloaded node from a listing that is already known, such as a cached one
+    static void setChildren(DefaultTreeModel treeModel, DefaultMutableTreeNode node, List<FileEntry> entries) {
+        setChildren(node, entries);
+        treeModel.nodeStructureChanged(node);
+    }
+    
+    // The same without notifying the model, for filling several levels under one event
+    static void setChildren(DefaultMutableTreeNode node, List<FileEntry> entries) {
+        File directory = (File) node.getUserObject();
+        node.removeAllChildren();
+        for (FileEntry entry : entries) {
+            node.add(createNode(directory, entry));
+        }
+    }
+    
+    // Names are unique within a directory, so the name is looked for among the folders and then the files
+    private static int indexOf(DefaultMutableTreeNode node, String name) {
+        int index = search(node, true, name);
+        return index >= 0 ? index : search(node, false, name);
+    }
+    
+    private static int insertionPoint(DefaultMutableTreeNode node, FileEntry entry) {
+        int index = search(node, entry.isDirectory(), entry.getName());
+        return index >= 0 ? index : -index - 1;
+    }
+    
+    // Binary search of the children, which are kept in DIRECTORIES_FIRST order with the
+    // placeholder after them while loading; as Collections.binarySearch, -(insertion point) - 1 if absent
+    private static int search(DefaultMutableTreeNode node, boolean directory, String name) {
+        int low = 0;
+        int high = node.getChildCount() - 1;
+        if (high >= 0 && isPlaceholder(node.getLastChild())) {
+            high--;
+        }
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int result = compareChild(node, middle, directory, name);
+            if (result < 0) {
+                low = middle + 1;
+            } else if (result > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -low - 1;
+    }
+    
+    private static int compareChild(DefaultMutableTreeNode node, int index, boolean directory, String name) {
+        DefaultMutableTreeNode child = (DefaultMutableTreeNode) node.getChildAt(index);
+        return FileEntry.compare(child.getAllowsChildren(), ((File) child.getUserObject()).getName(), directory, name);
+    }
+    
+    private static void insertChild(DefaultTreeModel treeModel, DefaultMutableTreeNode node,
+            int index, DefaultMutableTreeNode child) {
+        node.insert(child, index);
+        treeModel.nodesWereInserted(node, new int[] {index});
+    }
+    
+    private static void removeChild(DefaultTreeModel treeModel, DefaultMutableTreeNode node, int index) {
+        Object child = node.getChildAt(index);
+        node.remove(index);
+        treeModel.nodesWereRemoved(node, new int[] {index}, new Object[] {child});
+    }
+    
+    @Override
+    protected Void doInBackground() {
+        int[] loaded = {0};
+        List<FileEntry> entries;
+        try {
+            // Served from the cache when the directory has not changed since it was last listed
+            entries = directoryModel.read(directory.toPath(), this::isCancelled, entry -> {
+                if (++loaded[0] % PROGRESS_INTERVAL == 0) {
+                    firePropertyChange("loaded", loaded[0] - PROGRESS_INTERVAL, loaded[0]);
+                }
+            });
+        } catch (IOException e) {
+            // Unreadable directory - it simply shows no children
+            entries = Collections.emptyList();
+        }
+        
+        if (entries == null || isCancelled()) {
+            return null;
+        }
+        
+        // Entries come sorted; their attributes were read once, so sorting made no further stat calls
+        for (int i = 0; i < entries.size(); i += CHUNK_SIZE) {
+            publish(new ArrayList<>(entries.subList(i, Math.min(i + CHUNK_SIZE, entries.size()))));
+        }
+        publish(END_OF_CHILDREN);
+        return null;
+    }
+    
+    @Override
+    protected void process(List<List<FileEntry>> chunks) {
+        if (isCancelled()) {
+            return;
+        }
+        
+        for (List<FileEntry> chunk : chunks) {
+            DefaultMutableTreeNode placeholder = (DefaultMutableTreeNode) node.getLastChild();
+            
+            if (chunk == END_OF_CHILDREN) {
+                int index = node.getIndex(placeholder);
+                node.remove(index);
+                treeModel.nodesWereRemoved(node, new int[] {index}, new Object[] {placeholder});
+                onFinished.run();
+                continue;
+            }
+            
+            // Insert in front of the placeholder, which stays last
+            int firstIndex = node.getChildCount() - 1;
+            int[] indices = new int[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                node.insert(createNode(directory, chunk.get(i)), firstIndex + i);
+                indices[i] = firstIndex + i;
+            }
+            treeModel.nodesWereInserted(node, indices);
+            
+            placeholder.setUserObject(PLACEHOLDER_TEXT + " " + (firstIndex + chunk.size()) + " items");
+            treeModel.nodeChanged(placeholder);
+        }
+    }
+    
+    // Shows how many entries have been read while the directory is still being listed
+    private void showProgress(int loaded) {
+        if (!isCancelled() && node.getChildCount() > 0 && isPlaceholder(node.getLastChild())) {
+            DefaultMutableTreeNode placeholder = (DefaultMutableTreeNode) node.getLastChild();
+            placeholder.setUserObject(PLACEHOLDER_TEXT + " " + loaded + " items read");
+            treeModel.nodeChanged(placeholder);
+        }
+    }
+    
+    // Cancels the load and puts the node back into its unloaded state
+    void cancelAndReset() {
+        cancel(true);
+        node.removeAllChildren();
+        node.add(createPlaceholder());
+        treeModel.nodeStructureChanged(node);
+    }
+}
@@ -0,0 +1,300 @@
+package fileexplorer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// DirectoryModel on temp directories, headless. Listings run on the calling thread
+// (Runnable::run) unless a test needs to hold them back, so callbacks have arrived by
+// the time a call returns.
+class DirectoryModelTest {
+    
+    // Well before the listing, so the cache trusts snapshots of these directories
+    private static final FileTime PAST = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+    
+    @TempDir
+    Path root;
+    
+    @Test
+    void listsDirectoriesFirstAndSkipsHiddenEntries() throws IOException {
+        Path directory = directory("mixed", "b.txt", "A.txt", ".hidden", "c/", "B/", ".config/");
+        DirectoryModel model = model(new DirectoryCache());
+        
+        RecordingListener listener = new RecordingListener();
+        model.list(directory, false, Runnable::run, listener);
+        
+        assertNull(listener.failure);
+        assertEquals(Arrays.asList("B", "c", "A.txt", "b.txt"), names(listener.finished));
+        assertTrue(listener.batches.isEmpty());
+    }
+    
+    @Test
+    void streamsEntriesBeforeTheSortedListing() throws IOException {
+        Path directory = directory("streamed", "z", "y", "x/");
+        DirectoryModel model = model(new DirectoryCache());
+        
+        RecordingListener listener = new RecordingListener();
+        model.list(directory, true, Runnable::run, listener);
+        
+        List<String> streamed = new ArrayList<>();
+        for (List<FileEntry> batch : listener.batches) {
+            streamed.addAll(names(batch));
+        }
+        streamed.sort(null);
+        assertEquals(Arrays.asList("x", "y", "z"), streamed);
+        assertEquals(Arrays.asList("x", "y", "z"), names(listener.finished));
+    }
+    
+    @Test
+    void reportsAMissingDirectory() {
+        RecordingListener listener = new RecordingListener();
+        model(new DirectoryCache()).list(root.resolve("missing"), false, Runnable::run, listener);
+        
+        assertNull(listener.finished);
+        assertNotNull(listener.failure);
+    }
+    
+    @Test
+    void listAllDeliversListingsInTheOrderGiven() throws IOException {
+        Path first = directory("first", "1");
+        Path second = directory("second", "2a", "2b");
+        Path missing = root.resolve("missing");
+        DirectoryModel model = model(new DirectoryCache());
+        
+        AtomicReference<List<List<FileEntry>>> delivered = new AtomicReference<>();
+        model.listAll(Arrays.asList(second, missing, first), Runnable::run, delivered::set);
+        
+        List<List<FileEntry>> listings = delivered.get();
+        assertEquals(3, listings.size());
+        assertEquals(Arrays.asList("2a", "2b"), names(listings.get(0)));
+        assertNull(listings.get(1));
+        assertEquals(Arrays.asList("1"), names(listings.get(2)));
+    }
+    
+    @Test
+    void listAllOfNothingStillDelivers() {
+        AtomicReference<List<List<FileEntry>>> delivered = new AtomicReference<>();
+        model(new DirectoryCache()).listAll(new ArrayList<>(), Runnable::run, delivered::set);
+        
+        assertNotNull(delivered.get());
+        assertTrue(delivered.get().isEmpty());
+    }
+    
+    @Test
+    void cancelledListingDeliversNothing() throws IOException {
+        Path directory = directory("cancelled", "a");
+        PendingExecutor executor = new PendingExecutor();
+        DirectoryModel model = new DirectoryModel(new DirectoryCache(), executor, 2, 1000);
+        
+        RecordingListener listener = new RecordingListener();
+        DirectoryModel.Listing listing = model.list(directory, false, Runnable::run, listener);
+        listing.cancel();
+        executor.runAll();
+        
+        assertNull(listener.finished);
+        assertNull(listener.failure);
+    }
+    
+    @Test
+    void readFillsTheCacheAndPeekReturnsIt() throws IOException {
+        Path directory = directory("cached", "a", "b");
+        DirectoryCache cache = new DirectoryCache();
+        DirectoryModel model = model(cache);
+        
+        assertNull(model.peek(directory));
+        List<FileEntry> read = model.read(directory, () -> false, entry -> { });
+        assertSame(read, model.peek(directory));
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        
+        // Unchanged: served from the cache
+        assertSame(read, model.read(directory, () -> false, entry -> { }));
+        assertEquals(1, cache.getHits());
+        
+        // Changed: listed again
+        Files.createFile(directory.resolve("c"));
+        Files.setLastModifiedTime(directory, FileTime.fromMillis(PAST.toMillis() + 1000));
+        assertEquals(Arrays.asList("a", "b", "c"), names(model.read(directory, () -> false, entry -> { })));
+        assertEquals(2, cache.getMisses());
+    }
+    
+    @Test
+    void prefetchStopsOnceTheBudgetIsSpent() throws IOException {
+        // Each directory costs one for its stat and one per entry
+        Path first = directory("first", "a", "b", "c");
+        Path second = directory("second", "a", "b", "c");
+        Path third = directory("third", "a");
+        DirectoryCache cache = new DirectoryCache();
+        DirectoryModel model = new DirectoryModel(cache, Runnable::run, 1, 6);
+        
+        model.prefetch(Arrays.asList(first, second, third));
+        
+        assertNotNull(cache.peek(first));
+        assertNull(cache.peek(second));
+        assertNull(cache.peek(third));
+        assertEquals(1, model.getPrefetches());
+        
+        // Acting renews the budget
+        model.cancelPrefetches();
+        model.prefetch(Arrays.asList(third));
+        assertNotNull(cache.peek(third));
+        assertEquals(2, model.getPrefetches());
+    }
+    
+    @Test
+    void cancelPrefetchesDropsQueuedAndRunningPrefetches() throws IOException {
+        Path first = directory("first", "a");
+        Path second = directory("second", "a");
+        PendingExecutor executor = new PendingExecutor();
+        DirectoryCache cache = new DirectoryCache();
+        DirectoryModel model = new DirectoryModel(cache, executor, 1, 1000);
+        
+        model.prefetch(Arrays.asList(first, second));
+        assertEquals(1, executor.tasks.size());
+        model.cancelPrefetches();
+        executor.runAll();
+        
+        assertNull(cache.peek(first));
+        assertNull(cache.peek(second));
+        assertEquals(0, model.getPrefetches());
+    }
+    
+    @Test
+    void countsPrefetchedDirectoriesThatAreOpened() throws IOException {
+        Path directory = directory("opened", "a");
+        DirectoryModel model = new DirectoryModel(new DirectoryCache(), Runnable::run, 1, 1000);
+        
+        model.prefetch(Arrays.asList(directory));
+        model.read(directory, () -> false, entry -> { });
+        model.read(directory, () -> false, entry -> { });
+        
+        assertEquals(1, model.getPrefetches());
+        assertEquals(1, model.getPrefetchHits());
+    }
+    
+    @Test
+    void usesVirtualThreadsWhereTheRuntimeHasThem() throws Exception {
+        Thread thread = threadOf(DirectoryModel.createExecutor());
+        assertEquals(Runtime.version().feature() >= 21, isVirtual(thread));
+        if (!isVirtual(thread)) {
+            assertTrue(thread.getName().startsWith("directory-lister-"));
+            assertTrue(thread.isDaemon());
+        }
+    }
+    
+    @Test
+    void platformThreadsCanBeChosen() throws Exception {
+        System.setProperty("fileexplorer.listing.threads", "platform");
+        try {
+            Thread thread = threadOf(DirectoryModel.createExecutor());
+            assertFalse(isVirtual(thread));
+            assertTrue(thread.getName().startsWith("directory-lister-"));
+            assertTrue(thread.isDaemon());
+        } finally {
+            System.clearProperty("fileexplorer.listing.threads");
+        }
+    }
+    
+    // A directory with files and, for names ending in /, subdirectories, last modified in the past
+    private Path directory(String name, String... entries) throws IOException {
+        Path directory = Files.createDirectory(root.resolve(name));
+        for (String entry : entries) {
+            if (entry.endsWith("/")) {
+                Files.createDirectory(directory.resolve(entry.substring(0, entry.length() - 1)));
+            } else {
+                Files.createFile(directory.resolve(entry));
+            }
+        }
+        Files.setLastModifiedTime(directory, PAST);
+        return directory;
+    }
+    
+    private static DirectoryModel model(DirectoryCache cache) {
+        return new DirectoryModel(cache, Runnable::run, 2, 1000);
+    }
+    
+    private static List<String> names(List<FileEntry> entries) {
+        List<String> names = new ArrayList<>();
+        for (FileEntry entry : entries) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+    
+    private static Thread threadOf(Executor executor) throws InterruptedException {
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        CountDownLatch ran = new CountDownLatch(1);
+        executor.execute(() -> {
+            thread.set(Thread.currentThread());
+            ran.countDown();
+        });
+        assertTrue(ran.await(10, TimeUnit.SECONDS));
+        return thread.get();
+    }
+    
+    private static boolean isVirtual(Thread thread) throws ReflectiveOperationException {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (NoSuchMethodException e) {
+            // Older runtime
+            return false;
+        }
+    }
+    
+    private static final class RecordingListener implements DirectoryModel.Listener {
+        final List<List<FileEntry>> batches = new ArrayList<>();
+        List<FileEntry> finished;
+        Exception failure;
+        
+        @Override
+        public void entriesLoaded(List<FileEntry> batch) {
+            batches.add(batch);
+        }
+        
+        @Override
+        public void listingFinished(List<FileEntry> entries) {
+            finished = entries;
+        }
+        
+        @Override
+        public void listingFailed(Exception e) {
+            failure = e;
+        }
+    }
+    
+    // Holds tasks until the test runs them
+    private static final class PendingExecutor implements Executor {
+        final Queue<Runnable> tasks = new ArrayDeque<>();
+        
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+        
+        void runAll() {
+            for (Runnable task; (task = tasks.poll()) != null; ) {
+                task.run();
+            }
+        }
+    }
+}